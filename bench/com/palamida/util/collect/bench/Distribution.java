@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect.bench;
+
+import java.util.Random;
+
+/**
+ * The distributions from which benchmark keys are drawn.
+ *
+ * @author Zhenya Leonov
+ */
+public enum Distribution {
+
+	/**
+	 * Keys drawn uniformly at random.
+	 */
+	RANDOM {
+		@Override
+		int next(final Random random, final int range, final int i) {
+			return random.nextInt(range);
+		}
+	},
+
+	/**
+	 * Increasing keys, wrapping around at the end of the range.
+	 */
+	SEQUENTIAL {
+		@Override
+		int next(final Random random, final int range, final int i) {
+			return i % range;
+		}
+	},
+
+	/**
+	 * Keys following a Zipf distribution with exponent 0.99, scattered over
+	 * the range so that popular keys are not adjacent.
+	 */
+	ZIPFIAN {
+		@Override
+		int next(final Random random, final int range, final int i) {
+			throw new AssertionError();
+		}
+
+		@Override
+		Integer[] keys(final int count, final int range, final long seed) {
+			final Random random = new Random(seed);
+			final double theta = .99;
+			double zetan = 0;
+			for (int i = 1; i <= range; i++)
+				zetan += 1 / Math.pow(i, theta);
+			final double zeta2 = 1 + 1 / Math.pow(2, theta);
+			final double alpha = 1 / (1 - theta);
+			final double eta = (1 - Math.pow(2.0 / range, 1 - theta)) / (1 - zeta2 / zetan);
+			final Integer[] keys = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				final double u = random.nextDouble();
+				final double uz = u * zetan;
+				final long rank;
+				if (uz < 1)
+					rank = 0;
+				else if (uz < zeta2)
+					rank = 1;
+				else
+					rank = (long) (range * Math.pow(eta * u - eta + 1, alpha));
+				keys[i] = (int) ((Math.min(rank, range - 1) * 0x9E3779B1L) % range);
+			}
+			return keys;
+		}
+	};
+
+	abstract int next(Random random, int range, int i);
+
+	/**
+	 * Returns {@code count} keys in the range [0, range) drawn from this
+	 * distribution. The keys are boxed up front so that benchmarks do not
+	 * measure the cost of boxing.
+	 *
+	 * @param count
+	 *            the number of keys
+	 * @param range
+	 *            the upper bound (exclusive) of the keys
+	 * @param seed
+	 *            the seed of the random number generator
+	 * @return {@code count} keys drawn from this distribution
+	 */
+	Integer[] keys(final int count, final int range, final long seed) {
+		final Random random = new Random(seed);
+		final Integer[] keys = new Integer[count];
+		for (int i = 0; i < count; i++)
+			keys[i] = next(random, range, i);
+		return keys;
+	}
+
+}
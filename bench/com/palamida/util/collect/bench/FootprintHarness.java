@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+
+import com.palamida.util.collect.MemoryReport;
+import com.palamida.util.collect.RankList;
+import com.palamida.util.collect.Skiplist;
+import com.palamida.util.collect.TreeQueue;
+import com.palamida.util.collect.TreeSet;
+import com.palamida.util.collect.Treelist;
+
+/**
+ * Checks the {@code footprint()} estimates of the collections against the
+ * growth of the heap measured while the collections are built. The elements
+ * are allocated before the first measurement, so that only the structure of
+ * each collection is measured.
+ * <p>
+ * Usage: {@code FootprintHarness [tolerance [size...]]}, where the tolerance
+ * is the largest acceptable relative error (0.05 by default). The harness
+ * exits with status 1 if any estimate is off by more. Heap measurements are
+ * only exact with a collector that compacts the whole heap, so run it with
+ * {@code -XX:+UseSerialGC -XX:MarkSweepDeadRatio=0}, as the {@code footprint}
+ * Ant target does. Otherwise the collector may leave dead objects in place,
+ * and they are counted as used.
+ *
+ * @author Zhenya Leonov
+ */
+public final class FootprintHarness {
+
+	private static final int TRIALS = 5;
+
+	private FootprintHarness() {
+	}
+
+	private enum Kind {
+		TREELIST {
+			@Override
+			Collection<Integer> create() {
+				return Treelist.<Integer> create();
+			}
+
+			@Override
+			MemoryReport footprint(final Collection<Integer> c) {
+				return ((Treelist<Integer>) c).footprint();
+			}
+		},
+		SKIPLIST {
+			@Override
+			Collection<Integer> create() {
+				return Skiplist.<Integer> create();
+			}
+
+			@Override
+			MemoryReport footprint(final Collection<Integer> c) {
+				return ((Skiplist<Integer>) c).footprint();
+			}
+		},
+		RANK_LIST {
+			@Override
+			Collection<Integer> create() {
+				return RankList.<Integer> create();
+			}
+
+			@Override
+			MemoryReport footprint(final Collection<Integer> c) {
+				return ((RankList<Integer>) c).footprint();
+			}
+		},
+		TREE_QUEUE {
+			@Override
+			Collection<Integer> create() {
+				return TreeQueue.<Integer> create();
+			}
+
+			@Override
+			MemoryReport footprint(final Collection<Integer> c) {
+				return ((TreeQueue<Integer>) c).footprint();
+			}
+		},
+		TREE_SET {
+			@Override
+			Collection<Integer> create() {
+				return TreeSet.<Integer> create();
+			}
+
+			@Override
+			MemoryReport footprint(final Collection<Integer> c) {
+				return ((TreeSet<Integer>) c).footprint();
+			}
+		};
+
+		abstract Collection<Integer> create();
+
+		abstract MemoryReport footprint(Collection<Integer> c);
+	}
+
+	public static void main(final String[] args) {
+		final double tolerance = args.length > 0 ? Double.parseDouble(args[0]) : .05;
+		final int[] sizes;
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++)
+				sizes[i - 1] = Integer.parseInt(args[i]);
+		} else
+			sizes = new int[] { 1000, 100000, 1000000 };
+
+		String layout = null;
+		for (Kind kind : Kind.values())
+			layout = kind.footprint(build(kind, elements(1000))).layout();
+		System.out.println(layout);
+		boolean passed = true;
+		System.out.printf("%-11s %9s %12s %12s %8s %10s%n", "kind", "size", "estimated", "measured", "error",
+				"bytes/elem");
+		for (Kind kind : Kind.values())
+			for (int size : sizes)
+				passed &= check(kind, size, tolerance);
+		if (!passed) {
+			System.out.println("FAILED: an estimate is off by more than " + 100 * tolerance + "%");
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Reports the trial with the median error, as an occasional measurement
+	 * is disturbed by objects the JVM allocates or frees on its own.
+	 */
+	private static boolean check(final Kind kind, final int size, final double tolerance) {
+		final Integer[] elements = elements(size);
+		final long[][] trials = new long[TRIALS][];
+		final double[] errors = new double[TRIALS];
+		for (int i = 0; i < TRIALS; i++) {
+			trials[i] = measure(kind, elements);
+			errors[i] = error(trials[i]);
+		}
+		Arrays.sort(errors);
+		final double median = errors[TRIALS / 2];
+		for (long[] trial : trials)
+			if (error(trial) == median) {
+				System.out.printf("%-11s %9d %12d %12d %7.2f%% %10.1f%n", kind, size, trial[0], trial[1],
+						100 * median, (double) trial[0] / size);
+				break;
+			}
+		return Math.abs(median) <= tolerance;
+	}
+
+	/*
+	 * Returns the estimated and the measured footprint of a collection built
+	 * in a frame of its own, so that no collection built earlier is still
+	 * reachable from the stack.
+	 */
+	private static long[] measure(final Kind kind, final Integer[] elements) {
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		final long before = usedHeap(memory);
+		final Collection<Integer> c = build(kind, elements);
+		final long measured = usedHeap(memory) - before;
+		return new long[] { kind.footprint(c).bytes(), measured };
+	}
+
+	private static double error(final long[] trial) {
+		return (double) (trial[0] - trial[1]) / trial[1];
+	}
+
+	private static Collection<Integer> build(final Kind kind, final Integer[] elements) {
+		final Collection<Integer> c = kind.create();
+		Collections.addAll(c, elements);
+		return c;
+	}
+
+	/*
+	 * Distinct keys in random order, boxed up front.
+	 */
+	private static Integer[] elements(final int size) {
+		final Integer[] elements = new Integer[size];
+		for (int i = 0; i < size; i++)
+			elements[i] = Integer.valueOf(i);
+		Collections.shuffle(Arrays.asList(elements), new Random(1));
+		return elements;
+	}
+
+	/*
+	 * Collects garbage until the used heap stops shrinking.
+	 */
+	private static long usedHeap(final MemoryMXBean memory) {
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			final long current = memory.getHeapMemoryUsage().getUsed();
+			if (current >= used)
+				return used;
+			used = current;
+		}
+		return used;
+	}
+
+}
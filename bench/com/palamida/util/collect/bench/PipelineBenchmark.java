@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect.bench;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterators;
+import com.palamida.util.collect.IteratorPipeline;
+import com.palamida.util.collect.MoreIterators;
+
+/**
+ * Measures a chain of filter and map stages built with
+ * {@code MoreIterators.pipeline(Iterator)} against the same chain built by
+ * decorating the iterator once per stage.
+ * <p>
+ * Each invocation consumes the whole chain over a list of {@code size}
+ * integers. The stages alternate between a filter, which drops about one
+ * element in {@code 3 + i}, and a map, which adds {@code i}. Each stage is an
+ * instance of a different class, so that the stage calls are as polymorphic
+ * as they are in real use.
+ * <p>
+ * <table border cellpadding="3" cellspacing="1">
+ * <tr>
+ * <th align="center">Benchmark</th>
+ * <th align="center">Measures</th>
+ * </tr>
+ * <tr>
+ * <td>{@link #nestedMoreIterators(Chain, Blackhole) nestedMoreIterators}</td>
+ * <td>{@code MoreIterators.filter} and {@code MoreIterators.transform}
+ * stacked over a {@code ListIterator}.</td>
+ * </tr>
+ * <tr>
+ * <td>{@link #nestedGuava(Chain, Blackhole) nestedGuava}</td>
+ * <td>Guava's {@code Iterators.filter} and {@code Iterators.transform}
+ * stacked over an {@code Iterator}.</td>
+ * </tr>
+ * <tr>
+ * <td>{@link #fusedIterator(Chain, Blackhole) fusedIterator}</td>
+ * <td>{@code hasNext()} and {@code next()} on the fused iterator.</td>
+ * </tr>
+ * <tr>
+ * <td>{@link #fusedForEach(Chain, Blackhole) fusedForEach}</td>
+ * <td>{@code forEach(Consumer)} on the pipeline.</td>
+ * </tr>
+ * </table>
+ *
+ * @author Zhenya Leonov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PipelineBenchmark {
+
+	/**
+	 * The source list and the stages of the chain.
+	 */
+	@State(Scope.Thread)
+	public static class Chain {
+
+		@Param({ "2", "4", "8" })
+		public int stages;
+
+		@Param({ "10000" })
+		public int size;
+
+		List<Integer> source;
+		Object[] chain;
+
+		@Setup
+		public void setup() {
+			source = new ArrayList<Integer>(size);
+			for (int i = 0; i < size; i++)
+				source.add(i);
+			chain = new Object[stages];
+			for (int i = 0; i < stages; i++)
+				chain[i] = i % 2 == 0 ? filter(i) : map(i);
+		}
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public void nestedMoreIterators(final Chain chain, final Blackhole blackhole) {
+		ListIterator<Integer> iterator = chain.source.listIterator();
+		for (final Object stage : chain.chain)
+			if (stage instanceof Predicate)
+				iterator = MoreIterators.filter(iterator, (Predicate<Integer>) stage);
+			else
+				iterator = MoreIterators.transform(iterator, (Function<Integer, Integer>) stage);
+		while (iterator.hasNext())
+			blackhole.consume(iterator.next());
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public void nestedGuava(final Chain chain, final Blackhole blackhole) {
+		Iterator<Integer> iterator = chain.source.iterator();
+		for (final Object stage : chain.chain)
+			if (stage instanceof Predicate)
+				iterator = Iterators.filter(iterator, (Predicate<Integer>) stage);
+			else
+				iterator = Iterators.transform(iterator, (Function<Integer, Integer>) stage);
+		while (iterator.hasNext())
+			blackhole.consume(iterator.next());
+	}
+
+	@Benchmark
+	public void fusedIterator(final Chain chain, final Blackhole blackhole) {
+		final Iterator<Integer> iterator = pipeline(chain).iterator();
+		while (iterator.hasNext())
+			blackhole.consume(iterator.next());
+	}
+
+	@Benchmark
+	public void fusedForEach(final Chain chain, final Blackhole blackhole) {
+		pipeline(chain).forEach(new Consumer<Integer>() {
+			@Override
+			public void accept(final Integer e) {
+				blackhole.consume(e);
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static IteratorPipeline<Integer> pipeline(final Chain chain) {
+		IteratorPipeline<Integer> pipeline = MoreIterators.pipeline(chain.source.iterator());
+		for (final Object stage : chain.chain)
+			if (stage instanceof Predicate)
+				pipeline = pipeline.filter((Predicate<Integer>) stage);
+			else
+				pipeline = pipeline.map((Function<Integer, Integer>) stage);
+		return pipeline;
+	}
+
+	private static Predicate<Integer> filter(final int i) {
+		switch (i % 4) {
+		case 0:
+			return new Predicate<Integer>() {
+				@Override
+				public boolean apply(final Integer e) {
+					return e % (3 + i) != 0;
+				}
+			};
+		default:
+			return new Predicate<Integer>() {
+				@Override
+				public boolean apply(final Integer e) {
+					return e.intValue() % (3 + i) != 0;
+				}
+			};
+		}
+	}
+
+	private static Function<Integer, Integer> map(final int i) {
+		switch (i % 4) {
+		case 1:
+			return new Function<Integer, Integer>() {
+				@Override
+				public Integer apply(final Integer e) {
+					return e + i;
+				}
+			};
+		default:
+			return new Function<Integer, Integer>() {
+				@Override
+				public Integer apply(final Integer e) {
+					return Integer.valueOf(e.intValue() + i);
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures positional access ({@code get(int)}) on the indexed collections
+ * under benchmark. Sets are not indexed and are therefore not included.
+ *
+ * @author Zhenya Leonov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PositionalBenchmark {
+
+	private static final int TAPE = 1 << 16;
+
+	@Param({ "SKIPLIST", "TREELIST", "PACKEDLIST", "RANK_LIST", "ARRAY_LIST" })
+	public Target.Impl impl;
+
+	@Param({ "1000", "100000" })
+	public int size;
+
+	@Param({ "RANDOM", "SEQUENTIAL", "ZIPFIAN" })
+	public Distribution distribution;
+
+	private Target target;
+	private int[] indices;
+	private int next;
+
+	@Setup
+	public void setup() {
+		target = impl.create();
+		for (Integer key : distribution.keys(size, 2 * size, 1))
+			target.add(key);
+		final Random random = new Random(2);
+		indices = new int[TAPE];
+		for (int i = 0; i < TAPE; i++)
+			indices[i] = random.nextInt(target.size());
+		next = 0;
+	}
+
+	/**
+	 * Reads the element at the next random position.
+	 */
+	@Benchmark
+	public Integer get() {
+		return target.get(indices[next++ & TAPE - 1]);
+	}
+
+}
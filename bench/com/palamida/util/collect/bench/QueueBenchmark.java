@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@code TreeQueue}, bounded and unbounded, against
+ * {@code java.util.PriorityQueue} and Guava's {@code MinMaxPriorityQueue}.
+ * <p>
+ * Every benchmark runs in both {@code Throughput} and {@code SampleTime}
+ * modes: the latter reports the p50, p90, p99, and p99.9 latencies of the
+ * individual operations. The cheapest operations take less time than the
+ * resolution of the timer, so their percentiles are only meaningful at the
+ * larger sizes.
+ * <p>
+ * <table border cellpadding="3" cellspacing="1">
+ * <tr>
+ * <th align="center">Benchmark</th>
+ * <th align="center">Measures</th>
+ * </tr>
+ * <tr>
+ * <td>{@link #offerPoll(Churn) offerPoll}</td>
+ * <td>A {@code poll()} followed by an {@code offer(E)}, which keeps the size of
+ * the queue constant. Bounded queues are given room for one more element than
+ * they hold, so they pay for the bound check without rejecting anything.</td>
+ * </tr>
+ * <tr>
+ * <td>{@link #topK(TopK, TopKCounters) topK}</td>
+ * <td>An {@code offer(E)} to a bounded queue retaining the {@code k} least
+ * elements of a stream. {@code PriorityQueue} is bounded by hand. The
+ * {@code accepted} and {@code rejected} counters give the rejection rate.</td>
+ * </tr>
+ * <tr>
+ * <td>{@link #descendingIteration(Filled, Blackhole) descendingIteration}</td>
+ * <td>A visit of every element from greatest to least. Only
+ * {@code TreeQueue} can do this in place; the heaps are copied and sorted.</td>
+ * </tr>
+ * <tr>
+ * <td>{@link #removeObject(Filled) removeObject}</td>
+ * <td>A {@code remove(Object)} of an element in the queue, followed by an
+ * {@code offer(E)} putting it back.</td>
+ * </tr>
+ * </table>
+ *
+ * @author Zhenya Leonov
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class QueueBenchmark {
+
+	private static final int TAPE = 1 << 20;
+
+	/**
+	 * A queue of constant size and a tape of keys to offer to it.
+	 */
+	@State(Scope.Thread)
+	public static class Churn {
+
+		@Param({ "TREE_QUEUE", "TREE_QUEUE_BOUNDED", "PRIORITY_QUEUE", "MIN_MAX_PRIORITY_QUEUE",
+				"MIN_MAX_PRIORITY_QUEUE_BOUNDED" })
+		public QueueTarget.Impl impl;
+
+		@Param({ "1000", "100000" })
+		public int size;
+
+		@Param({ "RANDOM", "SEQUENTIAL", "ZIPFIAN" })
+		public Distribution distribution;
+
+		QueueTarget target;
+		Integer[] keys;
+		int next;
+
+		@Setup
+		public void setup() {
+			keys = distribution.keys(TAPE, 2 * size, 1);
+			target = impl.create(size + 1);
+			for (next = 0; next < size; next++)
+				target.offer(keys[next]);
+		}
+	}
+
+	/**
+	 * A bounded queue and the stream of keys it selects from. The queue is
+	 * emptied each time the stream wraps around, so that the rejection rate
+	 * is that of a selection over {@code 2^20} keys rather than one which
+	 * keeps falling for as long as the benchmark runs.
+	 */
+	@State(Scope.Thread)
+	public static class TopK {
+
+		@Param({ "TREE_QUEUE_BOUNDED", "PRIORITY_QUEUE", "MIN_MAX_PRIORITY_QUEUE_BOUNDED" })
+		public QueueTarget.Impl impl;
+
+		@Param({ "10", "1000" })
+		public int k;
+
+		@Param({ "RANDOM", "SEQUENTIAL", "ZIPFIAN" })
+		public Distribution distribution;
+
+		QueueTarget target;
+		Integer[] keys;
+		int next;
+
+		@Setup
+		public void setup() {
+			keys = distribution.keys(TAPE, TAPE, 1);
+			target = impl.createTopK(k);
+			next = 0;
+		}
+
+		Integer nextKey() {
+			if (next == TAPE) {
+				target = impl.createTopK(k);
+				next = 0;
+			}
+			return keys[next++];
+		}
+	}
+
+	/**
+	 * The number of elements accepted and rejected by {@link TopK} queues.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class TopKCounters {
+		public long accepted;
+		public long rejected;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			accepted = 0;
+			rejected = 0;
+		}
+	}
+
+	/**
+	 * A queue holding {@code size} elements and a tape of elements known to
+	 * be in it.
+	 */
+	@State(Scope.Thread)
+	public static class Filled {
+
+		@Param({ "TREE_QUEUE", "TREE_QUEUE_BOUNDED", "PRIORITY_QUEUE", "MIN_MAX_PRIORITY_QUEUE",
+				"MIN_MAX_PRIORITY_QUEUE_BOUNDED" })
+		public QueueTarget.Impl impl;
+
+		@Param({ "1000", "100000" })
+		public int size;
+
+		QueueTarget target;
+		Integer[] present;
+		int next;
+
+		@Setup
+		public void setup() {
+			final Integer[] keys = Distribution.RANDOM.keys(size, 2 * size, 1);
+			target = impl.create(size);
+			for (Integer key : keys)
+				target.offer(key);
+			final Random random = new Random(2);
+			present = new Integer[TAPE];
+			for (int i = 0; i < TAPE; i++)
+				present[i] = keys[random.nextInt(size)];
+			next = 0;
+		}
+	}
+
+	/**
+	 * Polls the least element and offers the next key on the tape.
+	 */
+	@Benchmark
+	public boolean offerPoll(final Churn churn) {
+		churn.target.poll();
+		return churn.target.offer(churn.keys[churn.next++ & TAPE - 1]);
+	}
+
+	/**
+	 * Offers the next key in the stream to a bounded queue.
+	 */
+	@Benchmark
+	public boolean topK(final TopK topK, final TopKCounters counters) {
+		final boolean accepted = topK.target.offer(topK.nextKey());
+		if (accepted)
+			counters.accepted++;
+		else
+			counters.rejected++;
+		return accepted;
+	}
+
+	/**
+	 * Visits every element from greatest to least.
+	 */
+	@Benchmark
+	public void descendingIteration(final Filled filled, final Blackhole blackhole) {
+		filled.target.descending(blackhole);
+	}
+
+	/**
+	 * Removes an element known to be in the queue and puts it back.
+	 */
+	@Benchmark
+	public boolean removeObject(final Filled filled) {
+		final Integer e = filled.present[filled.next++ & TAPE - 1];
+		return filled.target.remove(e) & filled.target.offer(e);
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect.bench;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.MinMaxPriorityQueue;
+import com.palamida.util.collect.TreeQueue;
+
+/**
+ * A uniform view of the priority queues under benchmark. Bounded queues keep
+ * the {@code capacity} least elements offered to them. {@code PriorityQueue}
+ * has no bound, so it is bounded by hand, the way a caller would use it for a
+ * top-K search.
+ *
+ * @author Zhenya Leonov
+ */
+public class QueueTarget {
+
+	/**
+	 * The implementations under benchmark.
+	 */
+	public enum Impl {
+		TREE_QUEUE {
+			@Override
+			QueueTarget create(final int capacity) {
+				return new QueueTarget(TreeQueue.<Integer> create());
+			}
+		},
+		TREE_QUEUE_BOUNDED {
+			@Override
+			QueueTarget create(final int capacity) {
+				return new QueueTarget(TreeQueue.maxElements(capacity).<Integer> create());
+			}
+		},
+		PRIORITY_QUEUE {
+			@Override
+			QueueTarget create(final int capacity) {
+				return new QueueTarget(new PriorityQueue<Integer>());
+			}
+
+			@Override
+			QueueTarget createTopK(final int capacity) {
+				return new HeapTopK(capacity);
+			}
+		},
+		MIN_MAX_PRIORITY_QUEUE {
+			@Override
+			QueueTarget create(final int capacity) {
+				return new QueueTarget(MinMaxPriorityQueue.<Integer> create());
+			}
+		},
+		MIN_MAX_PRIORITY_QUEUE_BOUNDED {
+			@Override
+			QueueTarget create(final int capacity) {
+				return new QueueTarget(MinMaxPriorityQueue.maximumSize(capacity).<Integer> create());
+			}
+		};
+
+		/**
+		 * Creates an empty queue. Bounded implementations use the specified
+		 * capacity, which unbounded ones ignore.
+		 */
+		abstract QueueTarget create(int capacity);
+
+		/**
+		 * Creates an empty queue which retains the {@code capacity} least
+		 * elements offered to it.
+		 */
+		QueueTarget createTopK(final int capacity) {
+			return create(capacity);
+		}
+	}
+
+	final Queue<Integer> queue;
+
+	private QueueTarget(final Queue<Integer> queue) {
+		this.queue = queue;
+	}
+
+	/**
+	 * Offers an element to the queue, returning {@code false} if it was
+	 * rejected (or, for a bounded {@code MinMaxPriorityQueue}, immediately
+	 * evicted).
+	 */
+	boolean offer(final Integer e) {
+		return queue.offer(e);
+	}
+
+	Integer poll() {
+		return queue.poll();
+	}
+
+	boolean remove(final Integer e) {
+		return queue.remove(e);
+	}
+
+	/**
+	 * Visits the elements from greatest to least. Only {@code TreeQueue} can
+	 * iterate in order; the heaps are copied and sorted.
+	 */
+	void descending(final Blackhole blackhole) {
+		if (queue instanceof TreeQueue) {
+			final Iterator<Integer> iterator = ((TreeQueue<Integer>) queue).descendingIterator();
+			while (iterator.hasNext())
+				blackhole.consume(iterator.next());
+		} else {
+			final Object[] elements = queue.toArray();
+			Arrays.sort(elements, Collections.reverseOrder());
+			for (Object e : elements)
+				blackhole.consume(e);
+		}
+	}
+
+	/*
+	 * An unbounded heap restricted to the least capacity elements by hand:
+	 * the greatest retained element is kept at the head of a reverse-ordered
+	 * heap, and a new element replaces it only if it is smaller.
+	 */
+	private static final class HeapTopK extends QueueTarget {
+		private final int capacity;
+
+		HeapTopK(final int capacity) {
+			super(new PriorityQueue<Integer>(11, Collections.<Integer> reverseOrder()));
+			this.capacity = capacity;
+		}
+
+		@Override
+		boolean offer(final Integer e) {
+			if (queue.size() < capacity)
+				return queue.offer(e);
+			if (e.compareTo(queue.peek()) >= 0)
+				return false;
+			queue.poll();
+			return queue.offer(e);
+		}
+	}
+
+}
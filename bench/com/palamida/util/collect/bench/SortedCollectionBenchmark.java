@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of the sorted collections in this library against
+ * {@code java.util.TreeSet}, an {@code ArrayList} kept sorted by binary
+ * search, and Guava's {@code TreeMultiset}.
+ * <p>
+ * The {@link #mixed()} benchmark replays a precomputed tape of lookups,
+ * insertions, and removals in the proportions given by the {@code mix}
+ * parameter. Every removal takes out the oldest key still inserted, so the
+ * size of the collection stays constant and the measurement reflects steady
+ * state rather than growth. Run with {@code -prof gc} (the default of the
+ * {@code bench} Ant target) to report the allocation rate next to the
+ * throughput.
+ *
+ * @author Zhenya Leonov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SortedCollectionBenchmark {
+
+	/**
+	 * The proportions of lookups, insertions, and removals performed by the
+	 * {@link SortedCollectionBenchmark#mixed()} benchmark. Insertions and
+	 * removals are always equally frequent.
+	 */
+	public enum Mix {
+		READ_MOSTLY(90), BALANCED(50), WRITE_MOSTLY(10);
+
+		private final int lookupPercent;
+
+		private Mix(final int lookupPercent) {
+			this.lookupPercent = lookupPercent;
+		}
+	}
+
+	private static final int TAPE = 1 << 20;
+	private static final byte LOOKUP = 0;
+	private static final byte ADD = 1;
+	private static final byte REMOVE = 2;
+
+	@Param({ "SKIPLIST", "TREELIST", "PACKEDLIST", "TREE_SET", "SKIPLIST_SET", "RANK_LIST", "JDK_TREE_SET", "ARRAY_LIST",
+			"GUAVA_TREE_MULTISET" })
+	public Target.Impl impl;
+
+	@Param({ "1000", "100000" })
+	public int size;
+
+	@Param({ "RANDOM", "SEQUENTIAL", "ZIPFIAN" })
+	public Distribution distribution;
+
+	@Param({ "READ_MOSTLY", "BALANCED", "WRITE_MOSTLY" })
+	public Mix mix;
+
+	private Target target;
+	private Integer[] keys;
+	private Integer[] lookups;
+	private byte[] ops;
+	private int op;
+	private int added;
+	private int removed;
+	private int lookup;
+
+	@Setup
+	public void setup() {
+		final int range = 2 * size;
+		keys = distribution.keys(TAPE, range, 1);
+		lookups = distribution.keys(TAPE, range, 2);
+		ops = new byte[TAPE];
+		final Random random = new Random(3);
+		for (int i = 0; i < TAPE; i++) {
+			final int r = random.nextInt(100);
+			ops[i] = r < mix.lookupPercent ? LOOKUP : r % 2 == 0 ? ADD : REMOVE;
+		}
+		target = impl.create();
+		for (added = 0; added < size; added++)
+			target.add(keys[added]);
+		removed = 0;
+		op = 0;
+		lookup = 0;
+	}
+
+	/**
+	 * Performs the next operation on the tape.
+	 */
+	@Benchmark
+	public boolean mixed() {
+		switch (ops[op++ & TAPE - 1]) {
+		case ADD:
+			return target.add(keys[added++ & TAPE - 1]);
+		case REMOVE:
+			if (removed == added)
+				return false;
+			return target.remove(keys[removed++ & TAPE - 1]);
+		default:
+			return target.contains(lookups[lookup++ & TAPE - 1]);
+		}
+	}
+
+	/**
+	 * Looks up the next key, which may or may not be present.
+	 */
+	@Benchmark
+	public boolean contains() {
+		return target.contains(lookups[lookup++ & TAPE - 1]);
+	}
+
+	/**
+	 * Iterates over every element in order.
+	 */
+	@Benchmark
+	public void iterate(final Blackhole blackhole) {
+		for (Integer e : target.elements())
+			blackhole.consume(e);
+	}
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.TreeMultiset;
+import com.palamida.util.collect.Packedlist;
+import com.palamida.util.collect.RankList;
+import com.palamida.util.collect.Skiplist;
+import com.palamida.util.collect.SkiplistSet;
+import com.palamida.util.collect.Sortedlist;
+import com.palamida.util.collect.TreeSet;
+import com.palamida.util.collect.Treelist;
+
+/**
+ * A uniform view of the sorted collections under benchmark. Sets ignore
+ * duplicate keys, so under skewed distributions they hold fewer elements than
+ * the lists.
+ *
+ * @author Zhenya Leonov
+ */
+public abstract class Target {
+
+	/**
+	 * The implementations under benchmark.
+	 */
+	public enum Impl {
+		SKIPLIST {
+			@Override
+			Target create() {
+				return new SortedlistTarget(Skiplist.<Integer> create());
+			}
+		},
+		TREELIST {
+			@Override
+			Target create() {
+				return new SortedlistTarget(Treelist.<Integer> create());
+			}
+		},
+		PACKEDLIST {
+			@Override
+			Target create() {
+				return new SortedlistTarget(Packedlist.<Integer> create());
+			}
+		},
+		TREE_SET {
+			@Override
+			Target create() {
+				return new CollectionTarget(TreeSet.<Integer> create());
+			}
+		},
+		SKIPLIST_SET {
+			@Override
+			Target create() {
+				return new CollectionTarget(SkiplistSet.<Integer> create());
+			}
+		},
+		RANK_LIST {
+			@Override
+			Target create() {
+				return new BinarySearchTarget(RankList.<Integer> create());
+			}
+		},
+		JDK_TREE_SET {
+			@Override
+			Target create() {
+				return new CollectionTarget(new java.util.TreeSet<Integer>());
+			}
+		},
+		ARRAY_LIST {
+			@Override
+			Target create() {
+				return new BinarySearchTarget(new ArrayList<Integer>());
+			}
+		},
+		GUAVA_TREE_MULTISET {
+			@Override
+			Target create() {
+				return new CollectionTarget(TreeMultiset.<Integer> create());
+			}
+		};
+
+		abstract Target create();
+	}
+
+	abstract boolean add(Integer e);
+
+	abstract boolean remove(Integer e);
+
+	abstract boolean contains(Integer e);
+
+	/**
+	 * Returns the element at the specified position, or throws
+	 * {@code UnsupportedOperationException} if the target is not indexed.
+	 */
+	abstract Integer get(int index);
+
+	abstract int size();
+
+	abstract Iterable<Integer> elements();
+
+	private static class CollectionTarget extends Target {
+		final Collection<Integer> c;
+
+		CollectionTarget(final Collection<Integer> c) {
+			this.c = c;
+		}
+
+		@Override
+		boolean add(final Integer e) {
+			return c.add(e);
+		}
+
+		@Override
+		boolean remove(final Integer e) {
+			return c.remove(e);
+		}
+
+		@Override
+		boolean contains(final Integer e) {
+			return c.contains(e);
+		}
+
+		@Override
+		Integer get(final int index) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		int size() {
+			return c.size();
+		}
+
+		@Override
+		Iterable<Integer> elements() {
+			return c;
+		}
+	}
+
+	private static final class SortedlistTarget extends CollectionTarget {
+		private final Sortedlist<Integer> list;
+
+		SortedlistTarget(final Sortedlist<Integer> list) {
+			super(list);
+			this.list = list;
+		}
+
+		@Override
+		Integer get(final int index) {
+			return list.get(index);
+		}
+	}
+
+	/*
+	 * Keeps a plain list sorted by inserting each element at the position
+	 * found by a binary search.
+	 */
+	private static final class BinarySearchTarget extends Target {
+		private final List<Integer> list;
+
+		BinarySearchTarget(final List<Integer> list) {
+			this.list = list;
+		}
+
+		@Override
+		boolean add(final Integer e) {
+			final int i = Collections.binarySearch(list, e);
+			list.add(i < 0 ? -i - 1 : i, e);
+			return true;
+		}
+
+		@Override
+		boolean remove(final Integer e) {
+			final int i = Collections.binarySearch(list, e);
+			if (i < 0)
+				return false;
+			list.remove(i);
+			return true;
+		}
+
+		@Override
+		boolean contains(final Integer e) {
+			return Collections.binarySearch(list, e) >= 0;
+		}
+
+		@Override
+		Integer get(final int index) {
+			return list.get(index);
+		}
+
+		@Override
+		int size() {
+			return list.size();
+		}
+
+		@Override
+		Iterable<Integer> elements() {
+			return list;
+		}
+	}
+
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import com.google.common.collect.MinMaxPriorityQueue;
+import com.google.common.collect.Ordering;
+import com.palamida.util.collect.Packedlist;
+import com.palamida.util.collect.Skiplist;
+import com.palamida.util.collect.SkiplistSet;
+import com.palamida.util.collect.Sortedlist;
+import com.palamida.util.collect.TraceReader;
+import com.palamida.util.collect.TreeQueue;
+import com.palamida.util.collect.TreeSet;
+import com.palamida.util.collect.Traces;
+import com.palamida.util.collect.Traces.Codec;
+import com.palamida.util.collect.Traces.Op;
+import com.palamida.util.collect.Treelist;
+
+/**
+ * Replays a trace recorded by one of the {@link Traces} decorators against
+ * several implementations, and reports for each the time taken by a replay,
+ * the bytes allocated, and a latency histogram of every operation.
+ * <p>
+ * Usage: {@code TraceReplay trace integers|longs|strings [impl...]}. The trace
+ * is read into memory before the first replay. Without an explicit list of
+ * implementations every implementation which supports the operations in the
+ * trace is replayed: the sorted-lists for traces with positional operations,
+ * the queues for queue traces, and the sorted-lists and sets for any other
+ * trace. Sets ignore duplicate keys, so they replay a different workload if
+ * the recorded collection held duplicates.
+ * <p>
+ * Each implementation is replayed {@value #WARMUPS} times to warm up, then
+ * {@value #ITERATIONS} times to measure the total time and allocation, and
+ * {@value #ITERATIONS} more times with every operation timed.
+ *
+ * @author Zhenya Leonov
+ */
+public final class TraceReplay {
+
+	private static final int WARMUPS = 5;
+	private static final int ITERATIONS = 10;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static final Comparator<Object> NATURAL = (Comparator) Ordering.natural();
+
+	private static long sink;
+
+	private TraceReplay() {
+	}
+
+	private enum Kind {
+		COLLECTION, LIST, QUEUE
+	}
+
+	private enum Impl {
+		TREELIST(Kind.LIST) {
+			@Override
+			Collection<Object> create(final int bound) {
+				return Treelist.orderedBy(NATURAL).create();
+			}
+		},
+		SKIPLIST(Kind.LIST) {
+			@Override
+			Collection<Object> create(final int bound) {
+				return Skiplist.orderedBy(NATURAL).create();
+			}
+		},
+		PACKEDLIST(Kind.LIST) {
+			@Override
+			Collection<Object> create(final int bound) {
+				return Packedlist.orderedBy(NATURAL).create();
+			}
+		},
+		TREE_SET(Kind.COLLECTION) {
+			@Override
+			Collection<Object> create(final int bound) {
+				return TreeSet.create(NATURAL);
+			}
+		},
+		SKIPLIST_SET(Kind.COLLECTION) {
+			@Override
+			Collection<Object> create(final int bound) {
+				return SkiplistSet.create(NATURAL);
+			}
+		},
+		TREE_QUEUE(Kind.QUEUE) {
+			@Override
+			Collection<Object> create(final int bound) {
+				return TreeQueue.orderedBy(NATURAL).maxElements(bound).create();
+			}
+		},
+		MIN_MAX_PRIORITY_QUEUE(Kind.QUEUE) {
+			@Override
+			Collection<Object> create(final int bound) {
+				return MinMaxPriorityQueue.orderedBy(NATURAL).maximumSize(bound).create();
+			}
+		},
+		/**
+		 * Unbounded traces only.
+		 */
+		PRIORITY_QUEUE(Kind.QUEUE) {
+			@Override
+			Collection<Object> create(final int bound) {
+				return bound == Integer.MAX_VALUE ? new PriorityQueue<Object>(11, NATURAL) : null;
+			}
+		};
+
+		private final Kind kind;
+
+		private Impl(final Kind kind) {
+			this.kind = kind;
+		}
+
+		/**
+		 * Returns an empty collection bounded to the specified capacity, or
+		 * {@code null} if this implementation cannot be bounded.
+		 */
+		abstract Collection<Object> create(int bound);
+
+		boolean supports(final Kind trace) {
+			return trace == kind || trace == Kind.COLLECTION && kind == Kind.LIST;
+		}
+	}
+
+	/*
+	 * The trace held in parallel arrays, so that reading it costs nothing
+	 * during a replay.
+	 */
+	private static final class Trace {
+		private Op[] ops = new Op[1024];
+		private Object[] keys = new Object[1024];
+		private int[] indexes = new int[1024];
+		private int[] counts = new int[1024];
+		private int size = 0;
+		private int bound = Integer.MAX_VALUE;
+		private final EnumSet<Op> present = EnumSet.noneOf(Op.class);
+
+		static Trace read(final File file, final Codec<?> codec) throws IOException {
+			final Trace trace = new Trace();
+			final TraceReader<?> reader = TraceReader.open(file, codec);
+			try {
+				while (reader.next())
+					if (reader.op() == Op.BOUND)
+						trace.bound = reader.index();
+					else
+						trace.add(reader.op(), reader.key(), reader.index(), reader.count());
+			} finally {
+				reader.close();
+			}
+			return trace;
+		}
+
+		private void add(final Op op, final Object key, final int index, final int count) {
+			if (size == ops.length) {
+				ops = Arrays.copyOf(ops, size * 2);
+				keys = Arrays.copyOf(keys, size * 2);
+				indexes = Arrays.copyOf(indexes, size * 2);
+				counts = Arrays.copyOf(counts, size * 2);
+			}
+			ops[size] = op;
+			keys[size] = key;
+			indexes[size] = index;
+			counts[size] = count;
+			size++;
+			present.add(op);
+		}
+
+		Kind kind() {
+			if (bound != Integer.MAX_VALUE || present.contains(Op.OFFER) || present.contains(Op.POLL)
+					|| present.contains(Op.PEEK))
+				return Kind.QUEUE;
+			if (present.contains(Op.GET) || present.contains(Op.REMOVE_AT) || present.contains(Op.INDEX_OF)
+					|| present.contains(Op.LAST_INDEX_OF))
+				return Kind.LIST;
+			return Kind.COLLECTION;
+		}
+	}
+
+	/*
+	 * Log-linear buckets: exact below 32ns, then 16 buckets per power of two,
+	 * so that every value is reported within 6.25%.
+	 */
+	private static final class Histogram {
+		private final long[] buckets = new long[64 * 16];
+		private long count = 0;
+		private long max = 0;
+
+		void record(final long nanos) {
+			buckets[bucket(nanos)]++;
+			count++;
+			if (nanos > max)
+				max = nanos;
+		}
+
+		long count() {
+			return count;
+		}
+
+		long max() {
+			return max;
+		}
+
+		long percentile(final double p) {
+			final long rank = (long) Math.ceil(p * count);
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank)
+					return Math.min(value(i), max);
+			}
+			return max;
+		}
+
+		private static int bucket(final long nanos) {
+			if (nanos < 32)
+				return (int) nanos;
+			final int shift = 59 - Long.numberOfLeadingZeros(nanos);
+			return shift * 16 + (int) (nanos >>> shift);
+		}
+
+		/*
+		 * The largest value in the bucket.
+		 */
+		private static long value(final int bucket) {
+			if (bucket < 32)
+				return bucket;
+			final int shift = bucket / 16 - 1;
+			return ((long) (bucket - shift * 16 + 1) << shift) - 1;
+		}
+	}
+
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: TraceReplay trace integers|longs|strings [impl...]");
+			System.exit(2);
+		}
+		final Trace trace = Trace.read(new File(args[0]), codec(args[1]));
+		final Kind kind = trace.kind();
+		final List<Impl> impls = new ArrayList<Impl>();
+		if (args.length > 2)
+			for (int i = 2; i < args.length; i++) {
+				final Impl impl = Impl.valueOf(args[i].toUpperCase());
+				if (!impl.supports(kind))
+					throw new IllegalArgumentException(impl + " cannot replay a " + kind.toString().toLowerCase()
+							+ " trace");
+				impls.add(impl);
+			}
+		else
+			for (Impl impl : Impl.values())
+				if (impl.supports(kind))
+					impls.add(impl);
+
+		System.out.printf("%d operations, %s trace%s, %s%n", trace.size, kind.toString().toLowerCase(),
+				trace.bound == Integer.MAX_VALUE ? "" : " bounded to " + trace.bound, trace.present);
+		for (Impl impl : impls) {
+			if (impl.create(trace.bound) == null) {
+				System.out.printf("%n%s: skipped, cannot be bounded%n", impl);
+				continue;
+			}
+			report(impl, trace);
+		}
+	}
+
+	private static Codec<?> codec(final String name) {
+		if (name.equals("integers"))
+			return Traces.integers();
+		if (name.equals("longs"))
+			return Traces.longs();
+		if (name.equals("strings"))
+			return Traces.strings();
+		throw new IllegalArgumentException("unknown codec: " + name);
+	}
+
+	private static void report(final Impl impl, final Trace trace) {
+		for (int i = 0; i < WARMUPS; i++)
+			replay(impl.create(trace.bound), trace, null);
+
+		final long[] times = new long[ITERATIONS];
+		long allocated = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			final Collection<Object> c = impl.create(trace.bound);
+			final long bytes = allocatedBytes();
+			final long start = System.nanoTime();
+			replay(c, trace, null);
+			times[i] = System.nanoTime() - start;
+			allocated += allocatedBytes() - bytes;
+		}
+		Arrays.sort(times);
+
+		final Histogram[] histograms = new Histogram[Op.values().length];
+		for (Op op : trace.present)
+			histograms[op.ordinal()] = new Histogram();
+		for (int i = 0; i < ITERATIONS; i++)
+			replay(impl.create(trace.bound), trace, histograms);
+
+		System.out.printf("%n%s: median %.3f ms, min %.3f ms", impl, times[ITERATIONS / 2] / 1e6, times[0] / 1e6);
+		if (allocated >= 0)
+			System.out.printf(", %d bytes allocated per replay", allocated / ITERATIONS);
+		System.out.println();
+		System.out.printf("  %-14s %10s %10s %10s %10s %10s%n", "op (ns)", "count", "p50", "p90", "p99", "max");
+		for (Op op : trace.present) {
+			final Histogram h = histograms[op.ordinal()];
+			System.out.printf("  %-14s %10d %10d %10d %10d %10d%n", op, h.count() / ITERATIONS, h.percentile(.5),
+					h.percentile(.9), h.percentile(.99), h.max());
+		}
+	}
+
+	/*
+	 * Returns the bytes allocated by the current thread so far, or a large
+	 * negative number if the JVM cannot tell, so that the total is negative.
+	 */
+	private static long allocatedBytes() {
+		try {
+			final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			if (threads instanceof com.sun.management.ThreadMXBean)
+				return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread()
+						.getId());
+		} catch (UnsupportedOperationException e) {
+		}
+		return Long.MIN_VALUE / (4 * ITERATIONS);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void replay(final Collection<Object> c, final Trace trace, final Histogram[] histograms) {
+		final Sortedlist<Object> list = c instanceof Sortedlist ? (Sortedlist<Object>) c : null;
+		final Queue<Object> queue = c instanceof Queue ? (Queue<Object>) c : null;
+		long sink = 0;
+		long start = histograms == null ? 0 : System.nanoTime();
+		for (int i = 0; i < trace.size; i++) {
+			final Op op = trace.ops[i];
+			final Object key = trace.keys[i];
+			final int index = trace.indexes[i];
+			switch (op) {
+			case ADD:
+				sink += c.add(key) ? 1 : 0;
+				break;
+			case REMOVE:
+				sink += c.remove(key) ? 1 : 0;
+				break;
+			case CONTAINS:
+				sink += c.contains(key) ? 1 : 0;
+				break;
+			case INDEX_OF:
+				sink += list.indexOf(key);
+				break;
+			case LAST_INDEX_OF:
+				sink += list.lastIndexOf(key);
+				break;
+			case GET:
+				sink += list.get(index).hashCode();
+				break;
+			case REMOVE_AT:
+				sink += list.remove(index).hashCode();
+				break;
+			case OFFER:
+				sink += queue.offer(key) ? 1 : 0;
+				break;
+			case POLL:
+				sink += queue.poll() == null ? 0 : 1;
+				break;
+			case PEEK:
+				sink += queue.peek() == null ? 0 : 1;
+				break;
+			case CLEAR:
+				c.clear();
+				break;
+			case ITERATE:
+				sink += iterate(c, list, index, trace.counts[i]);
+				break;
+			default:
+				break;
+			}
+			if (histograms != null) {
+				final long end = System.nanoTime();
+				histograms[op.ordinal()].record(end - start);
+				start = end;
+			}
+		}
+		TraceReplay.sink += sink;
+	}
+
+	private static long iterate(final Collection<Object> c, final Sortedlist<Object> list, final int index,
+			final int count) {
+		final Iterator<Object> iterator;
+		if (list != null)
+			iterator = list.listIterator(Math.min(index, list.size()));
+		else {
+			iterator = c.iterator();
+			for (int i = 0; i < index && iterator.hasNext(); i++)
+				iterator.next();
+		}
+		long sink = 0;
+		for (int i = 0; i < count && iterator.hasNext(); i++)
+			sink += iterator.next().hashCode();
+		return sink;
+	}
+
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+
+import com.google.common.collect.ForwardingListIterator;
+
+/**
+ * A {@link Sortedlist} which records the mix of operations performed on it and
+ * switches between a {@link Treelist} and a {@link Skiplist} backing
+ * implementation to suit that mix. Instances of this class are obtained by
+ * calling {@link Sortedlists#newAdaptiveSortedlist()} or
+ * {@link Sortedlists#newAdaptiveSortedlist(Comparator)}.
+ * <p>
+ * A {@code Treelist} uses less memory than a {@code Skiplist}, but runs
+ * positional operations ({@code get(int)}, {@code remove(int)},
+ * {@code indexOf(Object)}, {@code lastIndexOf(Object)},
+ * {@code listIterator(int)}, and {@code sublist(int, int)}) in linear rather
+ * than logarithmic time. This list starts out backed by a {@code Treelist}.
+ * Periodically, after a number of operations at least equal to its size, it
+ * estimates the cost of the recent operations under each implementation, and
+ * migrates to a {@code Skiplist} once the recent operations would run at
+ * least twice as fast there, and back to a {@code Treelist} once they no
+ * longer would. Iterating over a {@code Skiplist} is slower, so scan-heavy
+ * workloads favor the {@code Treelist}. Because the evaluation period grows
+ * with the size of the list, the cost of migrating (copying the elements into
+ * the new backing implementation) is amortized over the operations which
+ * triggered it.
+ * <p>
+ * The workload is evaluated by every operation except those of iterators and
+ * sub-lists, so a list which is built once and then only queried by index
+ * migrates as well. Like any other structural modification, a migration
+ * invalidates all iterators and sub-lists obtained from this list, which then
+ * throw {@code ConcurrentModificationException}; this may happen during a
+ * read such as {@code get(int)}. The decisions taken so far are available
+ * through {@link #stats()}.
+ * <p>
+ * This sorted-list is not <i>thread-safe</i>. If multiple threads modify this
+ * sorted-list concurrently it must be synchronized externally.
+ *
+ * @author Zhenya Leonov
+ * @param <E>
+ *            the type of elements maintained by this list
+ * @see Sortedlists#newAdaptiveSortedlist()
+ */
+public final class AdaptiveSortedlist<E> extends AbstractCollection<E>
+		implements Sortedlist<E>, Serializable {
+
+	/**
+	 * The implementations which may back an {@code AdaptiveSortedlist}.
+	 */
+	public static enum Backing {
+		/**
+		 * A {@link Treelist}.
+		 */
+		TREELIST,
+		/**
+		 * A {@link Skiplist}.
+		 */
+		SKIPLIST;
+	}
+
+	private static final long serialVersionUID = 1L;
+	private static final int MIN_PERIOD = 1024;
+	private final Comparator<? super E> comparator;
+	private Sortedlist<E> delegate;
+	private Backing backing = Backing.TREELIST;
+	private transient int generation = 0;
+	private long positional = 0;
+	private long inserts = 0;
+	private long removals = 0;
+	private long searches = 0;
+	private long iterations = 0;
+	private int migrations = 0;
+
+	AdaptiveSortedlist(final Comparator<? super E> comparator) {
+		this.comparator = checkNotNull(comparator);
+		delegate = Treelist.orderedBy(comparator).create();
+	}
+
+	/**
+	 * A snapshot of the operation counts recorded by an
+	 * {@code AdaptiveSortedlist}, and of the decisions it has taken. Operation
+	 * counts cover the current evaluation period only, and are reset each time
+	 * the list evaluates its workload.
+	 */
+	public static final class Stats {
+		private final Backing backing;
+		private final int migrations;
+		private final long positional;
+		private final long inserts;
+		private final long removals;
+		private final long searches;
+		private final long iterations;
+
+		private Stats(final AdaptiveSortedlist<?> list) {
+			backing = list.backing;
+			migrations = list.migrations;
+			positional = list.positional;
+			inserts = list.inserts;
+			removals = list.removals;
+			searches = list.searches;
+			iterations = list.iterations;
+		}
+
+		/**
+		 * Returns the implementation backing the list.
+		 *
+		 * @return the implementation backing the list
+		 */
+		public Backing backing() {
+			return backing;
+		}
+
+		/**
+		 * Returns the number of times the list has migrated to a different
+		 * backing implementation.
+		 *
+		 * @return the number of migrations
+		 */
+		public int migrations() {
+			return migrations;
+		}
+
+		/**
+		 * Returns the number of positional operations in the current period.
+		 *
+		 * @return the number of positional operations
+		 */
+		public long positionalOperations() {
+			return positional;
+		}
+
+		/**
+		 * Returns the number of insertions in the current period.
+		 *
+		 * @return the number of insertions
+		 */
+		public long insertions() {
+			return inserts;
+		}
+
+		/**
+		 * Returns the number of removals by value in the current period.
+		 *
+		 * @return the number of removals
+		 */
+		public long removals() {
+			return removals;
+		}
+
+		/**
+		 * Returns the number of {@code contains(Object)} queries in the current
+		 * period.
+		 *
+		 * @return the number of searches
+		 */
+		public long searches() {
+			return searches;
+		}
+
+		/**
+		 * Returns the number of iterations started in the current period.
+		 *
+		 * @return the number of iterations
+		 */
+		public long iterations() {
+			return iterations;
+		}
+
+		@Override
+		public String toString() {
+			return "Stats{backing=" + backing + ", migrations=" + migrations
+					+ ", positional=" + positional + ", insertions=" + inserts
+					+ ", removals=" + removals + ", searches=" + searches
+					+ ", iterations=" + iterations + "}";
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the operation counts recorded by this list, its
+	 * current backing implementation, and the number of migrations it has
+	 * performed.
+	 *
+	 * @return a snapshot of the statistics recorded by this list
+	 */
+	public Stats stats() {
+		return new Stats(this);
+	}
+
+	@Override
+	public Comparator<? super E> comparator() {
+		return comparator;
+	}
+
+	/**
+	 * Inserts the specified element into this list in sorted order.
+	 */
+	@Override
+	public boolean add(E e) {
+		inserts++;
+		final boolean result = delegate.add(e);
+		evaluate();
+		return result;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		removals++;
+		final boolean result = delegate.remove(o);
+		evaluate();
+		return result;
+	}
+
+	@Override
+	public E remove(int index) {
+		positional++;
+		final E e = delegate.remove(index);
+		evaluate();
+		return e;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		searches++;
+		evaluate();
+		return delegate.contains(o);
+	}
+
+	@Override
+	public E get(int index) {
+		positional++;
+		evaluate();
+		return delegate.get(index);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		positional++;
+		evaluate();
+		return delegate.indexOf(o);
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		positional++;
+		evaluate();
+		return delegate.lastIndexOf(o);
+	}
+
+	@Override
+	public int size() {
+		return delegate.size();
+	}
+
+	@Override
+	public void clear() {
+		delegate.clear();
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return listIterator();
+	}
+
+	@Override
+	public ListIterator<E> listIterator() {
+		iterations++;
+		evaluate();
+		return new CheckedListIterator(delegate.listIterator());
+	}
+
+	@Override
+	public ListIterator<E> listIterator(int index) {
+		positional++;
+		evaluate();
+		return new CheckedListIterator(delegate.listIterator(index));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The returned view is invalidated if this list migrates to a different
+	 * backing implementation.
+	 */
+	@Override
+	public Sortedlist<E> sublist(int fromIndex, int toIndex) {
+		positional++;
+		evaluate();
+		return new CheckedSortedlist(delegate.sublist(fromIndex, toIndex));
+	}
+
+	@Override
+	public int hashCode() {
+		return delegate.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o == this || delegate.equals(o);
+	}
+
+	/*
+	 * Estimates the cost of the operations recorded since the last evaluation,
+	 * counting lg n per logarithmic operation and n / 2 per positional
+	 * operation on a Treelist, twice lg n per operation on a Skiplist, and n / 2
+	 * per iteration on a Treelist and twice that on a Skiplist, whose larger
+	 * constant factors make both searching and scanning slower. Runs in
+	 * constant time until the end of the period.
+	 */
+	private void evaluate() {
+		final int size = delegate.size();
+		final long logarithmic = inserts + removals + searches;
+		if (positional + logarithmic + iterations < Math.max(MIN_PERIOD, size))
+			return;
+		final double log = Math.max(1, 32 - Integer.numberOfLeadingZeros(size));
+		final double treeCost = positional * (size / 2.0) + logarithmic * log + iterations * (size / 2.0);
+		final double skipCost = (positional + logarithmic) * 2 * log + iterations * 2 * (size / 2.0);
+		if (backing == Backing.TREELIST && 2 * skipCost < treeCost)
+			migrate(Backing.SKIPLIST);
+		else if (backing == Backing.SKIPLIST && treeCost < skipCost)
+			migrate(Backing.TREELIST);
+		positional = inserts = removals = searches = iterations = 0;
+	}
+
+	private void migrate(final Backing target) {
+		if (target == Backing.SKIPLIST)
+			delegate = Skiplist.orderedBy(comparator).create(delegate);
+		else
+			delegate = Treelist.orderedBy(comparator).create(delegate);
+		backing = target;
+		migrations++;
+		generation++;
+	}
+
+	private void checkGeneration(final int expectedGeneration) {
+		if (generation != expectedGeneration)
+			throw new ConcurrentModificationException();
+	}
+
+	private final class CheckedListIterator extends ForwardingListIterator<E> {
+		private final ListIterator<E> listIterator;
+		private final int expectedGeneration = generation;
+
+		private CheckedListIterator(final ListIterator<E> listIterator) {
+			this.listIterator = listIterator;
+		}
+
+		@Override
+		protected ListIterator<E> delegate() {
+			checkGeneration(expectedGeneration);
+			return listIterator;
+		}
+	}
+
+	private final class CheckedSortedlist extends AbstractCollection<E>
+			implements Sortedlist<E> {
+		private final Sortedlist<E> sublist;
+		private final int expectedGeneration = generation;
+
+		private CheckedSortedlist(final Sortedlist<E> sublist) {
+			this.sublist = sublist;
+		}
+
+		private Sortedlist<E> sublist() {
+			checkGeneration(expectedGeneration);
+			return sublist;
+		}
+
+		@Override
+		public Comparator<? super E> comparator() {
+			return comparator;
+		}
+
+		@Override
+		public boolean add(E e) {
+			return sublist().add(e);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return sublist().remove(o);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return sublist().contains(o);
+		}
+
+		@Override
+		public int size() {
+			return sublist().size();
+		}
+
+		@Override
+		public void clear() {
+			sublist().clear();
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return listIterator();
+		}
+
+		@Override
+		public E get(int index) {
+			return sublist().get(index);
+		}
+
+		@Override
+		public E remove(int index) {
+			return sublist().remove(index);
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			return sublist().indexOf(o);
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			return sublist().lastIndexOf(o);
+		}
+
+		@Override
+		public ListIterator<E> listIterator() {
+			return new CheckedListIterator(sublist().listIterator());
+		}
+
+		@Override
+		public ListIterator<E> listIterator(int index) {
+			return new CheckedListIterator(sublist().listIterator(index));
+		}
+
+		@Override
+		public Sortedlist<E> sublist(int fromIndex, int toIndex) {
+			return new CheckedSortedlist(sublist().sublist(fromIndex, toIndex));
+		}
+
+		@Override
+		public int hashCode() {
+			return sublist().hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o == this || sublist().equals(o);
+		}
+	}
+
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters describing the internal work performed by instrumented
+ * {@link Skiplist}, {@link Treelist}, and {@link TreeQueue} instances:
+ * comparator invocations, node visits per search, tree rotations, and the
+ * distribution of skip list node heights.
+ * <p>
+ * Collections are instrumented at creation through their builders, for
+ * example:
+ *
+ * <pre>
+ * final CollectionMetrics metrics = CollectionMetrics.create();
+ * final Skiplist&lt;String&gt; list = Skiplist.orderedBy(Ordering.natural()).metrics(metrics).create();
+ * metrics.register(&quot;index&quot;);
+ * </pre>
+ * <p>
+ * Collections which are not instrumented pay only for a {@code null} check
+ * per operation. The counters are {@link LongAdder}s, so a single
+ * {@code CollectionMetrics} may be shared by any number of collections, each
+ * confined to its own thread, without contention. Clones of an instrumented
+ * collection record into the same metrics. Serialized copies are not
+ * instrumented.
+ * <p>
+ * The counters can be pulled with {@link #snapshot()}, or published to the
+ * platform MBean server with {@link #register(String)}.
+ *
+ * @author Zhenya Leonov
+ */
+public final class CollectionMetrics implements CollectionMetricsMXBean {
+
+	private static final int MAX_LEVEL = 32;
+	private final LongAdder comparisons = new LongAdder();
+	private final LongAdder searches = new LongAdder();
+	private final LongAdder visits = new LongAdder();
+	private final LongAdder insertions = new LongAdder();
+	private final LongAdder deletions = new LongAdder();
+	private final LongAdder rotations = new LongAdder();
+	private final LongAdder[] levels = new LongAdder[MAX_LEVEL];
+
+	private CollectionMetrics() {
+		for (int i = 0; i < MAX_LEVEL; i++)
+			levels[i] = new LongAdder();
+	}
+
+	/**
+	 * Creates a new {@code CollectionMetrics} with all counters at zero.
+	 *
+	 * @return a new {@code CollectionMetrics} with all counters at zero
+	 */
+	public static CollectionMetrics create() {
+		return new CollectionMetrics();
+	}
+
+	void compared() {
+		comparisons.increment();
+	}
+
+	void searched(final int visited) {
+		searches.increment();
+		visits.add(visited);
+	}
+
+	void inserted() {
+		insertions.increment();
+	}
+
+	void deleted() {
+		deletions.increment();
+	}
+
+	void rotated() {
+		rotations.increment();
+	}
+
+	void linked(final int level) {
+		levels[level - 1].increment();
+	}
+
+	void unlinked(final int level) {
+		levels[level - 1].decrement();
+	}
+
+	@Override
+	public long getComparisons() {
+		return comparisons.sum();
+	}
+
+	@Override
+	public long getSearches() {
+		return searches.sum();
+	}
+
+	@Override
+	public long getNodeVisits() {
+		return visits.sum();
+	}
+
+	@Override
+	public long getInsertions() {
+		return insertions.sum();
+	}
+
+	@Override
+	public long getDeletions() {
+		return deletions.sum();
+	}
+
+	@Override
+	public long getRotations() {
+		return rotations.sum();
+	}
+
+	@Override
+	public double getComparisonsPerSearch() {
+		return average(comparisons.sum(), searches.sum());
+	}
+
+	@Override
+	public double getNodeVisitsPerSearch() {
+		return average(visits.sum(), searches.sum());
+	}
+
+	@Override
+	public long[] getLevelHistogram() {
+		final long[] histogram = new long[MAX_LEVEL];
+		int length = 0;
+		for (int i = 0; i < MAX_LEVEL; i++)
+			if ((histogram[i] = levels[i].sum()) != 0)
+				length = i + 1;
+		return Arrays.copyOf(histogram, length);
+	}
+
+	@Override
+	public void reset() {
+		comparisons.reset();
+		searches.reset();
+		visits.reset();
+		insertions.reset();
+		deletions.reset();
+		rotations.reset();
+	}
+
+	/**
+	 * Returns a point-in-time copy of the counters. Counters updated
+	 * concurrently with this call may or may not be reflected in the copy.
+	 *
+	 * @return a point-in-time copy of the counters
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server under the name
+	 * {@code com.palamida.util.collect:type=CollectionMetrics,name=}<i>name</i>.
+	 *
+	 * @param name
+	 *            the value of the {@code name} key of the object name
+	 * @return the object name under which these metrics were registered
+	 * @throws JMException
+	 *             if the name is invalid or already registered
+	 */
+	public ObjectName register(final String name) throws JMException {
+		checkNotNull(name);
+		final ObjectName objectName = new ObjectName("com.palamida.util.collect:type=CollectionMetrics,name="
+				+ ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	private static double average(final long total, final long count) {
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	/**
+	 * An immutable copy of the counters of a {@link CollectionMetrics}.
+	 *
+	 * @author Zhenya Leonov
+	 */
+	public static final class Snapshot {
+		private final long comparisons;
+		private final long searches;
+		private final long visits;
+		private final long insertions;
+		private final long deletions;
+		private final long rotations;
+		private final long[] levels;
+
+		private Snapshot(final CollectionMetrics metrics) {
+			comparisons = metrics.getComparisons();
+			searches = metrics.getSearches();
+			visits = metrics.getNodeVisits();
+			insertions = metrics.getInsertions();
+			deletions = metrics.getDeletions();
+			rotations = metrics.getRotations();
+			levels = metrics.getLevelHistogram();
+		}
+
+		/**
+		 * @see CollectionMetricsMXBean#getComparisons()
+		 */
+		public long comparisons() {
+			return comparisons;
+		}
+
+		/**
+		 * @see CollectionMetricsMXBean#getSearches()
+		 */
+		public long searches() {
+			return searches;
+		}
+
+		/**
+		 * @see CollectionMetricsMXBean#getNodeVisits()
+		 */
+		public long nodeVisits() {
+			return visits;
+		}
+
+		/**
+		 * @see CollectionMetricsMXBean#getInsertions()
+		 */
+		public long insertions() {
+			return insertions;
+		}
+
+		/**
+		 * @see CollectionMetricsMXBean#getDeletions()
+		 */
+		public long deletions() {
+			return deletions;
+		}
+
+		/**
+		 * @see CollectionMetricsMXBean#getRotations()
+		 */
+		public long rotations() {
+			return rotations;
+		}
+
+		/**
+		 * @see CollectionMetricsMXBean#getComparisonsPerSearch()
+		 */
+		public double comparisonsPerSearch() {
+			return average(comparisons, searches);
+		}
+
+		/**
+		 * @see CollectionMetricsMXBean#getNodeVisitsPerSearch()
+		 */
+		public double nodeVisitsPerSearch() {
+			return average(visits, searches);
+		}
+
+		/**
+		 * @see CollectionMetricsMXBean#getLevelHistogram()
+		 */
+		public long[] levelHistogram() {
+			return levels.clone();
+		}
+
+		@Override
+		public String toString() {
+			return "comparisons=" + comparisons + ", searches=" + searches + ", nodeVisits=" + visits
+					+ ", insertions=" + insertions + ", deletions=" + deletions + ", rotations=" + rotations
+					+ ", levelHistogram=" + Arrays.toString(levels);
+		}
+	}
+
+}
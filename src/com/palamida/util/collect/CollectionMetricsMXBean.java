@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+/**
+ * The management interface of {@link CollectionMetrics}. Each attribute is
+ * read from the live counters when it is requested; use
+ * {@link CollectionMetrics#snapshot()} to read all of them at once.
+ *
+ * @author Zhenya Leonov
+ * @see CollectionMetrics
+ */
+public interface CollectionMetricsMXBean {
+
+	/**
+	 * Returns the number of times the comparator was invoked.
+	 *
+	 * @return the number of times the comparator was invoked
+	 */
+	public long getComparisons();
+
+	/**
+	 * Returns the number of descents through the structure, whether to find,
+	 * insert, or remove an element, or to reach a position.
+	 *
+	 * @return the number of descents through the structure
+	 */
+	public long getSearches();
+
+	/**
+	 * Returns the number of nodes visited during all searches.
+	 *
+	 * @return the number of nodes visited during all searches
+	 */
+	public long getNodeVisits();
+
+	/**
+	 * Returns the number of elements inserted.
+	 *
+	 * @return the number of elements inserted
+	 */
+	public long getInsertions();
+
+	/**
+	 * Returns the number of elements removed.
+	 *
+	 * @return the number of elements removed
+	 */
+	public long getDeletions();
+
+	/**
+	 * Returns the number of tree rotations performed to restore balance.
+	 * Always zero for skip lists.
+	 *
+	 * @return the number of tree rotations
+	 */
+	public long getRotations();
+
+	/**
+	 * Returns the average number of comparator invocations per search.
+	 *
+	 * @return the average number of comparator invocations per search
+	 */
+	public double getComparisonsPerSearch();
+
+	/**
+	 * Returns the average number of nodes visited per search.
+	 *
+	 * @return the average number of nodes visited per search
+	 */
+	public double getNodeVisitsPerSearch();
+
+	/**
+	 * Returns the number of skip list nodes currently linked at each height,
+	 * where the i<i>th</i> entry counts the nodes of height {@code i + 1}.
+	 * Empty for trees.
+	 *
+	 * @return the number of skip list nodes at each height
+	 */
+	public long[] getLevelHistogram();
+
+	/**
+	 * Resets the cumulative counters to zero. The level histogram describes
+	 * the current shape of the instrumented lists and is not reset.
+	 */
+	public void reset();
+
+}
@@ -0,0 +1,920 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.MinMaxPriorityQueue;
+import com.google.common.collect.Ordering;
+
+/**
+ * A {@link Sortedlist} implementation based on a <a
+ * href="http://en.wikipedia.org/wiki/Skip_list">skip list</a> which stores
+ * each run of equal elements in a single node together with its length.
+ * Elements are sorted from <i>least</i> to <i>greatest</i> according to their
+ * <i>natural ordering</i>, or by an explicit {@link Comparator} provided at
+ * creation. Attempting to remove or insert {@code null} elements is
+ * prohibited. Querying for {@code null} elements is allowed. Inserting
+ * non-comparable elements will result in a {@code ClassCastException}.
+ * <p>
+ * A {@link Skiplist} stores every occurrence of an element in a separate node.
+ * This list instead keeps the first occurrence inserted, and counts any
+ * further occurrences which are deemed equal to it by the comparator. The
+ * distances maintained at each level of the skip list are measured in
+ * occurrences, so that positional access still runs in logarithmic time, while
+ * memory consumption is proportional to the number of <i>distinct</i>
+ * elements. This makes it well suited to lists with many duplicates, where it
+ * also provides the multiset operations {@link #count(Object)},
+ * {@link #add(Object, int)}, and {@link #remove(Object, int)}.
+ * <p>
+ * Since equal elements are represented by a single instance, this list should
+ * only be used when elements which are equal according to the comparator are
+ * interchangeable (for example, when the comparator is consistent with
+ * {@code equals}).
+ * <p>
+ * The iterators obtained from the {@link #iterator()} and
+ * {@link #listIterator()} methods are <i>fail-fast</i>. Attempts to modify the
+ * elements in this sorted-list at any time after an iterator is created, in any
+ * way except through the iterator's own remove method, will result in a
+ * {@code ConcurrentModificationException}. Further, the list iterator does not
+ * support the {@code add(E)} and {@code set(E)} operations.
+ * <p>
+ * This sorted-list is not <i>thread-safe</i>. If multiple threads modify this
+ * sorted-list concurrently it must be synchronized externally.
+ * <p>
+ * The following table summarizes the performance of this class compared to a
+ * {@link Skiplist} (where n is the size of this sorted-list and <i>d</i> is
+ * the number of distinct elements):
+ * <p>
+ * <table border="1" cellpadding="3" cellspacing="1" style="width:400px;">
+ *   <tr>
+ *     <th style="text-align:center;" rowspan="2">Method</th>
+ *     <th style="text-align:center;" colspan="2">Running Time</th>
+ *   </tr>
+ *   <tr>
+ *     <td style="text-align:center;"><b>CountedSkiplist</b><br>(<i>expected</i>)</td>
+ *     <td style="text-align:center;"><b>Skiplist</b><br>(<i>expected</i>)</td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #add(Object) add(E)}<br/>
+ *       {@link #contains(Object)}<br/>
+ *       {@link #remove(Object)}<br/>
+ *       {@link #indexOf(Object)}<br/>
+ *       {@link #lastIndexOf(Object)}<br/>
+ *       {@link #get(int)}<br/>
+ *       {@link #remove(int)}<br/>
+ *       {@link #listIterator(int)}
+ *     </td>
+ *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(log d)</i></td>
+ *     <td style="text-align:center;" bgcolor="FFCCCC"><i>O(log n)</i></td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #count(Object)}<br/>
+ *       {@link #add(Object, int)}<br/>
+ *       {@link #remove(Object, int)}
+ *     </td>
+ *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(log d)</i></td>
+ *     <td style="text-align:center;" bgcolor="FFCCCC"><i>n/a</i></td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #clear() clear()}<br/>
+ *       {@link #isEmpty() isEmpty()}<br/>
+ *       {@link #size()}<br/>
+ *     </td>
+ *     <td style="text-align:center;" colspan="2"><i>O(1)</i></td>
+ *   </tr>
+ * </table>
+ * <p>
+ * The sub-list views exhibit identical time complexity, with the exception of
+ * the {@code clear()} operation which runs in time proportional to the size of
+ * the view times log d.
+ *
+ * @author Zhenya Leonov
+ * @param <E>
+ *            the type of elements maintained by this list
+ * @see Skiplist
+ */
+public class CountedSkiplist<E> extends AbstractCollection<E> implements Sortedlist<E>, Serializable, Cloneable {
+
+	private static final long serialVersionUID = 1L;
+	private static final double P = .5;
+	private static final int MAX_LEVEL = 32;
+	private transient int size = 0;
+	private transient int distinct = 0;
+	private transient int level = 1;
+	private transient Random random = new Random();
+	private transient Node<E> head = new Node<E>(null, MAX_LEVEL);
+	private final Comparator<? super E> comparator;
+	@SuppressWarnings("unchecked")
+	private transient Node<E>[] update = new Node[MAX_LEVEL];
+	private transient int[] rank = new int[MAX_LEVEL];
+	private transient int modCount = 0;
+
+	private CountedSkiplist(final Comparator<? super E> comparator) {
+		this.comparator = comparator;
+		init();
+	}
+
+	/**
+	 * Creates a new {@code CountedSkiplist} that orders its elements according
+	 * to their <i>natural ordering</i>.
+	 *
+	 * @return a new {@code CountedSkiplist} that orders its elements according
+	 *         to their <i>natural ordering</i>
+	 */
+	public static <E extends Comparable<? super E>> CountedSkiplist<E> create() {
+		return new CountedSkiplist<E>(Ordering.natural());
+	}
+
+	/**
+	 * Creates a new {@code CountedSkiplist} containing the specified initial
+	 * elements. If {@code elements} is an instance of {@link SortedSet},
+	 * {@link PriorityQueue}, {@link MinMaxPriorityQueue}, or
+	 * {@code SortedCollection}, this list will be ordered according to the same
+	 * ordering. Otherwise, this list will be ordered according to the
+	 * <i>natural ordering</i> of its elements.
+	 *
+	 * @param elements
+	 *            the collection whose elements are to be placed into the list
+	 * @return a new {@code CountedSkiplist} containing the elements of the
+	 *         specified collection
+	 * @throws ClassCastException
+	 *             if elements of the specified collection cannot be compared to
+	 *             one another according to this list's ordering
+	 * @throws NullPointerException
+	 *             if any of the elements of the specified collection or the
+	 *             collection itself is {@code null}
+	 */
+	@SuppressWarnings({ "unchecked" })
+	public static <E extends Comparable<? super E>> CountedSkiplist<E> from(final Collection<? extends E> elements) {
+		checkNotNull(elements);
+		final Comparator<? super E> comparator;
+		if (elements instanceof SortedSet<?>)
+			comparator = ((SortedSet<? super E>) elements).comparator();
+		else if (elements instanceof PriorityQueue<?>)
+			comparator = ((PriorityQueue<? super E>) elements).comparator();
+		else if (elements instanceof SortedCollection<?>)
+			comparator = ((SortedCollection<? super E>) elements).comparator();
+		else if (elements instanceof MinMaxPriorityQueue<?>)
+			comparator = ((MinMaxPriorityQueue<? super E>) elements).comparator();
+		else
+			comparator = (Comparator<? super E>) Ordering.natural();
+		return orderedBy(comparator).create(elements);
+	}
+
+	/**
+	 * Returns a new builder configured to build {@code CountedSkiplist}
+	 * instances that use the specified comparator for ordering.
+	 *
+	 * @param comparator
+	 *            the specified comparator
+	 * @return a new builder configured to build {@code CountedSkiplist}
+	 *         instances that use the specified comparator for ordering
+	 */
+	public static <B> Builder<B> orderedBy(final Comparator<B> comparator) {
+		checkNotNull(comparator);
+		return new Builder<B>(comparator);
+	}
+
+	/**
+	 * A builder for the creation of {@code CountedSkiplist} instances.
+	 * Instances of this builder are obtained calling
+	 * {@link CountedSkiplist#orderedBy(Comparator)}.
+	 *
+	 * @author Zhenya Leonov
+	 * @param <B>
+	 *            the upper bound of the type of lists this builder can produce
+	 *            (for example a {@code Builder<Number>} can produce a
+	 *            {@code CountedSkiplist<Float>} or a
+	 *            {@code CountedSkiplist<Integer>}
+	 */
+	public static final class Builder<B> {
+
+		private final Comparator<B> comparator;
+
+		private Builder(final Comparator<B> comparator) {
+			this.comparator = comparator;
+		}
+
+		/**
+		 * Builds an empty {@code CountedSkiplist} using the previously
+		 * specified comparator.
+		 *
+		 * @return an empty {@code CountedSkiplist} using the previously
+		 *         specified comparator.
+		 */
+		public <T extends B> CountedSkiplist<T> create() {
+			return new CountedSkiplist<T>(comparator);
+		}
+
+		/**
+		 * Builds a new {@code CountedSkiplist} using the previously specified
+		 * comparator, and having the given initial elements.
+		 *
+		 * @param elements
+		 *            the initial elements to be placed in this list
+		 * @return a new {@code CountedSkiplist} using the previously specified
+		 *         comparator, and having the given initial elements
+		 */
+		public <T extends B> CountedSkiplist<T> create(final Iterable<? extends T> elements) {
+			checkNotNull(elements);
+			final CountedSkiplist<T> list = new CountedSkiplist<T>(comparator);
+			Iterables.addAll(list, elements);
+			return list;
+		}
+	}
+
+	/**
+	 * Returns the comparator used to order the elements in this list. If one
+	 * was not explicitly provided a <i>natural order</i> comparator is
+	 * returned.
+	 *
+	 * @return the comparator used to order this list
+	 */
+	@Override
+	public Comparator<? super E> comparator() {
+		return comparator;
+	}
+
+	/**
+	 * Inserts the specified element into this list in sorted order. If an
+	 * equal element is already present, only its count is incremented.
+	 */
+	@Override
+	public boolean add(E e) {
+		add(e, 1);
+		return true;
+	}
+
+	/**
+	 * Adds a number of occurrences of the specified element to this list.
+	 *
+	 * @param e
+	 *            the element to add occurrences of
+	 * @param occurrences
+	 *            the number of occurrences of the element to add, may be zero
+	 * @return the count of the element before the operation
+	 * @throws IllegalArgumentException
+	 *             if {@code occurrences} is negative, or if this operation
+	 *             would result in more than {@code Integer.MAX_VALUE}
+	 *             elements
+	 */
+	public int add(E e, int occurrences) {
+		checkNotNull(e);
+		checkArgument(occurrences >= 0, "occurrences < 0");
+		checkArgument(occurrences <= Integer.MAX_VALUE - size, "too many elements");
+		final Node<E> node = search(e);
+		if (node != null) {
+			final int count = node.count;
+			if (occurrences > 0)
+				resize(node, occurrences);
+			return count;
+		}
+		if (occurrences > 0)
+			insert(e, occurrences);
+		return 0;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return remove(o, 1) > 0;
+	}
+
+	/**
+	 * Removes a number of occurrences of the specified element from this list.
+	 * If the list contains fewer occurrences than this number, all of them are
+	 * removed.
+	 *
+	 * @param o
+	 *            the element to remove occurrences of
+	 * @param occurrences
+	 *            the number of occurrences of the element to remove, may be
+	 *            zero
+	 * @return the count of the element before the operation
+	 * @throws IllegalArgumentException
+	 *             if {@code occurrences} is negative
+	 */
+	public int remove(Object o, int occurrences) {
+		checkArgument(occurrences >= 0, "occurrences < 0");
+		if (o == null)
+			return 0;
+		final Node<E> node = search(o);
+		if (node == null)
+			return 0;
+		final int count = node.count;
+		if (occurrences > 0)
+			resize(node, -Math.min(occurrences, count));
+		return count;
+	}
+
+	/**
+	 * Returns the number of occurrences of the specified element in this list.
+	 *
+	 * @param o
+	 *            the element to count occurrences of
+	 * @return the number of occurrences of the element in this list, possibly
+	 *         zero
+	 */
+	public int count(Object o) {
+		if (o == null)
+			return 0;
+		final Node<E> node = search(o);
+		return node == null ? 0 : node.count;
+	}
+
+	@Override
+	public E remove(int index) {
+		checkElementIndex(index, size);
+		final Node<E> node = search(index);
+		resize(node, -1);
+		return node.element;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return count(o) > 0;
+	}
+
+	@Override
+	public E get(int index) {
+		checkElementIndex(index, size);
+		return search(index).element;
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		return indexOf(o, 0, size);
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return lastIndexOf(o, 0, size);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		init();
+		modCount++;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return listIterator();
+	}
+
+	@Override
+	public ListIterator<E> listIterator() {
+		return listIterator(0);
+	}
+
+	@Override
+	public ListIterator<E> listIterator(int index) {
+		checkPositionIndex(index, size);
+		return new ListIteratorImpl(null, index);
+	}
+
+	@Override
+	public Spliterator<E> spliterator() {
+		return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.NONNULL);
+	}
+
+	@Override
+	public Sortedlist<E> sublist(int fromIndex, int toIndex) {
+		checkPositionIndexes(fromIndex, toIndex, size);
+		return new Sublist(fromIndex, toIndex - fromIndex);
+	}
+
+	@Override
+	public int hashCode() {
+		int hashCode = 1;
+		for (E e : this)
+			hashCode = 31 * hashCode + e.hashCode();
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o == this || equal(this, o);
+	}
+
+	/**
+	 * Returns a shallow copy of this {@code CountedSkiplist}. The elements
+	 * themselves are not cloned.
+	 *
+	 * @return a shallow copy of this list
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public CountedSkiplist<E> clone() throws CloneNotSupportedException {
+		final CountedSkiplist<E> clone = (CountedSkiplist<E>) super.clone();
+		clone.head = new Node<E>(null, MAX_LEVEL);
+		clone.update = new Node[MAX_LEVEL];
+		clone.rank = new int[MAX_LEVEL];
+		clone.random = new Random();
+		clone.init();
+		clone.modCount = 0;
+		for (Node<E> node = head.next[0]; node != head; node = node.next[0]) {
+			clone.search(node.element);
+			clone.insert(node.element, node.count);
+		}
+		return clone;
+	}
+
+	private void writeObject(java.io.ObjectOutputStream oos) throws java.io.IOException {
+		oos.defaultWriteObject();
+		oos.writeInt(distinct);
+		for (Node<E> node = head.next[0]; node != head; node = node.next[0]) {
+			oos.writeObject(node.element);
+			oos.writeInt(node.count);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(java.io.ObjectInputStream ois) throws java.io.IOException, ClassNotFoundException {
+		ois.defaultReadObject();
+		head = new Node<E>(null, MAX_LEVEL);
+		update = new Node[MAX_LEVEL];
+		rank = new int[MAX_LEVEL];
+		random = new Random();
+		init();
+		final int distinct = ois.readInt();
+		for (int i = 0; i < distinct; i++) {
+			final E e = (E) ois.readObject();
+			search(e);
+			insert(e, ois.readInt());
+		}
+	}
+
+	private static final class Node<E> {
+		private final E element;
+		private int count;
+		private Node<E> prev;
+		private final Node<E>[] next;
+		private final int[] dist;
+
+		@SuppressWarnings("unchecked")
+		private Node(final E element, final int level) {
+			this.element = element;
+			next = new Node[level];
+			dist = new int[level];
+		}
+	}
+
+	private void init() {
+		for (int i = 0; i < MAX_LEVEL; i++) {
+			head.next[i] = head;
+			head.dist[i] = 0;
+		}
+		head.prev = head;
+		level = 1;
+		size = 0;
+		distinct = 0;
+	}
+
+	private int randomLevel() {
+		int randomLevel = 1;
+		while (randomLevel < MAX_LEVEL - 1 && random.nextDouble() < P)
+			randomLevel++;
+		return randomLevel;
+	}
+
+	/*
+	 * The distance of a link is the difference between the ranks following
+	 * the last occurrence of its target and of its source, where the head
+	 * ranks as 0 as a source and as the size of the list as a target.
+	 */
+
+	/*
+	 * Finds the node holding the specified element, recording the predecessors
+	 * of its position at each level in update[], and their ranks in rank[].
+	 */
+	@SuppressWarnings("unchecked")
+	private Node<E> search(final Object o) {
+		final E e = (E) o;
+		Node<E> curr = head;
+		int r = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			while (curr.next[i] != head && comparator.compare(curr.next[i].element, e) < 0) {
+				r += curr.dist[i];
+				curr = curr.next[i];
+			}
+			update[i] = curr;
+			rank[i] = r;
+		}
+		curr = curr.next[0];
+		return curr != head && comparator.compare(curr.element, e) == 0 ? curr : null;
+	}
+
+	/*
+	 * Finds the node holding the occurrence at the specified index, recording
+	 * its predecessors at each level in update[], and their ranks in rank[].
+	 */
+	private Node<E> search(final int index) {
+		Node<E> curr = head;
+		int r = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			while (curr.next[i] != head && r + curr.dist[i] <= index) {
+				r += curr.dist[i];
+				curr = curr.next[i];
+			}
+			update[i] = curr;
+			rank[i] = r;
+		}
+		return curr.next[0];
+	}
+
+	/*
+	 * Inserts a new node following update[0], which must have been filled in
+	 * by a search for the element.
+	 */
+	private void insert(final E e, final int count) {
+		final int newLevel = randomLevel();
+		if (newLevel > level) {
+			for (int i = level; i < newLevel; i++) {
+				update[i] = head;
+				rank[i] = 0;
+				head.next[i] = head;
+				head.dist[i] = size;
+			}
+			level = newLevel;
+		}
+		final Node<E> node = new Node<E>(e, newLevel);
+		node.count = count;
+		final int start = rank[0];
+		for (int i = 0; i < newLevel; i++) {
+			node.next[i] = update[i].next[i];
+			node.dist[i] = rank[i] + update[i].dist[i] - start;
+			update[i].next[i] = node;
+			update[i].dist[i] = start + count - rank[i];
+		}
+		for (int i = newLevel; i < level; i++)
+			update[i].dist[i] += count;
+		node.prev = update[0];
+		node.next[0].prev = node;
+		size += count;
+		distinct++;
+		modCount++;
+	}
+
+	/*
+	 * Changes the count of the specified node by delta, unlinking the node if
+	 * its count drops to zero. update[] and rank[] must have been filled in by
+	 * a search for the node.
+	 */
+	private void resize(final Node<E> node, final int delta) {
+		if (node.count + delta == 0) {
+			for (int i = 0; i < level; i++)
+				if (update[i].next[i] == node) {
+					update[i].next[i] = node.next[i];
+					update[i].dist[i] += node.dist[i] - node.count;
+				} else
+					update[i].dist[i] -= node.count;
+			node.next[0].prev = node.prev;
+			while (head.next[level - 1] == head && level > 1)
+				level--;
+			distinct--;
+		} else
+			for (int i = 0; i < level; i++)
+				update[i].dist[i] += delta;
+		node.count += delta;
+		size += delta;
+		modCount++;
+	}
+
+	/*
+	 * Returns true if the specified object is a Sortedlist whose elements are
+	 * equal, according to this list's comparator, to the elements of the given
+	 * collection.
+	 */
+	private boolean equal(final Collection<E> c, final Object o) {
+		if (!(o instanceof Sortedlist))
+			return false;
+		try {
+			@SuppressWarnings("unchecked")
+			final Iterator<E> i = ((Collection<E>) o).iterator();
+			for (E e : c)
+				if (!i.hasNext() || comparator.compare(e, i.next()) != 0)
+					return false;
+			return !i.hasNext();
+		} catch (ClassCastException e) {
+			return false;
+		} catch (NullPointerException e) {
+			return false;
+		}
+	}
+
+	private int indexOf(final Object o, final int from, final int to) {
+		if (o == null)
+			return -1;
+		final Node<E> node = search(o);
+		if (node == null)
+			return -1;
+		final int start = rank[0];
+		final int index = Math.max(start, from);
+		return index < Math.min(start + node.count, to) ? index : -1;
+	}
+
+	private int lastIndexOf(final Object o, final int from, final int to) {
+		if (o == null)
+			return -1;
+		final Node<E> node = search(o);
+		if (node == null)
+			return -1;
+		final int start = rank[0];
+		final int index = Math.min(start + node.count, to) - 1;
+		return index >= Math.max(start, from) ? index : -1;
+	}
+
+	private class ListIteratorImpl implements ListIterator<E> {
+		private final Sublist sublist;
+		private final int offset;
+		private Node<E> node;
+		private int occurrence;
+		private int index;
+		private int last = -1;
+		private int expectedModCount = modCount;
+
+		private ListIteratorImpl(final Sublist sublist, final int index) {
+			this.sublist = sublist;
+			offset = sublist == null ? 0 : sublist.offset;
+			this.index = index + offset;
+			seek();
+		}
+
+		/*
+		 * Positions this iterator before the occurrence at the current index,
+		 * or after the last occurrence if the index is the size of the list.
+		 */
+		private void seek() {
+			if (index == size) {
+				node = head.prev;
+				occurrence = node.count;
+			} else {
+				node = search(index);
+				occurrence = index - rank[0];
+			}
+		}
+
+		private int end() {
+			return sublist == null ? size : sublist.offset + sublist.size;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index < end();
+		}
+
+		@Override
+		public E next() {
+			checkForConcurrentModification();
+			if (!hasNext())
+				throw new NoSuchElementException();
+			if (occurrence == node.count) {
+				node = node.next[0];
+				occurrence = 0;
+			}
+			occurrence++;
+			last = index++;
+			return node.element;
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return index > offset;
+		}
+
+		@Override
+		public E previous() {
+			checkForConcurrentModification();
+			if (!hasPrevious())
+				throw new NoSuchElementException();
+			if (occurrence == 0) {
+				node = node.prev;
+				occurrence = node.count;
+			}
+			occurrence--;
+			last = --index;
+			return node.element;
+		}
+
+		@Override
+		public int nextIndex() {
+			return index - offset;
+		}
+
+		@Override
+		public int previousIndex() {
+			return index - offset - 1;
+		}
+
+		@Override
+		public void remove() {
+			checkState(last != -1);
+			checkForConcurrentModification();
+			resize(search(last), -1);
+			index = last;
+			last = -1;
+			seek();
+			expectedModCount = modCount;
+			if (sublist != null) {
+				sublist.size--;
+				sublist.expectedModCount = modCount;
+			}
+		}
+
+		@Override
+		public void set(E e) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void add(E e) {
+			throw new UnsupportedOperationException();
+		}
+
+		private void checkForConcurrentModification() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+	}
+
+	private final class Sublist extends AbstractCollection<E> implements Sortedlist<E> {
+		private final int offset;
+		private int size;
+		private int expectedModCount = modCount;
+
+		private Sublist(final int offset, final int size) {
+			this.offset = offset;
+			this.size = size;
+		}
+
+		private void checkForConcurrentModification() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+
+		@Override
+		public Comparator<? super E> comparator() {
+			return comparator;
+		}
+
+		@Override
+		public int size() {
+			checkForConcurrentModification();
+			return size;
+		}
+
+		@Override
+		public boolean add(E e) {
+			checkForConcurrentModification();
+			checkNotNull(e);
+			checkArgument(size > 0 && comparator.compare(e, get(0)) >= 0 && comparator.compare(e, get(size - 1)) <= 0);
+			CountedSkiplist.this.add(e, 1);
+			expectedModCount = modCount;
+			size++;
+			return true;
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			checkForConcurrentModification();
+			if (CountedSkiplist.this.indexOf(o, offset, offset + size) == -1)
+				return false;
+			CountedSkiplist.this.remove(o, 1);
+			expectedModCount = modCount;
+			size--;
+			return true;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) != -1;
+		}
+
+		@Override
+		public void clear() {
+			checkForConcurrentModification();
+			while (size > 0) {
+				resize(search(offset + size - 1), -1);
+				size--;
+			}
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public E get(int index) {
+			checkForConcurrentModification();
+			checkElementIndex(index, size);
+			return CountedSkiplist.this.get(offset + index);
+		}
+
+		@Override
+		public E remove(int index) {
+			checkForConcurrentModification();
+			checkElementIndex(index, size);
+			final E e = CountedSkiplist.this.remove(offset + index);
+			expectedModCount = modCount;
+			size--;
+			return e;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			checkForConcurrentModification();
+			final int index = CountedSkiplist.this.indexOf(o, offset, offset + size);
+			return index == -1 ? -1 : index - offset;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			checkForConcurrentModification();
+			final int index = CountedSkiplist.this.lastIndexOf(o, offset, offset + size);
+			return index == -1 ? -1 : index - offset;
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return listIterator();
+		}
+
+		@Override
+		public ListIterator<E> listIterator() {
+			return listIterator(0);
+		}
+
+		@Override
+		public ListIterator<E> listIterator(int index) {
+			checkForConcurrentModification();
+			checkPositionIndex(index, size);
+			return new ListIteratorImpl(this, index);
+		}
+
+		@Override
+		public Spliterator<E> spliterator() {
+			return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+
+		@Override
+		public Sortedlist<E> sublist(int fromIndex, int toIndex) {
+			checkForConcurrentModification();
+			checkPositionIndexes(fromIndex, toIndex, size);
+			return new Sublist(offset + fromIndex, toIndex - fromIndex);
+		}
+
+		@Override
+		public int hashCode() {
+			int hashCode = 1;
+			for (E e : this)
+				hashCode = 31 * hashCode + e.hashCode();
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o == this || equal(this, o);
+		}
+	}
+
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+import com.google.common.collect.Ordering;
+import com.google.common.collect.UnmodifiableListIterator;
+
+/**
+ * An immutable {@link Sortedlist} backed by a flat array. Instances of this
+ * class are obtained by calling {@link #from(SortedCollection)}, which copies
+ * the elements of a sorted collection in linear time, without comparing them.
+ * <p>
+ * Unlike a {@link Treelist} or a {@link Skiplist}, this list stores no nodes:
+ * positional access is a single array read, iteration walks the array in
+ * order, and searches ({@link #contains(Object)}, {@link #indexOf(Object)},
+ * {@link #lastIndexOf(Object)}) are binary searches which run a fixed number
+ * of iterations for a given size, so that the loop body compiles to a
+ * conditional move instead of an unpredictable branch. When the list is
+ * sorted by <i>natural ordering</i> and its elements are all {@code Long}s,
+ * {@code Integer}s, {@code Short}s, or {@code Byte}s, the keys are also copied
+ * into a {@code long} array and searches for elements of the same type compare
+ * primitives in place, without calling the comparator or dereferencing the
+ * elements.
+ * <p>
+ * Sub-lists returned by {@link #sublist(int, int)} are themselves
+ * {@code ImmutableSortedlist}s which share the backing array of this list.
+ * <p>
+ * All mutating methods throw {@code UnsupportedOperationException}.
+ * <p>
+ * The following table summarizes the performance of this class compared to a
+ * {@link Skiplist} (where n is the size of this sorted-list):
+ * <p>
+ * <table border="1" cellpadding="3" cellspacing="1" style="width:400px;">
+ *   <tr>
+ *     <th style="text-align:center;" rowspan="2">Method</th>
+ *     <th style="text-align:center;" colspan="2">Running Time</th>
+ *   </tr>
+ *   <tr>
+ *     <td style="text-align:center;"><b>ImmutableSortedlist</b><br>(<i>worst-case</i>)</td>
+ *     <td style="text-align:center;"><b>Skiplist</b><br>(<i>expected</i>)</td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #get(int)}<br/>
+ *       {@link #listIterator(int)}<br/>
+ *       {@link #sublist(int, int)}
+ *     </td>
+ *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(1)</i></td>
+ *     <td style="text-align:center;" bgcolor="FFCCCC"><i>O(log n)</i></td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #contains(Object)}<br/>
+ *       {@link #indexOf(Object)}<br/>
+ *       {@link #lastIndexOf(Object)}
+ *     </td>
+ *     <td style="text-align:center;" colspan="2"><i>O(log n)</i></td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #isEmpty() isEmpty()}<br/>
+ *       {@link #size()}<br/>
+ *     </td>
+ *     <td style="text-align:center;" colspan="2"><i>O(1)</i></td>
+ *   </tr>
+ * </table>
+ *
+ * @author Zhenya Leonov
+ * @param <E>
+ *            the type of elements maintained by this list
+ * @see Treelist
+ * @see Skiplist
+ */
+public final class ImmutableSortedlist<E> extends AbstractCollection<E>
+		implements Sortedlist<E>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private final Object[] elements;
+	private final long[] keys;
+	private final Class<?> keyType;
+	private final Comparator<? super E> comparator;
+	private final int offset;
+	private final int size;
+
+	private ImmutableSortedlist(final Object[] elements, final long[] keys,
+			final Class<?> keyType, final Comparator<? super E> comparator,
+			final int offset, final int size) {
+		this.elements = elements;
+		this.keys = keys;
+		this.keyType = keyType;
+		this.comparator = comparator;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	/**
+	 * Creates a new {@code ImmutableSortedlist} containing the elements of the
+	 * specified sorted collection, in the same order, and using the same
+	 * comparator. The elements are copied in linear time without being
+	 * compared.
+	 *
+	 * @param elements
+	 *            the sorted collection whose elements are to be placed in this
+	 *            list
+	 * @return a new {@code ImmutableSortedlist} containing the elements of the
+	 *         specified sorted collection
+	 * @throws NullPointerException
+	 *             if {@code elements} or any of its elements is {@code null}
+	 */
+	public static <E> ImmutableSortedlist<E> from(
+			final SortedCollection<E> elements) {
+		checkNotNull(elements);
+		if (elements instanceof ImmutableSortedlist) {
+			final ImmutableSortedlist<E> list = (ImmutableSortedlist<E>) elements;
+			if (list.size == list.elements.length)
+				return list;
+		}
+		final Comparator<? super E> comparator = elements.comparator();
+		final Object[] array = elements.toArray();
+		for (Object e : array)
+			checkNotNull(e);
+		final Class<?> keyType = keyType(comparator, array);
+		long[] keys = null;
+		if (keyType != null) {
+			keys = new long[array.length];
+			for (int i = 0; i < array.length; i++)
+				keys[i] = ((Number) array[i]).longValue();
+		}
+		return new ImmutableSortedlist<E>(array, keys, keyType, comparator, 0,
+				array.length);
+	}
+
+	/*
+	 * Returns the common integral type of the elements if they are sorted by
+	 * natural ordering, or null if searches must go through the comparator.
+	 */
+	private static Class<?> keyType(final Comparator<?> comparator,
+			final Object[] array) {
+		if (array.length == 0
+				|| (comparator != Ordering.natural() && comparator != Comparator
+						.naturalOrder()))
+			return null;
+		final Class<?> type = array[0].getClass();
+		if (type != Long.class && type != Integer.class && type != Short.class
+				&& type != Byte.class)
+			return null;
+		for (Object e : array)
+			if (e.getClass() != type)
+				return null;
+		return type;
+	}
+
+	/**
+	 * Returns the comparator used to order the elements in this list.
+	 *
+	 * @return the comparator used to order this list
+	 */
+	@Override
+	public Comparator<? super E> comparator() {
+		return comparator;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E get(int index) {
+		checkElementIndex(index, size);
+		return (E) elements[offset + index];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) != -1;
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		if (o == null)
+			return -1;
+		final int i = search(o, false);
+		return i < offset + size && compare(i, o) == 0 ? i - offset : -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		if (o == null)
+			return -1;
+		final int i = search(o, true) - 1;
+		return i >= offset && compare(i, o) == 0 ? i - offset : -1;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return listIterator();
+	}
+
+	@Override
+	public ListIterator<E> listIterator() {
+		return listIterator(0);
+	}
+
+	@Override
+	public UnmodifiableListIterator<E> listIterator(final int index) {
+		checkPositionIndex(index, size);
+		return new UnmodifiableListIterator<E>() {
+			private int cursor = index;
+
+			@Override
+			public boolean hasNext() {
+				return cursor < size;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public E next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return (E) elements[offset + cursor++];
+			}
+
+			@Override
+			public boolean hasPrevious() {
+				return cursor > 0;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public E previous() {
+				if (!hasPrevious())
+					throw new NoSuchElementException();
+				return (E) elements[offset + --cursor];
+			}
+
+			@Override
+			public int nextIndex() {
+				return cursor;
+			}
+
+			@Override
+			public int previousIndex() {
+				return cursor - 1;
+			}
+		};
+	}
+
+	@Override
+	public Spliterator<E> spliterator() {
+		return Spliterators.spliterator(elements, offset, offset + size,
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+	}
+
+	/**
+	 * Returns a view of the portion of this list between the specified
+	 * {@code fromIndex}, inclusive, and {@code toIndex}, exclusive. The
+	 * returned list shares the backing array of this list and is created in
+	 * constant time.
+	 */
+	@Override
+	public ImmutableSortedlist<E> sublist(int fromIndex, int toIndex) {
+		checkPositionIndexes(fromIndex, toIndex, size);
+		return new ImmutableSortedlist<E>(elements, keys, keyType, comparator,
+				offset + fromIndex, toIndex - fromIndex);
+	}
+
+	/**
+	 * Guaranteed to throw an exception and leave the list unmodified.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public boolean add(E e) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Guaranteed to throw an exception and leave the list unmodified.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Guaranteed to throw an exception and leave the list unmodified.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Guaranteed to throw an exception and leave the list unmodified.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public E remove(int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Guaranteed to throw an exception and leave the list unmodified.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Guaranteed to throw an exception and leave the list unmodified.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Guaranteed to throw an exception and leave the list unmodified.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int hashCode() {
+		int hashCode = 1;
+		for (int i = offset; i < offset + size; i++)
+			hashCode = 31 * hashCode + elements[i].hashCode();
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof Sortedlist))
+			return false;
+		try {
+			final Collection<?> c = (Collection<?>) o;
+			if (c.size() != size)
+				return false;
+			int i = offset;
+			for (Object e : c)
+				if (compare(i++, e) != 0)
+					return false;
+			return true;
+		} catch (ClassCastException e) {
+			return false;
+		} catch (NullPointerException e) {
+			return false;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(final int i, final Object o) {
+		return comparator.compare((E) elements[i], (E) o);
+	}
+
+	/*
+	 * Returns the array index of the first element in this list which is
+	 * greater than (or, if inclusive is false, not less than) the specified
+	 * element, or offset + size if there is none.
+	 *
+	 * Each iteration halves the remaining range without testing for a match,
+	 * so the number of iterations depends only on the size of the list.
+	 */
+	@SuppressWarnings("unchecked")
+	private int search(final Object o, final boolean inclusive) {
+		if (size == 0)
+			return offset;
+		int base = offset;
+		int len = size;
+		if (keys != null && o.getClass() == keyType) {
+			final long key = ((Number) o).longValue();
+			if (inclusive) {
+				while (len > 1) {
+					final int half = len >>> 1;
+					base = keys[base + half] <= key ? base + half : base;
+					len -= half;
+				}
+				return keys[base] <= key ? base + 1 : base;
+			}
+			while (len > 1) {
+				final int half = len >>> 1;
+				base = keys[base + half] < key ? base + half : base;
+				len -= half;
+			}
+			return keys[base] < key ? base + 1 : base;
+		}
+		final E element = (E) o;
+		final int bound = inclusive ? 1 : 0;
+		while (len > 1) {
+			final int half = len >>> 1;
+			base = comparator.compare((E) elements[base + half], element) < bound ? base
+					+ half : base;
+			len -= half;
+		}
+		return comparator.compare((E) elements[base], element) < bound ? base + 1
+				: base;
+	}
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * A builder for a chain of filtering, transforming, and truncating stages
+ * over an {@code Iterator}, which are <i>fused</i> into a single iterator when
+ * the pipeline is consumed. Instances of this class are obtained by calling
+ * {@link MoreIterators#pipeline(Iterator)}.
+ * <p>
+ * Decorating an iterator once per stage (e.g. with
+ * {@link MoreIterators#filter(java.util.ListIterator, Predicate)} or
+ * {@link MoreIterators#transform(java.util.ListIterator, Function)}) produces
+ * a stack of iterators, each of which performs its own look-ahead in
+ * {@code hasNext()}. The iterator returned by {@link #iterator()} instead
+ * pulls each element from the source and runs it through every stage in a
+ * single loop. Its {@code forEachRemaining(Consumer)} method pushes elements
+ * to the consumer from inside that loop, without any per-element calls to
+ * {@code hasNext()} and {@code next()}.
+ * <p>
+ * Pipelines are immutable: each stage method returns a new pipeline, leaving
+ * this one unchanged. Since the source is an iterator, only one pipeline built
+ * from it may be consumed, and only once.
+ *
+ * @author Zhenya Leonov
+ * @param <E>
+ *            the type of elements produced by this pipeline
+ * @see MoreIterators#pipeline(Iterator)
+ */
+public final class IteratorPipeline<E> {
+
+	private static final int FILTER = 0;
+	private static final int MAP = 1;
+	private static final int LIMIT = 2;
+	private static final int SKIP = 3;
+	private static final Object SKIPPED = new Object();
+
+	private final Source source;
+	private final int[] kinds;
+	private final Object[] args;
+
+	private IteratorPipeline(final Source source, final int[] kinds,
+			final Object[] args) {
+		this.source = source;
+		this.kinds = kinds;
+		this.args = args;
+	}
+
+	static <E> IteratorPipeline<E> from(final Iterator<? extends E> iterator) {
+		return new IteratorPipeline<E>(new Source(iterator), new int[0],
+				new Object[0]);
+	}
+
+	/**
+	 * Returns a pipeline which passes on only the elements of this pipeline
+	 * that satisfy the specified predicate.
+	 *
+	 * @param predicate
+	 *            the specified predicate
+	 * @return a pipeline which passes on only the elements that satisfy
+	 *         {@code predicate}
+	 */
+	public IteratorPipeline<E> filter(final Predicate<? super E> predicate) {
+		checkNotNull(predicate);
+		return then(FILTER, predicate);
+	}
+
+	/**
+	 * Returns a pipeline which applies the specified function to each element
+	 * of this pipeline.
+	 *
+	 * @param function
+	 *            the specified function
+	 * @return a pipeline which applies {@code function} to each element
+	 */
+	public <T> IteratorPipeline<T> map(
+			final Function<? super E, ? extends T> function) {
+		checkNotNull(function);
+		return then(MAP, function);
+	}
+
+	/**
+	 * Returns a pipeline which passes on at most the first {@code maxSize}
+	 * elements of this pipeline. The source is not read once the limit has
+	 * been reached.
+	 *
+	 * @param maxSize
+	 *            the maximum number of elements to pass on
+	 * @return a pipeline which passes on at most {@code maxSize} elements
+	 * @throws IllegalArgumentException
+	 *             if {@code maxSize} is negative
+	 */
+	public IteratorPipeline<E> limit(final int maxSize) {
+		checkArgument(maxSize >= 0, "maxSize < 0");
+		return then(LIMIT, maxSize);
+	}
+
+	/**
+	 * Returns a pipeline which discards the first {@code n} elements of this
+	 * pipeline.
+	 *
+	 * @param n
+	 *            the number of elements to discard
+	 * @return a pipeline which discards the first {@code n} elements
+	 * @throws IllegalArgumentException
+	 *             if {@code n} is negative
+	 */
+	public IteratorPipeline<E> skip(final int n) {
+		checkArgument(n >= 0, "n < 0");
+		return then(SKIP, n);
+	}
+
+	/**
+	 * Returns the fused iterator over the elements produced by this pipeline.
+	 * The returned iterator does not support {@code remove()}.
+	 *
+	 * @return the fused iterator over the elements produced by this pipeline
+	 * @throws IllegalStateException
+	 *             if this pipeline, or another pipeline built from the same
+	 *             source, has already been consumed
+	 */
+	public UnmodifiableIterator<E> iterator() {
+		checkState(!source.consumed, "pipeline already consumed");
+		source.consumed = true;
+		return new FusedIterator<E>(source.iterator, kinds, args);
+	}
+
+	/**
+	 * Performs the given action on each element produced by this pipeline. This
+	 * is equivalent to calling {@code next()} on {@link #iterator()} until it
+	 * is exhausted.
+	 *
+	 * @param action
+	 *            the action to be performed on each element
+	 * @throws IllegalStateException
+	 *             if this pipeline, or another pipeline built from the same
+	 *             source, has already been consumed
+	 */
+	public void forEach(final Consumer<? super E> action) {
+		checkNotNull(action);
+		iterator().forEachRemaining(action);
+	}
+
+	private <T> IteratorPipeline<T> then(final int kind, final Object arg) {
+		final int[] kinds = Arrays.copyOf(this.kinds, this.kinds.length + 1);
+		final Object[] args = Arrays.copyOf(this.args, this.args.length + 1);
+		kinds[kinds.length - 1] = kind;
+		args[args.length - 1] = arg;
+		return new IteratorPipeline<T>(source, kinds, args);
+	}
+
+	private static final class Source {
+		private final Iterator<?> iterator;
+		private boolean consumed = false;
+
+		private Source(final Iterator<?> iterator) {
+			this.iterator = iterator;
+		}
+	}
+
+	private static final class FusedIterator<E> extends UnmodifiableIterator<E> {
+		private final Iterator<?> source;
+		private final int[] kinds;
+		private final Object[] args;
+		private final int[] counters;
+		private boolean finished = false;
+		private boolean ready = false;
+		private Object next;
+
+		private FusedIterator(final Iterator<?> source, final int[] kinds,
+				final Object[] args) {
+			this.source = source;
+			this.kinds = kinds;
+			this.args = args;
+			counters = new int[kinds.length];
+			for (int i = 0; i < kinds.length; i++)
+				if (kinds[i] == LIMIT || kinds[i] == SKIP) {
+					counters[i] = (Integer) args[i];
+					if (kinds[i] == LIMIT && counters[i] == 0)
+						finished = true;
+				}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!ready && !finished)
+				ready = advance();
+			return ready;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public E next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			final Object e = next;
+			next = null;
+			ready = false;
+			return (E) e;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public void forEachRemaining(final Consumer<? super E> action) {
+			checkNotNull(action);
+			if (ready) {
+				ready = false;
+				final Object e = next;
+				next = null;
+				action.accept((E) e);
+			}
+			while (!finished && source.hasNext()) {
+				final Object e = apply(source.next());
+				if (e != SKIPPED)
+					action.accept((E) e);
+			}
+		}
+
+		private boolean advance() {
+			while (!finished && source.hasNext()) {
+				final Object e = apply(source.next());
+				if (e != SKIPPED) {
+					next = e;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * Runs the element through every stage, returning SKIPPED if a stage
+		 * drops it. A limit stage which passes on its last element finishes
+		 * the pipeline, so that the source is not read any further.
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Object apply(Object e) {
+			for (int i = 0; i < kinds.length; i++)
+				switch (kinds[i]) {
+				case FILTER:
+					if (!((Predicate) args[i]).apply(e))
+						return SKIPPED;
+					break;
+				case MAP:
+					e = ((Function) args[i]).apply(e);
+					break;
+				case LIMIT:
+					if (--counters[i] == 0)
+						finished = true;
+					break;
+				case SKIP:
+					if (counters[i] > 0) {
+						counters[i]--;
+						return SKIPPED;
+					}
+					break;
+				}
+			return e;
+		}
+	}
+
+}
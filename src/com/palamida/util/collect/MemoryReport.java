@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * An estimate of the memory retained by the structure of a collection,
+ * excluding the elements themselves and any objects shared with other
+ * collections (such as the comparator). Estimates are computed for the object
+ * layout of the running JVM: the reference size (which depends on whether
+ * compressed oops are in use), the object header size, and the object
+ * alignment.
+ * <p>
+ * The structure is broken down into named components, for example the
+ * collection object itself and its nodes. Enum constants, such as the colors
+ * of red-black tree nodes, are shared and cost only the reference to them.
+ *
+ * @author Zhenya Leonov
+ */
+public final class MemoryReport {
+
+	private final String type;
+	private final int size;
+	private final String layout;
+	private final ImmutableMap<String, Long> components;
+	private final long bytes;
+
+	private MemoryReport(final String type, final int size, final String layout,
+			final ImmutableMap<String, Long> components) {
+		this.type = type;
+		this.size = size;
+		this.layout = layout;
+		this.components = components;
+		long bytes = 0;
+		for (long b : components.values())
+			bytes += b;
+		this.bytes = bytes;
+	}
+
+	static Builder builder(final Class<?> type, final int size) {
+		return new Builder(type.getSimpleName(), size);
+	}
+
+	static final class Builder {
+		private final String type;
+		private final int size;
+		private final ImmutableMap.Builder<String, Long> components = ImmutableMap.builder();
+
+		private Builder(final String type, final int size) {
+			this.type = type;
+			this.size = size;
+		}
+
+		Builder add(final String component, final long bytes) {
+			components.put(component, bytes);
+			return this;
+		}
+
+		MemoryReport build() {
+			return new MemoryReport(type, size, ObjectLayout.CURRENT.toString(), components.build());
+		}
+	}
+
+	/**
+	 * Returns the simple name of the class of the collection.
+	 *
+	 * @return the simple name of the class of the collection
+	 */
+	public String type() {
+		return type;
+	}
+
+	/**
+	 * Returns the number of elements in the collection when the estimate was
+	 * computed.
+	 *
+	 * @return the number of elements in the collection
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the estimated number of bytes retained by the structure of the
+	 * collection.
+	 *
+	 * @return the estimated number of bytes retained by the structure
+	 */
+	public long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the estimated number of bytes retained by the structure per
+	 * element, or {@code 0} if the collection is empty.
+	 *
+	 * @return the estimated number of bytes retained per element
+	 */
+	public double bytesPerElement() {
+		return size == 0 ? 0 : (double) bytes / size;
+	}
+
+	/**
+	 * Returns the estimated number of bytes retained by each component of the
+	 * structure, in the order the components were measured.
+	 *
+	 * @return an immutable map from component names to bytes
+	 */
+	public Map<String, Long> components() {
+		return components;
+	}
+
+	/**
+	 * Returns a description of the object layout the estimate was computed
+	 * for, for example
+	 * {@code "compressed oops, 12-byte headers, 8-byte alignment"}.
+	 *
+	 * @return a description of the object layout
+	 */
+	public String layout() {
+		return layout;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(type).append(" of ").append(size).append(" elements: ").append(bytes).append(" bytes");
+		if (size > 0)
+			sb.append(" (").append(String.format("%.1f", bytesPerElement())).append(" per element)");
+		sb.append(' ').append(components).append(", ").append(layout);
+		return sb.toString();
+	}
+
+}
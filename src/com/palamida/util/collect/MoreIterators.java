@@ -16,20 +16,27 @@
 
 package com.palamida.util.collect;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NavigableSet;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ForwardingListIterator;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.PeekingIterator;
@@ -332,6 +339,169 @@ public final class MoreIterators {
 		};
 	}
 
+	/**
+	 * Returns an {@code UnmodifiableIterator} over the merged contents of the
+	 * specified sorted iterators, ordered according to the given comparator.
+	 * Equal elements are returned in the order of the iterators which supplied
+	 * them.
+	 * <p>
+	 * The iterators are merged by a <a
+	 * href="http://en.wikipedia.org/wiki/K-way_merge_algorithm">tournament
+	 * (loser) tree</a>, which performs at most <i>log k</i> comparisons per
+	 * element (where <i>k</i> is the number of iterators) and does not allocate
+	 * any objects after it is first advanced. The source iterators are not
+	 * read until the returned iterator is first queried, and are then read one
+	 * element at a time, so the merge is suitable for streaming the runs of an
+	 * external sort.
+	 * <p>
+	 * The source iterators must be sorted according to the given comparator,
+	 * otherwise the order of the merged elements is undefined.
+	 * 
+	 * @param comparator
+	 *            the comparator which orders the source iterators
+	 * @param iterators
+	 *            the sorted source iterators
+	 * @return an {@code UnmodifiableIterator} over the merged contents of the
+	 *         specified iterators
+	 */
+	@SafeVarargs
+	public static <E> UnmodifiableIterator<E> mergeSorted(
+			final Comparator<? super E> comparator,
+			final Iterator<? extends E>... iterators) {
+		checkNotNull(iterators);
+		return mergeSorted(comparator, Arrays.asList(iterators));
+	}
+
+	/**
+	 * Returns an {@code UnmodifiableIterator} over the merged contents of the
+	 * specified sorted iterators, ordered according to the given comparator.
+	 * See {@link #mergeSorted(Comparator, Iterator...)} for details.
+	 * 
+	 * @param comparator
+	 *            the comparator which orders the source iterators
+	 * @param iterators
+	 *            the sorted source iterators
+	 * @return an {@code UnmodifiableIterator} over the merged contents of the
+	 *         specified iterators
+	 */
+	public static <E> UnmodifiableIterator<E> mergeSorted(
+			final Comparator<? super E> comparator,
+			final Iterable<? extends Iterator<? extends E>> iterators) {
+		return new LoserTreeIterator<E>(comparator, iterators, false);
+	}
+
+	/**
+	 * Returns an {@code UnmodifiableIterator} over the merged contents of the
+	 * specified sorted iterators, ordered according to the given comparator,
+	 * and returning only the first of any run of elements which the comparator
+	 * deems equal, whether they come from the same or from different
+	 * iterators. See {@link #mergeSorted(Comparator, Iterator...)} for
+	 * details.
+	 * 
+	 * @param comparator
+	 *            the comparator which orders the source iterators
+	 * @param iterators
+	 *            the sorted source iterators
+	 * @return an {@code UnmodifiableIterator} over the distinct merged contents
+	 *         of the specified iterators
+	 */
+	@SafeVarargs
+	public static <E> UnmodifiableIterator<E> mergeSortedDistinct(
+			final Comparator<? super E> comparator,
+			final Iterator<? extends E>... iterators) {
+		checkNotNull(iterators);
+		return mergeSortedDistinct(comparator, Arrays.asList(iterators));
+	}
+
+	/**
+	 * Returns an {@code UnmodifiableIterator} over the merged contents of the
+	 * specified sorted iterators, ordered according to the given comparator,
+	 * and returning only the first of any run of equal elements. See
+	 * {@link #mergeSortedDistinct(Comparator, Iterator...)} for details.
+	 * 
+	 * @param comparator
+	 *            the comparator which orders the source iterators
+	 * @param iterators
+	 *            the sorted source iterators
+	 * @return an {@code UnmodifiableIterator} over the distinct merged contents
+	 *         of the specified iterators
+	 */
+	public static <E> UnmodifiableIterator<E> mergeSortedDistinct(
+			final Comparator<? super E> comparator,
+			final Iterable<? extends Iterator<? extends E>> iterators) {
+		return new LoserTreeIterator<E>(comparator, iterators, true);
+	}
+
+	/**
+	 * Returns a new {@code IteratorPipeline} over the elements of the specified
+	 * iterator. Stages added to the pipeline (e.g.
+	 * {@code pipeline(source).filter(p).map(f).limit(n)}) are fused into a
+	 * single iterator, rather than stacking one decorating iterator per stage.
+	 * 
+	 * @param source
+	 *            the source iterator
+	 * @return a new {@code IteratorPipeline} over the elements of
+	 *         {@code source}
+	 */
+	public static <E> IteratorPipeline<E> pipeline(
+			final Iterator<? extends E> source) {
+		checkNotNull(source);
+		return IteratorPipeline.from(source);
+	}
+
+	/**
+	 * Returns an iterator over the elements of the specified iterator which are
+	 * read ahead of the consumer by a background task, running on a virtual
+	 * thread where the JVM supports them, or else on a new daemon thread. See
+	 * {@link #prefetching(Iterator, int, Executor)} for details.
+	 * 
+	 * @param iterator
+	 *            the underlying iterator
+	 * @param bufferSize
+	 *            the maximum number of elements read ahead of the consumer
+	 * @return a {@code PrefetchingIterator} over the elements of the specified
+	 *         iterator
+	 * @throws IllegalArgumentException
+	 *             if {@code bufferSize} is less than 1
+	 */
+	public static <E> PrefetchingIterator<E> prefetching(
+			final Iterator<? extends E> iterator, final int bufferSize) {
+		return prefetching(iterator, bufferSize, BackgroundExecutor.INSTANCE);
+	}
+
+	/**
+	 * Returns an iterator over the elements of the specified iterator which are
+	 * read ahead of the consumer by a task submitted to the given executor. Up
+	 * to {@code bufferSize} elements are buffered at any one time. The task is
+	 * submitted immediately, so reading begins before the first call to
+	 * {@code hasNext()}.
+	 * <p>
+	 * Exceptions thrown by the underlying iterator are rethrown to the
+	 * consumer. A consumer which does not exhaust the returned iterator must
+	 * call {@link PrefetchingIterator#cancel()} to release the background task.
+	 * The underlying iterator must not be accessed directly after this method
+	 * returns.
+	 * 
+	 * @param iterator
+	 *            the underlying iterator
+	 * @param bufferSize
+	 *            the maximum number of elements read ahead of the consumer
+	 * @param executor
+	 *            the executor which runs the background task
+	 * @return a {@code PrefetchingIterator} over the elements of the specified
+	 *         iterator
+	 * @throws IllegalArgumentException
+	 *             if {@code bufferSize} is less than 1
+	 */
+	public static <E> PrefetchingIterator<E> prefetching(
+			final Iterator<? extends E> iterator, final int bufferSize,
+			final Executor executor) {
+		checkNotNull(iterator);
+		checkNotNull(executor);
+		checkArgument(bufferSize > 0, "bufferSize < 1");
+		return new PrefetchingIterator<E>(iterator, bufferSize, executor);
+	}
+
 	/**
 	 * Returns an {@code Iterator} over the specified {@code Collection} in
 	 * reverse sequential order. If the specified collection is an instance of
@@ -481,6 +651,162 @@ public final class MoreIterators {
 		};
 	}
 
+	/*
+	 * The leaves of the tree are the source iterators, stored implicitly at
+	 * positions k through 2k - 1. Each internal node 1 through k - 1 holds the
+	 * index of the source which lost the match played there, and node 0 holds
+	 * the overall winner. Replacing the winner's element only requires
+	 * replaying the matches on the path from its leaf to the root.
+	 */
+	private static final class LoserTreeIterator<E> extends
+			UnmodifiableIterator<E> {
+		private final Comparator<? super E> comparator;
+		private final Iterator<? extends E>[] sources;
+		private final Object[] heads;
+		private final boolean[] exhausted;
+		private final int[] tree;
+		private final boolean distinct;
+		private boolean initialized = false;
+		private boolean hasLast = false;
+		private E last;
+
+		@SuppressWarnings("unchecked")
+		private LoserTreeIterator(final Comparator<? super E> comparator,
+				final Iterable<? extends Iterator<? extends E>> iterators,
+				final boolean distinct) {
+			checkNotNull(comparator);
+			checkNotNull(iterators);
+			this.comparator = comparator;
+			this.distinct = distinct;
+			sources = Iterables.toArray(iterators, Iterator.class);
+			for (Iterator<? extends E> source : sources)
+				checkNotNull(source);
+			heads = new Object[sources.length];
+			exhausted = new boolean[sources.length];
+			tree = new int[Math.max(sources.length, 1)];
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (!initialized)
+				initialize();
+			if (sources.length == 0)
+				return false;
+			if (distinct && hasLast)
+				while (!exhausted[tree[0]] && compare(tree[0], last) == 0)
+					pop();
+			return !exhausted[tree[0]];
+		}
+
+		@Override
+		public E next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			final E e = pop();
+			if (distinct) {
+				last = e;
+				hasLast = true;
+			}
+			return e;
+		}
+
+		private void initialize() {
+			initialized = true;
+			Arrays.fill(tree, -1);
+			for (int i = 0; i < sources.length; i++) {
+				advance(i);
+				replay(i);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private E pop() {
+			final int winner = tree[0];
+			final E e = (E) heads[winner];
+			advance(winner);
+			replay(winner);
+			return e;
+		}
+
+		private void advance(final int i) {
+			if (sources[i].hasNext())
+				heads[i] = sources[i].next();
+			else {
+				heads[i] = null;
+				exhausted[i] = true;
+			}
+		}
+
+		private void replay(final int leaf) {
+			final int k = sources.length;
+			int winner = leaf;
+			for (int node = (leaf + k) >>> 1; node > 0; node >>>= 1) {
+				final int loser = tree[node];
+				if (loser == -1) {
+					tree[node] = winner;
+					return;
+				}
+				if (beats(loser, winner)) {
+					tree[node] = winner;
+					winner = loser;
+				}
+			}
+			tree[0] = winner;
+		}
+
+		/*
+		 * Exhausted sources lose every match, and ties are broken in favor of
+		 * the lower source index to keep the merge stable.
+		 */
+		@SuppressWarnings("unchecked")
+		private boolean beats(final int a, final int b) {
+			if (exhausted[a])
+				return false;
+			if (exhausted[b])
+				return true;
+			final int cmp = comparator.compare((E) heads[a], (E) heads[b]);
+			return cmp < 0 || (cmp == 0 && a < b);
+		}
+
+		@SuppressWarnings("unchecked")
+		private int compare(final int i, final E e) {
+			return comparator.compare((E) heads[i], e);
+		}
+	}
+
+	/*
+	 * Starts each task on a virtual thread if Thread.startVirtualThread is
+	 * available (Java 21 and later), otherwise on a new daemon thread.
+	 */
+	private static enum BackgroundExecutor implements Executor {
+		INSTANCE;
+
+		private final Method startVirtualThread = virtualThreadFactory();
+
+		@Override
+		public void execute(final Runnable task) {
+			if (startVirtualThread != null)
+				try {
+					startVirtualThread.invoke(null, task);
+					return;
+				} catch (IllegalAccessException e) {
+				} catch (InvocationTargetException e) {
+				}
+			final Thread thread = new Thread(task, "prefetch");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private static Method virtualThreadFactory() {
+			try {
+				return Thread.class.getMethod("startVirtualThread",
+						Runnable.class);
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+		}
+	}
+
 	private static class EmptyListIterator<E> implements ListIterator<E> {
 
 		@Override
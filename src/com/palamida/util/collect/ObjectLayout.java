@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * Estimates the shallow size of objects and arrays under the object layout of
+ * the running JVM. The layout (reference size, header size, and object
+ * alignment) is read from the HotSpot diagnostic MXBean; on other JVMs the
+ * HotSpot defaults for a heap smaller than 32 GB are assumed.
+ * <p>
+ * Fields are assumed to be packed without gaps, which HotSpot achieves for all
+ * but a few bytes per object.
+ *
+ * @author Zhenya Leonov
+ */
+final class ObjectLayout {
+
+	static final ObjectLayout CURRENT = detect();
+
+	private final int referenceSize;
+	private final int headerSize;
+	private final int arrayHeaderSize;
+	private final int alignment;
+	private final boolean compressedOops;
+
+	private ObjectLayout(final boolean compressedOops, final int headerSize, final int arrayHeaderSize,
+			final int alignment) {
+		this.compressedOops = compressedOops;
+		this.referenceSize = compressedOops ? 4 : 8;
+		this.headerSize = headerSize;
+		this.arrayHeaderSize = arrayHeaderSize;
+		this.alignment = alignment;
+	}
+
+	private static ObjectLayout detect() {
+		if ("32".equals(System.getProperty("sun.arch.data.model")))
+			return new ObjectLayout(true, 8, 12, 8);
+		try {
+			final HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+			final boolean compressedOops = flag(hotspot, "UseCompressedOops", true);
+			final int alignment = Integer.parseInt(hotspot.getVMOption("ObjectAlignmentInBytes").getValue());
+			if (flag(hotspot, "UseCompactObjectHeaders", false))
+				return new ObjectLayout(compressedOops, 8, 12, alignment);
+			if (flag(hotspot, "UseCompressedClassPointers", compressedOops))
+				return new ObjectLayout(compressedOops, 12, 16, alignment);
+			return new ObjectLayout(compressedOops, 16, 24, alignment);
+		} catch (RuntimeException e) {
+			return defaults();
+		} catch (LinkageError e) {
+			return defaults();
+		}
+	}
+
+	private static ObjectLayout defaults() {
+		return new ObjectLayout(true, 12, 16, 8);
+	}
+
+	private static boolean flag(final HotSpotDiagnosticMXBean hotspot, final String name, final boolean absent) {
+		try {
+			return Boolean.parseBoolean(hotspot.getVMOption(name).getValue());
+		} catch (IllegalArgumentException e) {
+			return absent;
+		}
+	}
+
+	/**
+	 * Returns {@code true} if references are compressed to 32 bits.
+	 */
+	boolean compressedOops() {
+		return compressedOops;
+	}
+
+	/**
+	 * Returns the alignment of objects in bytes.
+	 */
+	int alignment() {
+		return alignment;
+	}
+
+	/**
+	 * Returns the shallow size of an instance of the specified class,
+	 * including the fields declared by its superclasses and the reference to
+	 * the enclosing instance of an inner class.
+	 */
+	long instanceSize(Class<?> type) {
+		long size = headerSize;
+		for (; type != null; type = type.getSuperclass())
+			for (Field field : type.getDeclaredFields())
+				if (!Modifier.isStatic(field.getModifiers()))
+					size += fieldSize(field.getType());
+		return align(size);
+	}
+
+	/**
+	 * Returns the size of an array of references of the specified length.
+	 */
+	long referenceArraySize(final int length) {
+		return arraySize(length, referenceSize);
+	}
+
+	/**
+	 * Returns the size of an {@code int} array of the specified length.
+	 */
+	long intArraySize(final int length) {
+		return arraySize(length, 4);
+	}
+
+	private long arraySize(final int length, final int elementSize) {
+		long base = arrayHeaderSize;
+		if (elementSize == 8)
+			base = base + 7 & ~7L;
+		return align(base + (long) length * elementSize);
+	}
+
+	private int fieldSize(final Class<?> type) {
+		if (!type.isPrimitive())
+			return referenceSize;
+		if (type == long.class || type == double.class)
+			return 8;
+		if (type == int.class || type == float.class)
+			return 4;
+		if (type == short.class || type == char.class)
+			return 2;
+		return 1;
+	}
+
+	private long align(final long size) {
+		return (size + alignment - 1) / alignment * alignment;
+	}
+
+	@Override
+	public String toString() {
+		return (compressedOops ? "compressed" : "uncompressed") + " oops, " + headerSize + "-byte headers, "
+				+ alignment + "-byte alignment";
+	}
+
+}
@@ -0,0 +1,959 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.MinMaxPriorityQueue;
+import com.google.common.collect.Ordering;
+
+/**
+ * A {@link Sortedlist} implementation based on a <a
+ * href="http://en.wikipedia.org/wiki/Packed-memory_array">packed memory
+ * array</a>. Elements are sorted from <i>least</i> to <i>greatest</i>
+ * according to their <i>natural ordering</i>, or by an explicit
+ * {@link Comparator} provided at creation. Attempting to remove or insert
+ * {@code null} elements is prohibited. Querying for {@code null} elements is
+ * allowed. Inserting non-comparable elements will result in a
+ * {@code ClassCastException}.
+ * <p>
+ * The elements are stored in order in a single array which is divided into
+ * segments of &Theta;(log n) slots. The elements of each segment are packed at
+ * its start, leaving the remaining slots free for insertions. When a segment
+ * fills up, the elements of the smallest enclosing window of segments whose
+ * density is below a threshold (which grows from the root window to the
+ * individual segment) are spread evenly across the window. When the whole
+ * array is too dense it is doubled in size, and when it falls below a quarter
+ * full it is halved. A <a
+ * href="http://en.wikipedia.org/wiki/Fenwick_tree">Fenwick tree</a> over the
+ * segment sizes provides the rank of each segment for positional access.
+ * <p>
+ * Because iteration walks a contiguous array rather than following a pointer
+ * per element, scanning a range of this list is considerably faster than
+ * scanning a range of a {@link Skiplist} or a {@link Treelist}, at the cost of
+ * slower insertions and removals.
+ * <p>
+ * The iterators obtained from the {@link #iterator()} and
+ * {@link #listIterator()} methods are <i>fail-fast</i>. Attempts to modify the
+ * elements in this sorted-list at any time after an iterator is created, in any
+ * way except through the iterator's own remove method, will result in a
+ * {@code ConcurrentModificationException}. Further, the list iterator does not
+ * support the {@code add(E)} and {@code set(E)} operations.
+ * <p>
+ * This sorted-list is not <i>thread-safe</i>. If multiple threads modify this
+ * sorted-list concurrently it must be synchronized externally.
+ * <p>
+ * This implementation uses a comparator (whether or not one is explicitly
+ * provided) to perform all element comparisons. Two elements which are deemed
+ * equal by the comparator's {@code compare(E, E)} method are, from the
+ * standpoint of this list, equal. Further, no guarantee is made as to the final
+ * order of <i>equal</i> elements. Ties may be broken arbitrarily.
+ * <p>
+ * The following table summarizes the performance of this class compared to a
+ * {@link Skiplist} (where n is the size of this sorted-list and <i>m</i> is the
+ * size of the specified collection):
+ * <p>
+ * <table border="1" cellpadding="3" cellspacing="1" style="width:400px;">
+ *   <tr>
+ *     <th style="text-align:center;" rowspan="2">Method</th>
+ *     <th style="text-align:center;" colspan="2">Running Time</th>
+ *   </tr>
+ *   <tr>
+ *     <td style="text-align:center;"><b>Packedlist</b><br>(<i>amortized</i>)</td>
+ *     <td style="text-align:center;"><b>Skiplist</b><br>(<i>expected</i>)</td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #addAll(Collection) addAll(Collection)}
+ *     </td>
+ *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(n + m log m)</i></td>
+ *     <td style="text-align:center;" bgcolor="FFCCCC"><i>O(m log n)</i></td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #add(Object) add(E)}<br/>
+ *       {@link #remove(Object)}<br/>
+ *       {@link #remove(int)}
+ *     </td>
+ *     <td style="text-align:center;" bgcolor="FFCCCC"><i>O(log<sup>2</sup> n)</i></td>
+ *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(log n)</i></td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #contains(Object)}<br/>
+ *       {@link #indexOf(Object)}<br/>
+ *       {@link #lastIndexOf(Object)}<br/>
+ *       {@link #get(int)}<br/>
+ *       {@link #listIterator(int)}
+ *     </td>
+ *     <td style="text-align:center;" colspan="2"><i>O(log n)</i></td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #clear() clear()}<br/>
+ *       {@link #isEmpty() isEmpty()}<br/>
+ *       {@link #size()}<br/>
+ *       {@link Iterator#next()}
+ *     </td>
+ *     <td style="text-align:center;" colspan="2"><i>O(1)</i></td>
+ *   </tr>
+ * </table>
+ * <p>
+ * The sub-list views exhibit identical time complexity, with the exception of
+ * the {@code clear()} operation which runs in <i>O(m log<sup>2</sup> n)</i>
+ * time, where m is the size of the view.
+ *
+ * @author Zhenya Leonov
+ * @param <E>
+ *            the type of elements maintained by this list
+ * @see Skiplist
+ * @see Treelist
+ */
+public class Packedlist<E> extends AbstractCollection<E> implements Sortedlist<E>, Serializable, Cloneable {
+
+	private static final long serialVersionUID = 1L;
+	private static final int MIN_CAPACITY = 8;
+	private static final double ROOT_DENSITY = .75;
+	private static final double ROOT_MIN_DENSITY = .25;
+	private final Comparator<? super E> comparator;
+	private transient Object[] slots;
+	private transient int[] counts;
+	private transient int[] tree;
+	private transient int shift;
+	private transient int segments;
+	private transient int size = 0;
+	private transient int modCount = 0;
+
+	private Packedlist(final Comparator<? super E> comparator) {
+		this.comparator = comparator;
+		layout(new Object[0], 0);
+	}
+
+	/**
+	 * Creates a new {@code Packedlist} that orders its elements according to
+	 * their <i>natural ordering</i>.
+	 *
+	 * @return a new {@code Packedlist} that orders its elements according to
+	 *         their <i>natural ordering</i>
+	 */
+	public static <E extends Comparable<? super E>> Packedlist<E> create() {
+		return new Packedlist<E>(Ordering.natural());
+	}
+
+	/**
+	 * Creates a new {@code Packedlist} containing the specified initial
+	 * elements. If {@code elements} is an instance of {@link SortedSet},
+	 * {@link PriorityQueue}, {@link MinMaxPriorityQueue}, or
+	 * {@code SortedCollection}, this list will be ordered according to the same
+	 * ordering. Otherwise, this list will be ordered according to the
+	 * <i>natural ordering</i> of its elements.
+	 *
+	 * @param elements
+	 *            the collection whose elements are to be placed into the list
+	 * @return a new {@code Packedlist} containing the elements of the
+	 *         specified collection
+	 * @throws ClassCastException
+	 *             if elements of the specified collection cannot be compared to
+	 *             one another according to this list's ordering
+	 * @throws NullPointerException
+	 *             if any of the elements of the specified collection or the
+	 *             collection itself is {@code null}
+	 */
+	@SuppressWarnings({ "unchecked" })
+	public static <E extends Comparable<? super E>> Packedlist<E> from(final Collection<? extends E> elements) {
+		checkNotNull(elements);
+		final Comparator<? super E> comparator;
+		if (elements instanceof SortedSet<?>)
+			comparator = ((SortedSet<? super E>) elements).comparator();
+		else if (elements instanceof PriorityQueue<?>)
+			comparator = ((PriorityQueue<? super E>) elements).comparator();
+		else if (elements instanceof SortedCollection<?>)
+			comparator = ((SortedCollection<? super E>) elements).comparator();
+		else if (elements instanceof MinMaxPriorityQueue<?>)
+			comparator = ((MinMaxPriorityQueue<? super E>) elements).comparator();
+		else
+			comparator = (Comparator<? super E>) Ordering.natural();
+		return orderedBy(comparator).create(elements);
+	}
+
+	/**
+	 * Returns a new builder configured to build {@code Packedlist} instances
+	 * that use the specified comparator for ordering.
+	 *
+	 * @param comparator
+	 *            the specified comparator
+	 * @return a new builder configured to build {@code Packedlist} instances
+	 *         that use the specified comparator for ordering
+	 */
+	public static <B> Builder<B> orderedBy(final Comparator<B> comparator) {
+		checkNotNull(comparator);
+		return new Builder<B>(comparator);
+	}
+
+	/**
+	 * A builder for the creation of {@code Packedlist} instances. Instances of
+	 * this builder are obtained calling {@link Packedlist#orderedBy(Comparator)}.
+	 *
+	 * @author Zhenya Leonov
+	 * @param <B>
+	 *            the upper bound of the type of lists this builder can produce
+	 *            (for example a {@code Builder<Number>} can produce a
+	 *            {@code Packedlist<Float>} or a {@code Packedlist<Integer>}
+	 */
+	public static final class Builder<B> {
+
+		private final Comparator<B> comparator;
+
+		private Builder(final Comparator<B> comparator) {
+			this.comparator = comparator;
+		}
+
+		/**
+		 * Builds an empty {@code Packedlist} using the previously specified
+		 * comparator.
+		 *
+		 * @return an empty {@code Packedlist} using the previously specified
+		 *         comparator.
+		 */
+		public <T extends B> Packedlist<T> create() {
+			return new Packedlist<T>(comparator);
+		}
+
+		/**
+		 * Builds a new {@code Packedlist} using the previously specified
+		 * comparator, and having the given initial elements.
+		 *
+		 * @param elements
+		 *            the initial elements to be placed in this list
+		 * @return a new {@code Packedlist} using the previously specified
+		 *         comparator, and having the given initial elements
+		 */
+		public <T extends B> Packedlist<T> create(final Iterable<? extends T> elements) {
+			checkNotNull(elements);
+			final Packedlist<T> list = new Packedlist<T>(comparator);
+			Iterables.addAll(list, elements);
+			return list;
+		}
+	}
+
+	/**
+	 * Returns the comparator used to order the elements in this list. If one
+	 * was not explicitly provided a <i>natural order</i> comparator is
+	 * returned.
+	 *
+	 * @return the comparator used to order this list
+	 */
+	@Override
+	public Comparator<? super E> comparator() {
+		return comparator;
+	}
+
+	/**
+	 * Inserts the specified element into this list in sorted order.
+	 */
+	@Override
+	public boolean add(E e) {
+		checkNotNull(e);
+		insert(e, search(e, true, 0, size));
+		return true;
+	}
+
+	/**
+	 * Inserts all of the elements in the specified collection into this list
+	 * in sorted order. If the specified collection is not much smaller than
+	 * this list, its elements are sorted and merged with the elements of this
+	 * list, which are then spread evenly over a new array.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		checkNotNull(c);
+		final Object[] added = c.toArray();
+		if (added.length == 0)
+			return false;
+		for (Object e : added)
+			checkNotNull(e);
+		if (added.length < size >>> 4) {
+			for (Object e : added)
+				insert((E) e, search(e, true, 0, size));
+			return true;
+		}
+		final Comparator<Object> comparator = (Comparator<Object>) this.comparator;
+		Arrays.sort(added, comparator);
+		final Object[] merged = new Object[size + added.length];
+		int j = 0;
+		int k = 0;
+		for (int s = 0; s < segments; s++)
+			for (int p = s << shift, end = p + counts[s]; p < end; p++) {
+				while (j < added.length && comparator.compare(added[j], slots[p]) < 0)
+					merged[k++] = added[j++];
+				merged[k++] = slots[p];
+			}
+		while (j < added.length)
+			merged[k++] = added[j++];
+		layout(merged, k);
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		final int index = indexOf(o);
+		if (index == -1)
+			return false;
+		removeAt(locate(index));
+		return true;
+	}
+
+	@Override
+	public E remove(int index) {
+		checkElementIndex(index, size);
+		return removeAt(locate(index));
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) != -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E get(int index) {
+		checkElementIndex(index, size);
+		final long location = locate(index);
+		return (E) slots[((int) (location >>> 32) << shift) + (int) location];
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		return indexOf(o, 0, size);
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return lastIndexOf(o, 0, size);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		layout(new Object[0], 0);
+		modCount++;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return listIterator();
+	}
+
+	@Override
+	public ListIterator<E> listIterator() {
+		return listIterator(0);
+	}
+
+	@Override
+	public ListIterator<E> listIterator(int index) {
+		checkPositionIndex(index, size);
+		return new ListIteratorImpl(null, index);
+	}
+
+	/**
+	 * Performs the given action on each element of this list, in order,
+	 * reading the backing array one segment at a time.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void forEach(Consumer<? super E> action) {
+		checkNotNull(action);
+		final int expectedModCount = modCount;
+		for (int s = 0; s < segments; s++)
+			for (int p = s << shift, end = p + counts[s]; p < end; p++)
+				action.accept((E) slots[p]);
+		if (modCount != expectedModCount)
+			throw new ConcurrentModificationException();
+	}
+
+	@Override
+	public Spliterator<E> spliterator() {
+		return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.NONNULL);
+	}
+
+	@Override
+	public Sortedlist<E> sublist(int fromIndex, int toIndex) {
+		checkPositionIndexes(fromIndex, toIndex, size);
+		return new Sublist(fromIndex, toIndex - fromIndex);
+	}
+
+	@Override
+	public int hashCode() {
+		int hashCode = 1;
+		for (E e : this)
+			hashCode = 31 * hashCode + e.hashCode();
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o == this || equal(this, o);
+	}
+
+	/**
+	 * Returns a shallow copy of this {@code Packedlist}. The elements
+	 * themselves are not cloned.
+	 *
+	 * @return a shallow copy of this list
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Packedlist<E> clone() throws CloneNotSupportedException {
+		final Packedlist<E> clone = (Packedlist<E>) super.clone();
+		clone.slots = slots.clone();
+		clone.counts = counts.clone();
+		clone.tree = tree.clone();
+		clone.modCount = 0;
+		return clone;
+	}
+
+	private void writeObject(java.io.ObjectOutputStream oos) throws java.io.IOException {
+		oos.defaultWriteObject();
+		oos.writeInt(size);
+		for (E e : this)
+			oos.writeObject(e);
+	}
+
+	private void readObject(java.io.ObjectInputStream ois) throws java.io.IOException, ClassNotFoundException {
+		ois.defaultReadObject();
+		final Object[] elements = new Object[ois.readInt()];
+		for (int i = 0; i < elements.length; i++)
+			elements[i] = ois.readObject();
+		layout(elements, elements.length);
+	}
+
+	/*
+	 * Returns true if the specified object is a Sortedlist whose elements are
+	 * equal, according to this list's comparator, to the elements of the given
+	 * collection.
+	 */
+	private boolean equal(final Collection<E> c, final Object o) {
+		if (!(o instanceof Sortedlist))
+			return false;
+		try {
+			@SuppressWarnings("unchecked")
+			final Iterator<E> i = ((Collection<E>) o).iterator();
+			for (E e : c)
+				if (!i.hasNext() || comparator.compare(e, i.next()) != 0)
+					return false;
+			return !i.hasNext();
+		} catch (ClassCastException e) {
+			return false;
+		} catch (NullPointerException e) {
+			return false;
+		}
+	}
+
+	private int indexOf(final Object o, final int from, final int to) {
+		if (o == null || from == to)
+			return -1;
+		final int index = Math.max(search(o, false, from, to), from);
+		return index < to && compare(index, o) == 0 ? index : -1;
+	}
+
+	private int lastIndexOf(final Object o, final int from, final int to) {
+		if (o == null || from == to)
+			return -1;
+		final int index = Math.min(search(o, true, from, to), to) - 1;
+		return index >= from && compare(index, o) == 0 ? index : -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(final int index, final Object o) {
+		return comparator.compare(get(index), (E) o);
+	}
+
+	/*
+	 * Returns the rank of the first element which is greater than (or, if
+	 * inclusive is false, not less than) the specified element, clamped to the
+	 * range [from, to]. The segment is found by a binary search over the first
+	 * element of each segment, which is never empty unless the list consists
+	 * of a single segment.
+	 */
+	@SuppressWarnings("unchecked")
+	private int search(final Object o, final boolean inclusive, final int from, final int to) {
+		if (size == 0)
+			return 0;
+		final E e = (E) o;
+		final int bound = inclusive ? 1 : 0;
+		int lo = 0;
+		int hi = segments - 1;
+		int segment = -1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (comparator.compare((E) slots[mid << shift], e) < bound) {
+				segment = mid;
+				lo = mid + 1;
+			} else
+				hi = mid - 1;
+		}
+		if (segment == -1)
+			return from;
+		final int base = segment << shift;
+		int low = 1;
+		int high = counts[segment] - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			if (comparator.compare((E) slots[base + mid], e) < bound)
+				low = mid + 1;
+			else
+				high = mid - 1;
+		}
+		return Math.max(from, Math.min(to, prefix(segment) + low));
+	}
+
+	/*
+	 * Returns the segment containing the element at the specified rank in the
+	 * upper 32 bits, and the offset of the element within the segment in the
+	 * lower 32 bits. A rank equal to the size of the list yields the position
+	 * following the last element.
+	 */
+	private long locate(final int index) {
+		if (index == size) {
+			final int last = segments - 1;
+			return (long) last << 32 | counts[last];
+		}
+		int segment = 0;
+		int rest = index;
+		for (int step = Integer.highestOneBit(segments); step > 0; step >>= 1)
+			if (segment + step <= segments && tree[segment + step] <= rest) {
+				segment += step;
+				rest -= tree[segment];
+			}
+		return (long) segment << 32 | rest;
+	}
+
+	private int prefix(final int segment) {
+		int sum = 0;
+		for (int i = segment; i > 0; i -= i & -i)
+			sum += tree[i];
+		return sum;
+	}
+
+	private void update(final int segment, final int delta) {
+		for (int i = segment + 1; i <= segments; i += i & -i)
+			tree[i] += delta;
+	}
+
+	private void insert(final E e, final int index) {
+		long location = locate(index);
+		if (counts[(int) (location >>> 32)] == 1 << shift) {
+			makeRoom((int) (location >>> 32));
+			location = locate(index);
+		}
+		final int segment = (int) (location >>> 32);
+		final int position = (segment << shift) + (int) location;
+		System.arraycopy(slots, position, slots, position + 1, counts[segment] - (int) location);
+		slots[position] = e;
+		counts[segment]++;
+		update(segment, 1);
+		size++;
+		modCount++;
+	}
+
+	@SuppressWarnings("unchecked")
+	private E removeAt(final long location) {
+		final int segment = (int) (location >>> 32);
+		final int base = segment << shift;
+		final int position = base + (int) location;
+		final E e = (E) slots[position];
+		System.arraycopy(slots, position + 1, slots, position, base + counts[segment] - position - 1);
+		slots[base + --counts[segment]] = null;
+		update(segment, -1);
+		size--;
+		modCount++;
+		if (slots.length > MIN_CAPACITY && size < slots.length >>> 2)
+			layout(toArray(), size);
+		else if (counts[segment] == 0 && segments > 1)
+			refill(segment);
+		return e;
+	}
+
+	/*
+	 * Spreads out the smallest window around the specified full segment whose
+	 * density allows each of its segments to keep a free slot, or doubles the
+	 * array if there is no such window.
+	 */
+	private void makeRoom(final int segment) {
+		final int height = Integer.numberOfTrailingZeros(segments);
+		for (int level = 1; level <= height; level++) {
+			final int width = 1 << level;
+			final int start = segment & -width;
+			final int count = prefix(start + width) - prefix(start);
+			final double density = 1 - (1 - ROOT_DENSITY) * level / height;
+			if (count + width <= density * (width << shift)) {
+				rebalance(start, width, count);
+				return;
+			}
+		}
+		layout(toArray(), size);
+	}
+
+	/*
+	 * Spreads out the smallest window around the specified empty segment
+	 * which holds at least one element per segment, and whose density is
+	 * above a threshold which grows from nothing at the individual segment to
+	 * a quarter at the root window, so that the segments of a spread window
+	 * take many removals to empty again. The size of the list is at least a
+	 * quarter of its capacity, so the root window always qualifies.
+	 */
+	private void refill(final int segment) {
+		final int height = Integer.numberOfTrailingZeros(segments);
+		for (int level = 1;; level++) {
+			final int width = 1 << level;
+			final int start = segment & -width;
+			final int count = prefix(start + width) - prefix(start);
+			final double density = ROOT_MIN_DENSITY * level / height;
+			if (count >= width && count >= density * (width << shift) || level == height) {
+				rebalance(start, width, count);
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Spreads the elements of a window evenly across its segments. Only the
+	 * segments of the window change size, so the Fenwick tree is patched with
+	 * one point update per segment rather than rebuilt.
+	 */
+	private void rebalance(final int start, final int width, final int count) {
+		final Object[] window = new Object[count];
+		final int[] before = Arrays.copyOfRange(counts, start, start + width);
+		for (int s = start, k = 0; s < start + width; s++) {
+			System.arraycopy(slots, s << shift, window, k, counts[s]);
+			k += counts[s];
+		}
+		spread(window, start, width, count);
+		for (int i = 0; i < width; i++)
+			if (counts[start + i] != before[i])
+				update(start + i, counts[start + i] - before[i]);
+	}
+
+	/*
+	 * Allocates an array with room for twice the specified number of elements,
+	 * divided into segments of a power of two slots no smaller than the
+	 * logarithm of its length, and spreads the elements evenly across it.
+	 */
+	private void layout(final Object[] elements, final int count) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * count)
+			capacity <<= 1;
+		final int log = Integer.numberOfTrailingZeros(capacity);
+		shift = Math.max(3, 32 - Integer.numberOfLeadingZeros(log - 1));
+		segments = capacity >>> shift;
+		slots = new Object[capacity];
+		counts = new int[segments];
+		spread(elements, 0, segments, count);
+		size = count;
+		buildTree();
+	}
+
+	private void spread(final Object[] elements, final int start, final int width, final int count) {
+		for (int i = 0, k = 0; i < width; i++) {
+			final int base = start + i << shift;
+			final int n = count / width + (i < count % width ? 1 : 0);
+			System.arraycopy(elements, k, slots, base, n);
+			Arrays.fill(slots, base + n, base + (1 << shift), null);
+			counts[start + i] = n;
+			k += n;
+		}
+	}
+
+	private void buildTree() {
+		tree = new int[segments + 1];
+		for (int i = 1; i <= segments; i++) {
+			tree[i] += counts[i - 1];
+			final int parent = i + (i & -i);
+			if (parent <= segments)
+				tree[parent] += tree[i];
+		}
+	}
+
+	private class ListIteratorImpl implements ListIterator<E> {
+		private final Sublist sublist;
+		private final int offset;
+		private int segment;
+		private int position;
+		private int index;
+		private int last = -1;
+		private int expectedModCount = modCount;
+
+		private ListIteratorImpl(final Sublist sublist, final int index) {
+			this.sublist = sublist;
+			offset = sublist == null ? 0 : sublist.offset;
+			this.index = index + offset;
+			seek();
+		}
+
+		private int end() {
+			return sublist == null ? size : sublist.offset + sublist.size;
+		}
+
+		private void seek() {
+			final long location = locate(index);
+			segment = (int) (location >>> 32);
+			position = (int) location;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index < end();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public E next() {
+			checkForConcurrentModification();
+			if (!hasNext())
+				throw new NoSuchElementException();
+			while (position == counts[segment]) {
+				segment++;
+				position = 0;
+			}
+			last = index++;
+			return (E) slots[(segment << shift) + position++];
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return index > offset;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public E previous() {
+			checkForConcurrentModification();
+			if (!hasPrevious())
+				throw new NoSuchElementException();
+			while (position == 0)
+				position = counts[--segment];
+			last = --index;
+			return (E) slots[(segment << shift) + --position];
+		}
+
+		@Override
+		public int nextIndex() {
+			return index - offset;
+		}
+
+		@Override
+		public int previousIndex() {
+			return index - offset - 1;
+		}
+
+		@Override
+		public void remove() {
+			checkState(last != -1);
+			checkForConcurrentModification();
+			removeAt(locate(last));
+			index = last;
+			last = -1;
+			seek();
+			expectedModCount = modCount;
+			if (sublist != null) {
+				sublist.size--;
+				sublist.expectedModCount = modCount;
+			}
+		}
+
+		@Override
+		public void set(E e) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void add(E e) {
+			throw new UnsupportedOperationException();
+		}
+
+		private void checkForConcurrentModification() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+	}
+
+	private final class Sublist extends AbstractCollection<E> implements Sortedlist<E> {
+		private final int offset;
+		private int size;
+		private int expectedModCount = modCount;
+
+		private Sublist(final int offset, final int size) {
+			this.offset = offset;
+			this.size = size;
+		}
+
+		private void checkForConcurrentModification() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+
+		@Override
+		public Comparator<? super E> comparator() {
+			return comparator;
+		}
+
+		@Override
+		public int size() {
+			checkForConcurrentModification();
+			return size;
+		}
+
+		@Override
+		public boolean add(E e) {
+			checkForConcurrentModification();
+			checkNotNull(e);
+			checkArgument(size > 0 && comparator.compare(e, get(0)) >= 0 && comparator.compare(e, get(size - 1)) <= 0);
+			insert(e, search(e, true, offset, offset + size));
+			expectedModCount = modCount;
+			size++;
+			return true;
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			checkForConcurrentModification();
+			final int index = Packedlist.this.indexOf(o, offset, offset + size);
+			if (index == -1)
+				return false;
+			removeAt(locate(index));
+			expectedModCount = modCount;
+			size--;
+			return true;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) != -1;
+		}
+
+		@Override
+		public void clear() {
+			checkForConcurrentModification();
+			while (size > 0) {
+				removeAt(locate(offset + size - 1));
+				size--;
+			}
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public E get(int index) {
+			checkForConcurrentModification();
+			checkElementIndex(index, size);
+			return Packedlist.this.get(offset + index);
+		}
+
+		@Override
+		public E remove(int index) {
+			checkForConcurrentModification();
+			checkElementIndex(index, size);
+			final E e = removeAt(locate(offset + index));
+			expectedModCount = modCount;
+			size--;
+			return e;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			checkForConcurrentModification();
+			final int index = Packedlist.this.indexOf(o, offset, offset + size);
+			return index == -1 ? -1 : index - offset;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			checkForConcurrentModification();
+			final int index = Packedlist.this.lastIndexOf(o, offset, offset + size);
+			return index == -1 ? -1 : index - offset;
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return listIterator();
+		}
+
+		@Override
+		public ListIterator<E> listIterator() {
+			return listIterator(0);
+		}
+
+		@Override
+		public ListIterator<E> listIterator(int index) {
+			checkForConcurrentModification();
+			checkPositionIndex(index, size);
+			return new ListIteratorImpl(this, index);
+		}
+
+		@Override
+		public Spliterator<E> spliterator() {
+			return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+
+		@Override
+		public Sortedlist<E> sublist(int fromIndex, int toIndex) {
+			checkForConcurrentModification();
+			checkPositionIndexes(fromIndex, toIndex, size);
+			return new Sublist(offset + fromIndex, toIndex - fromIndex);
+		}
+
+		@Override
+		public int hashCode() {
+			int hashCode = 1;
+			for (E e : this)
+				hashCode = 31 * hashCode + e.hashCode();
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o == this || equal(this, o);
+		}
+	}
+
+}
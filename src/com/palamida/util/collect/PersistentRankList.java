@@ -0,0 +1,600 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * An immutable, <i>persistent</i> {@code List} supporting logarithmic time
+ * positional access, insertion, removal, concatenation, and splitting. Permits
+ * all elements, including {@code null}.
+ * <p>
+ * Instances of this class are never modified. Instead, every update operation
+ * (e.g. {@link #insert(int, Object)}, {@link #replace(int, Object)},
+ * {@link #delete(int)}, {@link #concat(PersistentRankList)}) returns a new
+ * list which shares all but a logarithmic number of its nodes with the
+ * original. As a consequence taking a snapshot of a list is free: a reference
+ * to the list is its snapshot, and older versions remain valid and unchanged
+ * no matter how many updates are derived from them. All {@code List} mutator
+ * methods throw {@code UnsupportedOperationException}.
+ * <p>
+ * This list is <i>thread-safe</i>. Instances may be freely shared between
+ * threads without synchronization.
+ * <p>
+ * This class implements a height-balanced (<a
+ * href="http://en.wikipedia.org/wiki/AVL_tree">AVL</a>) binary tree whose nodes
+ * are augmented with the size of their subtrees, and updated by path copying.
+ * Concatenation and splitting are performed by joining trees of different
+ * heights along their spines, so neither operation visits more than a
+ * logarithmic number of nodes.
+ * <p>
+ * The following table summarizes the performance of this class compared to a
+ * {@link RankList} (where n is the size of this list and <i>m</i> is the size
+ * of the other list):
+ * <p>
+ * <table border="1" cellpadding="3" cellspacing="1" style="width:450px;">
+ *   <tr>
+ *     <th style="text-align:center;" rowspan="2">Method</th>
+ *     <th style="text-align:center;" colspan="2">Running Time</th>
+ *   </tr>
+ *   <tr>
+ *     <td style="text-align:center;"><b>PersistentRankList</b><br>(<i>worst-case</i>)</td>
+ *     <td style="text-align:center;"><b>RankList</b><br>(<i>expected</i>)</td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #get(int)}<br/>
+ *       {@link #insert(int, Object) insert(int, E)}<br/>
+ *       {@link #replace(int, Object) replace(int, E)}<br/>
+ *       {@link #delete(int)}
+ *     </td>
+ *     <td style="text-align:center;" colspan="2"><i>O(log n)</i></td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #concat(PersistentRankList)}
+ *     </td>
+ *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(log n + log m)</i></td>
+ *     <td style="text-align:center;" bgcolor="FFCCCC"><i>O(m + log n)</i></td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #subList(int, int)}<br/>
+ *       {@link #head(int)}<br/>
+ *       {@link #tail(int)}
+ *     </td>
+ *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(log n)</i></td>
+ *     <td style="text-align:center;" bgcolor="FFCCCC"><i>O(log n)</i> (view)</td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       snapshot
+ *     </td>
+ *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(1)</i></td>
+ *     <td style="text-align:center;" bgcolor="FFCCCC"><i>O(n)</i> ({@link RankList#clone() clone()})</td>
+ *   </tr>
+ *   <tr>
+ *     <td>
+ *       {@link #create(Iterable)}
+ *     </td>
+ *     <td style="text-align:center;" colspan="2"><i>O(n)</i></td>
+ *   </tr>
+ * </table>
+ *
+ * @author Zhenya Leonov
+ * @param <E>
+ *            the type of elements maintained by this list
+ * @see RankList
+ */
+public final class PersistentRankList<E> extends AbstractList<E> implements
+		List<E>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+	private static final PersistentRankList<Object> EMPTY = new PersistentRankList<Object>(
+			null);
+	private transient Node<E> root;
+
+	private PersistentRankList(final Node<E> root) {
+		this.root = root;
+	}
+
+	/**
+	 * Returns the empty {@code PersistentRankList}.
+	 *
+	 * @return the empty {@code PersistentRankList}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentRankList<E> create() {
+		return (PersistentRankList<E>) EMPTY;
+	}
+
+	/**
+	 * Creates a new {@code PersistentRankList} containing the elements of the
+	 * specified {@code Iterable}, in the order they are returned by its
+	 * iterator.
+	 *
+	 * @param elements
+	 *            the iterable whose elements are to be placed into the list
+	 * @return a new {@code PersistentRankList} containing the elements of the
+	 *         specified iterable
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentRankList<E> create(
+			final Iterable<? extends E> elements) {
+		checkNotNull(elements);
+		if (elements instanceof PersistentRankList<?>)
+			return (PersistentRankList<E>) elements;
+		final Object[] array = Iterables.toArray(elements, Object.class);
+		return array.length == 0 ? PersistentRankList.<E> create()
+				: new PersistentRankList<E>(PersistentRankList
+						.<E> build(array, 0, array.length));
+	}
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	@Override
+	public E get(int index) {
+		checkElementIndex(index, size());
+		Node<E> node = root;
+		while (true) {
+			final int leftSize = size(node.left);
+			if (index < leftSize)
+				node = node.left;
+			else if (index == leftSize)
+				return node.element;
+			else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns a list identical to this list except that the element at the
+	 * specified position is replaced with the specified element.
+	 *
+	 * @param index
+	 *            index of the element to replace
+	 * @param element
+	 *            element to be stored at the specified position
+	 * @return a list with the element at the specified position replaced
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code index} is negative or greater than or equal to
+	 *             {@code size()}
+	 */
+	public PersistentRankList<E> replace(final int index, final E element) {
+		checkElementIndex(index, size());
+		return new PersistentRankList<E>(replace(root, index, element));
+	}
+
+	/**
+	 * Returns a list identical to this list except that the specified element
+	 * is inserted at the specified position. The element currently at that
+	 * position (if any) and any subsequent elements are shifted to the right.
+	 *
+	 * @param index
+	 *            index at which the specified element is to be inserted
+	 * @param element
+	 *            element to be inserted
+	 * @return a list with the specified element inserted
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code index} is negative or greater than {@code size()}
+	 */
+	public PersistentRankList<E> insert(final int index, final E element) {
+		checkPositionIndex(index, size());
+		return new PersistentRankList<E>(insert(root, index, element));
+	}
+
+	/**
+	 * Returns a list identical to this list except that the specified element
+	 * is appended to the end.
+	 *
+	 * @param element
+	 *            element to be appended
+	 * @return a list with the specified element appended
+	 */
+	public PersistentRankList<E> append(final E element) {
+		return insert(size(), element);
+	}
+
+	/**
+	 * Returns a list identical to this list except that the element at the
+	 * specified position is removed. Any subsequent elements are shifted to the
+	 * left.
+	 *
+	 * @param index
+	 *            the index of the element to be removed
+	 * @return a list with the element at the specified position removed
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code index} is negative or greater than or equal to
+	 *             {@code size()}
+	 */
+	public PersistentRankList<E> delete(final int index) {
+		checkElementIndex(index, size());
+		return wrap(delete(root, index));
+	}
+
+	/**
+	 * Returns the concatenation of this list and the specified list. Neither
+	 * list is copied.
+	 *
+	 * @param other
+	 *            the list whose elements follow the elements of this list
+	 * @return the concatenation of this list and the specified list
+	 */
+	@SuppressWarnings("unchecked")
+	public PersistentRankList<E> concat(
+			final PersistentRankList<? extends E> other) {
+		checkNotNull(other);
+		if (other.root == null)
+			return this;
+		if (root == null)
+			return (PersistentRankList<E>) other;
+		return new PersistentRankList<E>(concat(root, (Node<E>) other.root));
+	}
+
+	/**
+	 * Returns a list containing the first {@code toIndex} elements of this
+	 * list.
+	 *
+	 * @param toIndex
+	 *            the number of leading elements to retain
+	 * @return a list containing the first {@code toIndex} elements of this list
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code toIndex} is negative or greater than {@code size()}
+	 */
+	public PersistentRankList<E> head(final int toIndex) {
+		checkPositionIndex(toIndex, size());
+		return toIndex == size() ? this : wrap(head(root, toIndex));
+	}
+
+	/**
+	 * Returns a list containing the elements of this list starting at
+	 * {@code fromIndex}.
+	 *
+	 * @param fromIndex
+	 *            the index of the first element to retain
+	 * @return a list containing the elements of this list starting at
+	 *         {@code fromIndex}
+	 * @throws IndexOutOfBoundsException
+	 *             if {@code fromIndex} is negative or greater than
+	 *             {@code size()}
+	 */
+	public PersistentRankList<E> tail(final int fromIndex) {
+		checkPositionIndex(fromIndex, size());
+		return fromIndex == 0 ? this : wrap(tail(root, fromIndex));
+	}
+
+	/**
+	 * Returns a {@code PersistentRankList} containing the elements of this list
+	 * between {@code fromIndex}, inclusive, and {@code toIndex}, exclusive.
+	 * Unlike the views returned by other lists, the returned list is
+	 * independent of this list, which is never modified anyway.
+	 */
+	@Override
+	public PersistentRankList<E> subList(final int fromIndex, final int toIndex) {
+		checkPositionIndexes(fromIndex, toIndex, size());
+		return head(toIndex).tail(fromIndex);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Itor(0);
+	}
+
+	/**
+	 * Returns a {@code Spliterator} over the elements in this list. The
+	 * spliterator reports {@link Spliterator#IMMUTABLE},
+	 * {@link Spliterator#ORDERED}, {@link Spliterator#SIZED}, and
+	 * {@link Spliterator#SUBSIZED}, and splits its range exactly in half by
+	 * rank.
+	 *
+	 * @return a {@code Spliterator} over the elements in this list
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new Spliter(0, size());
+	}
+
+	private void writeObject(java.io.ObjectOutputStream oos)
+			throws java.io.IOException {
+		oos.defaultWriteObject();
+		oos.writeInt(size());
+		for (E e : this)
+			oos.writeObject(e);
+	}
+
+	private void readObject(java.io.ObjectInputStream ois)
+			throws java.io.IOException, ClassNotFoundException {
+		ois.defaultReadObject();
+		final Object[] array = new Object[ois.readInt()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = ois.readObject();
+		root = build(array, 0, array.length);
+	}
+
+	private Object readResolve() {
+		return root == null ? EMPTY : this;
+	}
+
+	private class Itor implements Iterator<E> {
+		@SuppressWarnings("unchecked")
+		private final Node<E>[] stack = new Node[height(root)];
+		private int depth = 0;
+
+		/*
+		 * Pushes the path to the element at the specified index, retaining
+		 * only the nodes which precede or equal it in order.
+		 */
+		private Itor(int index) {
+			Node<E> node = root;
+			while (node != null) {
+				final int leftSize = size(node.left);
+				if (index <= leftSize) {
+					stack[depth++] = node;
+					if (index == leftSize)
+						break;
+					node = node.left;
+				} else {
+					index -= leftSize + 1;
+					node = node.right;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return depth > 0;
+		}
+
+		@Override
+		public E next() {
+			if (depth == 0)
+				throw new NoSuchElementException();
+			final Node<E> node = stack[--depth];
+			pushLeft(node.right);
+			return node.element;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void pushLeft(Node<E> node) {
+			for (; node != null; node = node.left)
+				stack[depth++] = node;
+		}
+	}
+
+	private class Spliter implements Spliterator<E> {
+		private Itor itor = null;
+		private int index;
+		private final int fence;
+
+		private Spliter(final int origin, final int fence) {
+			this.index = origin;
+			this.fence = fence;
+		}
+
+		@Override
+		public Spliterator<E> trySplit() {
+			final int lo = index;
+			final int mid = (lo + fence) >>> 1;
+			if (lo >= mid || itor != null)
+				return null;
+			index = mid;
+			return new Spliter(lo, mid);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			checkNotNull(action);
+			if (index >= fence)
+				return false;
+			if (itor == null)
+				itor = new Itor(index);
+			index++;
+			action.accept(itor.next());
+			return true;
+		}
+
+		@Override
+		public long estimateSize() {
+			return fence - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.IMMUTABLE | Spliterator.ORDERED
+					| Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+	}
+
+	// AVL tree
+
+	private static final class Node<E> {
+		private final E element;
+		private final Node<E> left;
+		private final Node<E> right;
+		private final int size;
+		private final int height;
+
+		private Node(final Node<E> left, final E element, final Node<E> right) {
+			this.element = element;
+			this.left = left;
+			this.right = right;
+			size = size(left) + size(right) + 1;
+			height = Math.max(height(left), height(right)) + 1;
+		}
+	}
+
+	private PersistentRankList<E> wrap(final Node<E> root) {
+		return root == null ? PersistentRankList.<E> create()
+				: new PersistentRankList<E>(root);
+	}
+
+	private static int size(final Node<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static int height(final Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> Node<E> build(final Object[] array, final int from,
+			final int to) {
+		if (from == to)
+			return null;
+		final int mid = (from + to) >>> 1;
+		return new Node<E>(PersistentRankList.<E> build(array, from, mid),
+				(E) array[mid], PersistentRankList.<E> build(array, mid + 1, to));
+	}
+
+	private static <E> Node<E> replace(final Node<E> node, final int index,
+			final E element) {
+		final int leftSize = size(node.left);
+		if (index < leftSize)
+			return new Node<E>(replace(node.left, index, element),
+					node.element, node.right);
+		if (index > leftSize)
+			return new Node<E>(node.left, node.element, replace(node.right,
+					index - leftSize - 1, element));
+		return new Node<E>(node.left, element, node.right);
+	}
+
+	private static <E> Node<E> insert(final Node<E> node, final int index,
+			final E element) {
+		if (node == null)
+			return new Node<E>(null, element, null);
+		final int leftSize = size(node.left);
+		if (index <= leftSize)
+			return balance(insert(node.left, index, element), node.element,
+					node.right);
+		return balance(node.left, node.element, insert(node.right, index
+				- leftSize - 1, element));
+	}
+
+	private static <E> Node<E> delete(final Node<E> node, final int index) {
+		final int leftSize = size(node.left);
+		if (index < leftSize)
+			return balance(delete(node.left, index), node.element, node.right);
+		if (index > leftSize)
+			return balance(node.left, node.element, delete(node.right, index
+					- leftSize - 1));
+		if (node.right == null)
+			return node.left;
+		return join(node.left, first(node.right), delete(node.right, 0));
+	}
+
+	private static <E> Node<E> head(final Node<E> node, final int toIndex) {
+		if (node == null || toIndex == 0)
+			return null;
+		final int leftSize = size(node.left);
+		if (toIndex <= leftSize)
+			return head(node.left, toIndex);
+		return join(node.left, node.element, head(node.right, toIndex
+				- leftSize - 1));
+	}
+
+	private static <E> Node<E> tail(final Node<E> node, final int fromIndex) {
+		if (node == null)
+			return null;
+		final int leftSize = size(node.left);
+		if (fromIndex > leftSize)
+			return tail(node.right, fromIndex - leftSize - 1);
+		return join(tail(node.left, fromIndex), node.element, node.right);
+	}
+
+	private static <E> Node<E> concat(final Node<E> left, final Node<E> right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		return join(left, first(right), delete(right, 0));
+	}
+
+	private static <E> E first(Node<E> node) {
+		while (node.left != null)
+			node = node.left;
+		return node.element;
+	}
+
+	/*
+	 * Joins two trees of arbitrary heights separated by the specified element
+	 * by descending the spine of the taller tree until a subtree of comparable
+	 * height is found. Runs in time proportional to the difference in heights.
+	 */
+	private static <E> Node<E> join(final Node<E> left, final E element,
+			final Node<E> right) {
+		final int lh = height(left);
+		final int rh = height(right);
+		if (lh > rh + 1)
+			return balance(left.left, left.element, join(left.right, element,
+					right));
+		if (rh > lh + 1)
+			return balance(join(left, element, right.left), right.element,
+					right.right);
+		return new Node<E>(left, element, right);
+	}
+
+	private static <E> Node<E> balance(final Node<E> left, final E element,
+			final Node<E> right) {
+		final int lh = height(left);
+		final int rh = height(right);
+		if (lh > rh + 1) {
+			if (height(left.left) >= height(left.right))
+				return new Node<E>(left.left, left.element, new Node<E>(
+						left.right, element, right));
+			return new Node<E>(new Node<E>(left.left, left.element,
+					left.right.left), left.right.element, new Node<E>(
+					left.right.right, element, right));
+		}
+		if (rh > lh + 1) {
+			if (height(right.right) >= height(right.left))
+				return new Node<E>(new Node<E>(left, element, right.left),
+						right.element, right.right);
+			return new Node<E>(new Node<E>(left, element, right.left.left),
+					right.left.element, new Node<E>(right.left.right,
+							right.element, right.right));
+		}
+		return new Node<E>(left, element, right);
+	}
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * An {@code Iterator} which reads the elements of an underlying iterator on a
+ * background task and buffers them, so that a slow source (e.g. one performing
+ * I/O) can make progress while the consumer is busy processing the elements it
+ * has already been handed. Instances of this class are obtained by calling
+ * {@link MoreIterators#prefetching(Iterator, int, Executor)}.
+ * <p>
+ * The background task stores elements in a bounded ring buffer. The consumer
+ * drains every available element in a single step and then serves them
+ * without further synchronization, while the background task, once the buffer
+ * is full, waits until half of it has been drained before resuming. Both sides
+ * therefore hand elements over in batches rather than one at a time.
+ * <p>
+ * Any exception thrown by the underlying iterator is rethrown to the consumer
+ * from {@link #hasNext()} or {@link #next()} after all elements read before the
+ * failure have been returned.
+ * <p>
+ * The background task blocks while the buffer is full. A consumer which stops
+ * before exhausting this iterator must call {@link #cancel()}, otherwise the
+ * background task (and the thread running it) is never released. The
+ * background task checks for cancellation between elements; a call to the
+ * underlying iterator which is already in progress is allowed to finish.
+ * <p>
+ * This iterator does not support {@code remove()}. It must only be consumed
+ * by a single thread, but may be cancelled from any thread.
+ *
+ * @author Zhenya Leonov
+ * @param <E>
+ *            the type of elements returned by this iterator
+ * @see MoreIterators#prefetching(Iterator, int, Executor)
+ */
+public final class PrefetchingIterator<E> extends UnmodifiableIterator<E> {
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Object[] ring;
+	private int head = 0;
+	private int count = 0;
+	private boolean done = false;
+	private Throwable failure = null;
+	private volatile boolean cancelled = false;
+
+	private final Object[] batch;
+	private int position = 0;
+	private int limit = 0;
+
+	PrefetchingIterator(final Iterator<? extends E> iterator,
+			final int bufferSize, final Executor executor) {
+		ring = new Object[bufferSize];
+		batch = new Object[bufferSize];
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				produce(iterator);
+			}
+		});
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (cancelled) {
+			discard();
+			return false;
+		}
+		if (position < limit)
+			return true;
+		fill();
+		return position < limit;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E next() {
+		if (position == limit && !hasNext())
+			throw new NoSuchElementException();
+		final E e = (E) batch[position];
+		batch[position++] = null;
+		return e;
+	}
+
+	/**
+	 * Stops the background task and discards any buffered elements. Subsequent
+	 * calls to {@code hasNext()} return {@code false}. Calling this method more
+	 * than once has no effect.
+	 * <p>
+	 * Only the buffer shared with the background task is cleared here; the
+	 * batch already handed to the consumer is discarded by the consumer itself
+	 * the next time it calls {@code hasNext()}.
+	 */
+	public void cancel() {
+		cancelled = true;
+		lock.lock();
+		try {
+			for (int i = 0; i < count; i++)
+				ring[(head + i) % ring.length] = null;
+			count = 0;
+			notFull.signalAll();
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns {@code true} if this iterator was cancelled.
+	 *
+	 * @return {@code true} if this iterator was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	private void discard() {
+		for (; position < limit; position++)
+			batch[position] = null;
+	}
+
+	private void fill() {
+		lock.lock();
+		try {
+			while (count == 0 && !done && !cancelled)
+				notEmpty.awaitUninterruptibly();
+			if (cancelled)
+				return;
+			if (count == 0) {
+				if (failure != null)
+					throw Throwables.propagate(failure);
+				return;
+			}
+			for (int i = 0; i < count; i++) {
+				final int slot = (head + i) % ring.length;
+				batch[i] = ring[slot];
+				ring[slot] = null;
+			}
+			position = 0;
+			limit = count;
+			head = (head + count) % ring.length;
+			count = 0;
+			notFull.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void produce(final Iterator<? extends E> iterator) {
+		try {
+			while (!cancelled && iterator.hasNext()) {
+				final E e = iterator.next();
+				lock.lock();
+				try {
+					if (count == ring.length)
+						while (count > ring.length / 2 && !cancelled)
+							notFull.await();
+					if (cancelled)
+						return;
+					ring[(head + count) % ring.length] = e;
+					if (count++ == 0)
+						notEmpty.signal();
+				} finally {
+					lock.unlock();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure = e;
+		} catch (Throwable t) {
+			failure = t;
+		} finally {
+			lock.lock();
+			try {
+				done = true;
+				notEmpty.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
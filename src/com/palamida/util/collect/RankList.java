@@ -19,6 +19,7 @@ package com.palamida.util.collect;
 import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.io.Serializable;
@@ -32,6 +33,9 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.Iterables;
@@ -83,12 +87,19 @@ import com.google.common.collect.Iterables;
  *     <td>
  *       {@link #addAll(Collection) addAll(Collection)}
  *     </td>
- *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(m log n)</i></td>
+ *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(m + log n)</i></td>
  *     <td style="text-align:center;" bgcolor="FFCCCC"><i>O(m)</i></td>
  *     <td style="text-align:center;" bgcolor="9999CC"><i>O(m)</i></td>
  *   </tr>
  *   <tr>
  *     <td>
+ *       {@link #addAll(int, Collection) addAll(int, Collection)}
+ *     </td>
+ *     <td style="text-align:center;" bgcolor="FFCC99"><i>O(m + log n)</i></td>
+ *     <td style="text-align:center;" colspan="2"><i>O(m + n)</i></td>
+ *   </tr>
+ *   <tr>
+ *     <td>
  *       {@link #containsAll(Collection) containsAll(Collection)}<br/>
  *       {@link #removeAll(Collection) removeAll(Collection)}<br/>
  *       {@link #retainAll(Collection) retainAll(Collection)}
@@ -157,9 +168,9 @@ import com.google.common.collect.Iterables;
  *     <td style="text-align:center;" rowspan="4" colspan="3"><i>O(n)</i></td>
  * </table>
  * <p>
- * The {@code subList} views exhibit identical time complexity, with the
- * exception of the {@code clear()} operation which runs in linear time
- * proportional to the size of the view.
+ * The {@code subList} views exhibit identical time complexity. Clearing a
+ * {@code subList} view removes the entire range in <i>O(log n)</i> expected
+ * time, and inserting a collection into a view splices it in at once.
  * 
  * @author Zhenya Leonov
  * @param <E>
@@ -265,6 +276,79 @@ public final class RankList<E> extends AbstractList<E> implements List<E>,
 		size++;
 	}
 
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		return addAll(size, c);
+	}
+
+	/**
+	 * Inserts all of the elements in the specified collection into this list at
+	 * the specified position. The new elements are linked into a skip list of
+	 * their own which is then spliced into this list in a single pass, rather
+	 * than by inserting each element individually.
+	 * <p>
+	 * This operation runs in <i>O(m + log n)</i> expected time.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean addAll(int index, Collection<? extends E> c) {
+		checkPositionIndex(index, size);
+		final Object[] elements = c.toArray();
+		final int m = elements.length;
+		if (m == 0)
+			return false;
+		final Node<E>[] nodes = new Node[m];
+		int maxLevel = 1;
+		for (int j = 0; j < m; j++) {
+			final int newLevel = randomLevel();
+			nodes[j] = new Node<E>((E) elements[j], newLevel);
+			if (newLevel > maxLevel)
+				maxLevel = newLevel;
+		}
+		if (maxLevel > level) {
+			for (int i = level; i < maxLevel; i++)
+				head.dist[i] = size + 1;
+			level = maxLevel;
+		}
+		final Node<E>[] last = new Node[level];
+		final int[] lastPos = new int[level];
+		final Node<E>[] succ = new Node[level];
+		final int[] succPos = new int[level];
+		Node<E> curr = head;
+		int pos = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			while (pos + curr.dist[i] <= index) {
+				pos += curr.dist[i];
+				curr = curr.next[i];
+			}
+			last[i] = curr;
+			lastPos[i] = pos;
+			succ[i] = curr.next[i];
+			succPos[i] = pos + curr.dist[i] + m;
+		}
+		Node<E> prev = last[0];
+		for (int j = 0; j < m; j++) {
+			final Node<E> node = nodes[j];
+			final int nodePos = index + j + 1;
+			for (int i = 0; i < node.next.length; i++) {
+				last[i].next[i] = node;
+				last[i].dist[i] = nodePos - lastPos[i];
+				last[i] = node;
+				lastPos[i] = nodePos;
+			}
+			node.prev = prev;
+			prev = node;
+		}
+		for (int i = 0; i < level; i++) {
+			last[i].next[i] = succ[i];
+			last[i].dist[i] = succPos[i] - lastPos[i];
+		}
+		succ[0].prev = prev;
+		modCount++;
+		size += m;
+		return true;
+	}
+
 	@Override
 	public E get(int index) {
 		checkElementIndex(index, size);
@@ -294,6 +378,22 @@ public final class RankList<E> extends AbstractList<E> implements List<E>,
 		return new ListItor(index);
 	}
 
+	/**
+	 * Returns a <i>late-binding</i> and <i>fail-fast</i> {@code Spliterator}
+	 * over the elements in this list. The spliterator reports
+	 * {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED}, and
+	 * {@link Spliterator#ORDERED}.
+	 * <p>
+	 * The spliterator splits its range exactly in half by rank. Locating the
+	 * first element of each half takes <i>O(log n)</i> expected time.
+	 * 
+	 * @return a {@code Spliterator} over the elements in this list
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new SpliteratorImpl<E>(this, 0, -1, 0);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public E remove(int index) {
@@ -313,6 +413,55 @@ public final class RankList<E> extends AbstractList<E> implements List<E>,
 		return node.element;
 	}
 
+	/**
+	 * Removes from this list all of the elements whose index is between
+	 * {@code fromIndex}, inclusive, and {@code toIndex}, exclusive. The removed
+	 * range is unlinked as a whole at every level of the skip list, and the end
+	 * of the range is searched for at each level starting from where it was
+	 * found one level above, so this operation runs in <i>O(log n)</i> expected
+	 * time regardless of the length of the range. {@code subList(fromIndex, toIndex).clear()} delegates to
+	 * this method.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void removeRange(int fromIndex, int toIndex) {
+		checkPositionIndexes(fromIndex, toIndex, size);
+		final int k = toIndex - fromIndex;
+		if (k == 0)
+			return;
+		final Node<E>[] before = new Node[level];
+		final int[] beforePos = new int[level];
+		Node<E> curr = head;
+		int pos = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			while (pos + curr.dist[i] <= fromIndex) {
+				pos += curr.dist[i];
+				curr = curr.next[i];
+			}
+			before[i] = curr;
+			beforePos[i] = pos;
+		}
+		Node<E> end = head;
+		int endPos = 0;
+		for (int i = level - 1; i >= 0; i--) {
+			if (endPos < beforePos[i]) {
+				end = before[i];
+				endPos = beforePos[i];
+			}
+			while (endPos + end.dist[i] <= toIndex) {
+				endPos += end.dist[i];
+				end = end.next[i];
+			}
+			before[i].dist[i] = endPos + end.dist[i] - k - beforePos[i];
+			before[i].next[i] = end.next[i];
+		}
+		before[0].next[0].prev = before[0];
+		while (head.next[level - 1] == head && level > 1)
+			level--;
+		modCount++;
+		size -= k;
+	}
+
 	@Override
 	public void clear() {
 		for (int i = 0; i < MAX_LEVEL; i++) {
@@ -361,6 +510,30 @@ public final class RankList<E> extends AbstractList<E> implements List<E>,
 		return clone;
 	}
 
+	/**
+	 * Returns an estimate of the memory retained by the structure of this
+	 * list, excluding the elements themselves, under the object layout of the
+	 * running JVM. Runs in linear time, as the heights of the nodes are
+	 * summed.
+	 * 
+	 * @return an estimate of the memory retained by the structure of this
+	 *         list
+	 * @see MemoryReport
+	 */
+	public MemoryReport footprint() {
+		final ObjectLayout layout = ObjectLayout.CURRENT;
+		long links = 0;
+		for (Node<E> node = head.next[0]; node != head; node = node.next[0])
+			links += layout.referenceArraySize(node.next.length) + layout.intArraySize(node.dist.length);
+		return MemoryReport
+				.builder(RankList.class, size)
+				.add("collection",
+						layout.instanceSize(RankList.class) + layout.instanceSize(Random.class)
+								+ layout.instanceSize(AtomicLong.class) + layout.instanceSize(Node.class)
+								+ layout.referenceArraySize(MAX_LEVEL) + layout.intArraySize(MAX_LEVEL))
+				.add("nodes", size * layout.instanceSize(Node.class)).add("links", links).build();
+	}
+
 	private void writeObject(java.io.ObjectOutputStream oos)
 			throws java.io.IOException {
 		oos.defaultWriteObject();
@@ -475,6 +648,87 @@ public final class RankList<E> extends AbstractList<E> implements List<E>,
 		}
 	}
 
+	static final class SpliteratorImpl<E> implements Spliterator<E> {
+		private final RankList<E> list;
+		private Node<E> node = null;
+		private int index;
+		private int fence;
+		private int expectedModCount;
+
+		SpliteratorImpl(final RankList<E> list, final int origin,
+				final int fence, final int expectedModCount) {
+			this.list = list;
+			this.index = origin;
+			this.fence = fence;
+			this.expectedModCount = expectedModCount;
+		}
+
+		private int getFence() {
+			if (fence < 0) {
+				fence = list.size;
+				expectedModCount = list.modCount;
+			}
+			return fence;
+		}
+
+		@Override
+		public Spliterator<E> trySplit() {
+			final int lo = index;
+			final int mid = (lo + getFence()) >>> 1;
+			if (lo >= mid)
+				return null;
+			final SpliteratorImpl<E> prefix = new SpliteratorImpl<E>(
+					list, lo, mid, expectedModCount);
+			prefix.node = node;
+			index = mid;
+			node = null;
+			return prefix;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			checkNotNull(action);
+			if (index >= getFence())
+				return false;
+			if (node == null)
+				node = list.search(index);
+			final E e = node.element;
+			node = node.next[0];
+			index++;
+			action.accept(e);
+			if (list.modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			checkNotNull(action);
+			final int hi = getFence();
+			if (index >= hi)
+				return;
+			Node<E> curr = node == null ? list.search(index) : node;
+			for (; index < hi; index++) {
+				action.accept(curr.element);
+				curr = curr.next[0];
+			}
+			node = curr;
+			if (list.modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+
+		@Override
+		public long estimateSize() {
+			return getFence() - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.SIZED
+					| Spliterator.SUBSIZED;
+		}
+	}
+
 	// skip list
 
 	private static class Node<E> {
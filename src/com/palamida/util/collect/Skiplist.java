@@ -36,6 +36,9 @@ import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.MinMaxPriorityQueue;
@@ -141,6 +144,10 @@ import com.google.common.collect.Ordering;
  * The sub-list views exhibit identical time complexity, with the exception of
  * the {@code clear()} operation which runs in linear time proportional to the
  * size of the view.
+ * <p>
+ * A {@code Skiplist} created with {@link Builder#metrics(CollectionMetrics)}
+ * records its comparator invocations, node visits per search, and the heights
+ * of its nodes, which reveal whether the list has degenerated.
  * 
  * @author Zhenya Leonov
  * @param <E>
@@ -157,13 +164,15 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 	private transient Random random = new Random();
 	private transient Node<E> head = new Node<E>(null, MAX_LEVEL);
 	private final Comparator<? super E> comparator;
+	private final transient CollectionMetrics metrics;
 	@SuppressWarnings("unchecked")
 	private transient Node<E>[] update = new Node[MAX_LEVEL];
 	private transient int[] index = new int[MAX_LEVEL];
 	transient int modCount = 0;
 
-	private Skiplist(final Comparator<? super E> comparator) {
+	private Skiplist(final Comparator<? super E> comparator, final CollectionMetrics metrics) {
 		this.comparator = comparator;
+		this.metrics = metrics;
 		for (int i = 0; i < MAX_LEVEL; i++) {
 			head.next[i] = head;
 			head.dist[i] = 1;
@@ -179,7 +188,7 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 	 *         their <i>natural ordering</i>
 	 */
 	public static <E extends Comparable<? super E>> Skiplist<E> create() {
-		return new Skiplist<E>(Ordering.natural());
+		return new Skiplist<E>(Ordering.natural(), null);
 	}
 
 	/**
@@ -245,11 +254,26 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 	public static final class Builder<B> {
 
 		private final Comparator<B> comparator;
+		private CollectionMetrics metrics = null;
 
 		private Builder(final Comparator<B> comparator) {
 			this.comparator = comparator;
 		}
 
+		/**
+		 * Configures this builder to build {@code Skiplist} instances which
+		 * record their internal operations, including the heights of their
+		 * nodes, in the specified metrics.
+		 * 
+		 * @param metrics
+		 *            the metrics to record into
+		 * @return this builder
+		 */
+		public Builder<B> metrics(final CollectionMetrics metrics) {
+			this.metrics = checkNotNull(metrics);
+			return this;
+		}
+
 		/**
 		 * Builds an empty {@code Skiplist} using the previously specified
 		 * comparator.
@@ -258,7 +282,7 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		 *         comparator.
 		 */
 		public <T extends B> Skiplist<T> create() {
-			return new Skiplist<T>(comparator);
+			return new Skiplist<T>(comparator, metrics);
 		}
 
 		/**
@@ -272,7 +296,7 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		 */
 		public <T extends B> Skiplist<T> create(final Iterable<? extends T> elements) {
 			checkNotNull(elements);
-			final Skiplist<T> list = new Skiplist<T>(comparator);
+			final Skiplist<T> list = new Skiplist<T>(comparator, metrics);
 			Iterables.addAll(list, elements);
 			return list;
 		}
@@ -301,10 +325,12 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		Node<E> y = head;
 		int i;
 		int idx = 0;
+		int visits = 0;
 		for (i = level - 1; i >= 0; i--) {
-			while (x.next[i] != y && comparator.compare(x.next[i].element, e) < 0) {
+			while (x.next[i] != y && compare(x.next[i].element, e) < 0) {
 				idx += x.dist[i];
 				x = x.next[i];
+				visits++;
 			}
 			y = x.next[i];
 			update[i] = x;
@@ -333,6 +359,11 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		x.next().prev = x;
 		modCount++;
 		size++;
+		if (metrics != null) {
+			metrics.searched(visits);
+			metrics.inserted();
+			metrics.linked(newLevel);
+		}
 		return true;
 	}
 
@@ -354,14 +385,18 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		if (o != null) {
 			Node<E> curr = head;
 			int idx = 0;
+			int visits = 0;
 			final E element = (E) o;
 			for (int i = level - 1; i >= 0; i--)
-				while (curr.next[i] != head && comparator.compare(curr.next[i].element, element) < 0) {
+				while (curr.next[i] != head && compare(curr.next[i].element, element) < 0) {
 					idx += curr.dist[i];
 					curr = curr.next[i];
+					visits++;
 				}
+			if (metrics != null)
+				metrics.searched(visits);
 			curr = curr.next();
-			if (curr != head && comparator.compare(curr.element, element) == 0)
+			if (curr != head && compare(curr.element, element) == 0)
 				return idx;
 		}
 		return -1;
@@ -373,13 +408,17 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		if (o != null) {
 			Node<E> curr = head;
 			int idx = -1;
+			int visits = 0;
 			final E element = (E) o;
 			for (int i = level - 1; i >= 0; i--)
-				while (curr.next[i] != head && comparator.compare(curr.next[i].element, element) <= 0) {
+				while (curr.next[i] != head && compare(curr.next[i].element, element) <= 0) {
 					idx += curr.dist[i];
 					curr = curr.next[i];
+					visits++;
 				}
-			if (curr != head && comparator.compare(curr.element, element) == 0)
+			if (metrics != null)
+				metrics.searched(visits);
+			if (curr != head && compare(curr.element, element) == 0)
 				return idx;
 		}
 		return -1;
@@ -395,6 +434,23 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		return listIterator(0);
 	}
 
+	/**
+	 * Returns a <i>late-binding</i> and <i>fail-fast</i> {@code Spliterator}
+	 * over the elements in this list. The spliterator reports
+	 * {@link Spliterator#SIZED}, {@link Spliterator#SUBSIZED},
+	 * {@link Spliterator#ORDERED}, {@link Spliterator#SORTED}, and
+	 * {@link Spliterator#NONNULL}.
+	 * <p>
+	 * The spliterator splits its range exactly in half by rank. Locating the
+	 * first element of each half takes <i>O(log n)</i> expected time.
+	 * 
+	 * @return a {@code Spliterator} over the elements in this list
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new SpliteratorImpl<E>(this, 0, -1, 0);
+	}
+
 	@Override
 	public ListIterator<E> listIterator(int index) {
 		checkPositionIndex(index, size);
@@ -407,13 +463,18 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		checkNotNull(o);
 		final E element = (E) o;
 		Node<E> curr = head;
+		int visits = 0;
 		for (int i = level - 1; i >= 0; i--) {
-			while (curr.next[i] != head && comparator.compare(curr.next[i].element, element) < 0)
+			while (curr.next[i] != head && compare(curr.next[i].element, element) < 0) {
 				curr = curr.next[i];
+				visits++;
+			}
 			update[i] = curr;
 		}
+		if (metrics != null)
+			metrics.searched(visits);
 		curr = curr.next();
-		if (curr == head || comparator.compare(curr.element, element) != 0)
+		if (curr == head || compare(curr.element, element) != 0)
 			return false;
 		delete(curr, update);
 		return true;
@@ -424,13 +485,17 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		checkElementIndex(index, size);
 		Node<E> curr = head;
 		int idx = 0;
+		int visits = 0;
 		for (int i = level - 1; i >= 0; i--) {
 			while (idx + curr.dist[i] <= index) {
 				idx += curr.dist[i];
 				curr = curr.next[i];
+				visits++;
 			}
 			update[i] = curr;
 		}
+		if (metrics != null)
+			metrics.searched(visits);
 		curr = curr.next();
 		delete(curr, update);
 		return curr.element;
@@ -443,6 +508,9 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 
 	@Override
 	public void clear() {
+		if (metrics != null)
+			for (Node<E> node = head.next(); node != head; node = node.next())
+				metrics.unlinked(node.next.length);
 		for (int i = 0; i < MAX_LEVEL; i++) {
 			head.next[i] = head;
 			head.dist[i] = 1;
@@ -470,7 +538,7 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			@SuppressWarnings("unchecked")
 			final Iterator<E> i = ((Collection<E>) o).iterator();
 			for (E e : this)
-				if (comparator.compare(e, i.next()) != 0)
+				if (compare(e, i.next()) != 0)
 					return false;
 			return !i.hasNext();
 		} catch (ClassCastException e) {
@@ -514,6 +582,31 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		return clone;
 	}
 
+	/**
+	 * Returns an estimate of the memory retained by the structure of this
+	 * list, excluding the elements themselves, under the object layout of the
+	 * running JVM. Runs in linear time, as the heights of the nodes are
+	 * summed. Not supported by sub-list views, which share the structure of
+	 * their backing list.
+	 * 
+	 * @return an estimate of the memory retained by the structure of this
+	 *         list
+	 * @see MemoryReport
+	 */
+	public MemoryReport footprint() {
+		final ObjectLayout layout = ObjectLayout.CURRENT;
+		long links = 0;
+		for (Node<E> node = head.next(); node != head; node = node.next())
+			links += layout.referenceArraySize(node.next.length) + layout.intArraySize(node.dist.length);
+		return MemoryReport
+				.builder(Skiplist.class, size)
+				.add("collection",
+						layout.instanceSize(Skiplist.class) + layout.instanceSize(Random.class)
+								+ layout.instanceSize(AtomicLong.class) + layout.instanceSize(Node.class)
+								+ 2 * layout.referenceArraySize(MAX_LEVEL) + 2 * layout.intArraySize(MAX_LEVEL))
+				.add("nodes", size * layout.instanceSize(Node.class)).add("links", links).build();
+	}
+
 	private void writeObject(java.io.ObjectOutputStream oos) throws java.io.IOException {
 		oos.defaultWriteObject();
 		oos.writeInt(size);
@@ -617,6 +710,90 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		}
 	}
 
+	static final class SpliteratorImpl<E> implements Spliterator<E> {
+		private final Skiplist<E> list;
+		private Node<E> node = null;
+		private int index;
+		private int fence;
+		private int expectedModCount;
+
+		SpliteratorImpl(final Skiplist<E> list, final int origin, final int fence, final int expectedModCount) {
+			this.list = list;
+			this.index = origin;
+			this.fence = fence;
+			this.expectedModCount = expectedModCount;
+		}
+
+		private int getFence() {
+			if (fence < 0) {
+				fence = list.size;
+				expectedModCount = list.modCount;
+			}
+			return fence;
+		}
+
+		@Override
+		public Spliterator<E> trySplit() {
+			final int lo = index;
+			final int mid = (lo + getFence()) >>> 1;
+			if (lo >= mid)
+				return null;
+			final SpliteratorImpl<E> prefix = new SpliteratorImpl<E>(list, lo, mid, expectedModCount);
+			prefix.node = node;
+			index = mid;
+			node = null;
+			return prefix;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			checkNotNull(action);
+			if (index >= getFence())
+				return false;
+			if (node == null)
+				node = list.search(index);
+			final E e = node.element;
+			node = node.next();
+			index++;
+			action.accept(e);
+			if (list.modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			checkNotNull(action);
+			final int hi = getFence();
+			if (index >= hi)
+				return;
+			Node<E> curr = node == null ? list.search(index) : node;
+			for (; index < hi; index++) {
+				action.accept(curr.element);
+				curr = curr.next();
+			}
+			node = curr;
+			if (list.modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+
+		@Override
+		public long estimateSize() {
+			return getFence() - index;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.SIZED | Spliterator.SUBSIZED
+					| Spliterator.NONNULL;
+		}
+
+		@Override
+		public Comparator<? super E> getComparator() {
+			return list.comparator;
+		}
+	}
+
 	// skip list
 
 	private static class Node<E> {
@@ -646,11 +823,16 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 
 	private boolean remove(final Node<E> node) {
 		Node<E> curr = head;
+		int visits = 0;
 		for (int i = level - 1; i >= 0; i--) {
-			while (curr.next[i] != head && curr.next[i] != node)
+			while (curr.next[i] != head && curr.next[i] != node) {
 				curr = curr.next[i];
+				visits++;
+			}
 			update[i] = curr;
 		}
+		if (metrics != null)
+			metrics.searched(visits);
 		curr = curr.next();
 		delete(curr, update);
 		return true;
@@ -668,15 +850,24 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			level--;
 		modCount++;
 		size--;
+		if (metrics != null) {
+			metrics.deleted();
+			metrics.unlinked(node.next.length);
+		}
 	}
 
 	Node<E> search(final E element) {
 		Node<E> curr = head;
+		int visits = 0;
 		for (int i = level - 1; i >= 0; i--)
-			while (curr.next[i] != head && comparator.compare(curr.next[i].element, element) < 0)
+			while (curr.next[i] != head && compare(curr.next[i].element, element) < 0) {
 				curr = curr.next[i];
+				visits++;
+			}
+		if (metrics != null)
+			metrics.searched(visits);
 		curr = curr.next();
-		if (curr != head && comparator.compare(curr.element, element) == 0)
+		if (curr != head && compare(curr.element, element) == 0)
 			return curr;
 		return null;
 	}
@@ -684,14 +875,24 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 	private Node<E> search(final int index) {
 		Node<E> curr = head;
 		int idx = -1;
+		int visits = 0;
 		for (int i = level - 1; i >= 0; i--)
 			while (idx + curr.dist[i] <= index) {
 				idx += curr.dist[i];
 				curr = curr.next[i];
+				visits++;
 			}
+		if (metrics != null)
+			metrics.searched(visits);
 		return curr;
 	}
 
+	private int compare(final E e1, final E e2) {
+		if (metrics != null)
+			metrics.compared();
+		return comparator.compare(e1, e2);
+	}
+
 	@SuppressWarnings("serial")
 	private final class Sublist extends Skiplist<E> {
 		private final Skiplist<E> list;
@@ -700,7 +901,7 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		private Node<E> to;
 
 		public Sublist(final Skiplist<E> list, final int fromIndex, final int toIndex) {
-			super(list.comparator);
+			super(list.comparator, list.metrics);
 			this.list = list;
 			this.modCount = list.modCount;
 			offset = fromIndex;
@@ -714,6 +915,17 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			throw new CloneNotSupportedException();
 		}
 
+		@Override
+		public Spliterator<E> spliterator() {
+			checkForConcurrentModification();
+			return new SpliteratorImpl<E>(list, offset, offset + this.size, list.modCount);
+		}
+
+		@Override
+		public MemoryReport footprint() {
+			throw new UnsupportedOperationException();
+		}
+
 		// do we need this?
 		private void writeObject(java.io.ObjectOutputStream out) throws IOException {
 			throw new NotSerializableException();
@@ -754,7 +966,7 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			@SuppressWarnings("unchecked")
 			E e = (E) o;
 			checkArgument(inRange(e, from, to));
-			if (comparator.compare(e, to.element) == 0) {
+			if (compare(e, to.element) == 0) {
 				list.remove(to);
 				to = to.prev;
 			} else
@@ -803,7 +1015,7 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			E e = (E) o;
 			if (!inRange(e, from, to))
 				return -1;
-			if (comparator.compare(e, from.element) == 0)
+			if (compare(e, from.element) == 0)
 				return 0;
 			final int result = list.indexOf(e);
 			return result == -1 ? -1 : result - offset;
@@ -817,7 +1029,7 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			E e = (E) o;
 			if (!inRange(e, from, to))
 				return -1;
-			if (comparator.compare(to.element, e) == 0)
+			if (compare(to.element, e) == 0)
 				return this.size - 1;
 			final int result = list.lastIndexOf(e);
 			return result == -1 ? -1 : result - offset;
@@ -949,15 +1161,15 @@ public class Skiplist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			checkForConcurrentModification();
 			if (!inRange(e, from, to))
 				return null;
-			if (comparator.compare(e, from.element) == 0)
+			if (compare(e, from.element) == 0)
 				return from;
-			if (comparator.compare(e, to.element) == 0)
+			if (compare(e, to.element) == 0)
 				return to;
 			return list.search(e);
 		}
 
 		private boolean inRange(final E e, final Node<E> from, final Node<E> to) {
-			return (comparator.compare(from.element, e) < 1 && comparator.compare(e, to.element) < 1);
+			return (compare(from.element, e) < 1 && compare(e, to.element) < 1);
 		}
 
 	}
@@ -30,6 +30,8 @@ import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 import com.google.common.collect.MinMaxPriorityQueue;
 import com.google.common.collect.Ordering;
@@ -251,6 +253,24 @@ final public class SkiplistSet<E> extends AbstractSet<E> implements SortedCollec
 		return new IteratorImpl();
 	}
 
+	/**
+	 * Returns a <i>late-binding</i> and <i>fail-fast</i> {@code Spliterator}
+	 * over the elements in this set. The spliterator reports
+	 * {@link Spliterator#ORDERED}, {@link Spliterator#SORTED},
+	 * {@link Spliterator#DISTINCT}, and {@link Spliterator#NONNULL}, and
+	 * {@link Spliterator#SIZED} until it is first split.
+	 * <p>
+	 * The spliterator splits at the highest level node of the skip list which
+	 * falls within its range. Since this set does not record the distances
+	 * between nodes, the sizes of the resulting spliterators are estimates.
+	 * 
+	 * @return a {@code Spliterator} over the elements in this set
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new SpliteratorImpl(null, head, head, -1, -1, 0);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public boolean remove(Object o) {
@@ -366,6 +386,104 @@ final public class SkiplistSet<E> extends AbstractSet<E> implements SortedCollec
 		}
 	}
 
+	private final class SpliteratorImpl implements Spliterator<E> {
+		private Node<E> current;
+		private final Node<E> fence;
+		private Node<E> row;
+		private int depth;
+		private int est;
+		private int expectedModCount;
+		private boolean sized;
+
+		private SpliteratorImpl(final Node<E> origin, final Node<E> fence, final Node<E> row, final int depth,
+				final int est, final int expectedModCount) {
+			this.current = origin;
+			this.fence = fence;
+			this.row = row;
+			this.depth = depth;
+			this.est = est;
+			this.expectedModCount = expectedModCount;
+			sized = est < 0;
+		}
+
+		private int getEstimate() {
+			if (est < 0) {
+				current = head.next();
+				depth = level - 1;
+				est = size;
+				expectedModCount = modCount;
+			}
+			return est;
+		}
+
+		/*
+		 * Walks each level from the top down, looking for the first node after
+		 * the origin which still precedes the fence.
+		 */
+		@Override
+		public Spliterator<E> trySplit() {
+			getEstimate();
+			final Node<E> e = current;
+			if (e == fence)
+				return null;
+			for (; depth >= 0; depth--) {
+				while (row.next[depth] != head && comparator.compare(row.next[depth].element, e.element) <= 0)
+					row = row.next[depth];
+				final Node<E> s = row.next[depth];
+				if (s != head && s != fence && (fence == head || comparator.compare(s.element, fence.element) < 0)) {
+					final SpliteratorImpl prefix = new SpliteratorImpl(e, s, row, depth - 1, est >>>= 1,
+							expectedModCount);
+					current = row = s;
+					sized = false;
+					return prefix;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			checkNotNull(action);
+			getEstimate();
+			final Node<E> e = current;
+			if (e == fence)
+				return false;
+			current = e.next();
+			action.accept(e.element);
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			checkNotNull(action);
+			getEstimate();
+			Node<E> e = current;
+			current = fence;
+			for (; e != fence; e = e.next())
+				action.accept(e.element);
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+
+		@Override
+		public long estimateSize() {
+			return getEstimate();
+		}
+
+		@Override
+		public int characteristics() {
+			return (sized ? Spliterator.SIZED : 0) | Spliterator.ORDERED | Spliterator.SORTED
+					| Spliterator.DISTINCT | Spliterator.NONNULL;
+		}
+
+		@Override
+		public Comparator<? super E> getComparator() {
+			return comparator;
+		}
+	}
+
 	// skip set
 
 	private static class Node<E> {
@@ -3,6 +3,9 @@ package com.palamida.util.collect;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collections;
+import java.util.Comparator;
+
+import com.google.common.collect.Ordering;
 
 /**
  * Static utility methods which operate on or return {@link Sortedlist}s.
@@ -56,4 +59,34 @@ final public class Sortedlists {
 		return sl;
 	}
 
+	/**
+	 * Creates an empty {@code AdaptiveSortedlist} sorted according to the
+	 * <i>natural ordering</i> of its elements. The list switches between a
+	 * {@code Treelist} and a {@code Skiplist} backing implementation depending
+	 * on the mix of operations performed on it.
+	 * 
+	 * @return an empty {@code AdaptiveSortedlist} sorted according to the
+	 *         <i>natural ordering</i> of its elements
+	 */
+	public static <E extends Comparable<? super E>> AdaptiveSortedlist<E> newAdaptiveSortedlist() {
+		return new AdaptiveSortedlist<E>(Ordering.natural());
+	}
+
+	/**
+	 * Creates an empty {@code AdaptiveSortedlist} sorted according to the
+	 * specified comparator. The list switches between a {@code Treelist} and a
+	 * {@code Skiplist} backing implementation depending on the mix of
+	 * operations performed on it.
+	 * 
+	 * @param comparator
+	 *            the comparator that will be used to sort the list
+	 * @return an empty {@code AdaptiveSortedlist} sorted according to the
+	 *         specified comparator
+	 */
+	public static <E> AdaptiveSortedlist<E> newAdaptiveSortedlist(
+			final Comparator<? super E> comparator) {
+		checkNotNull(comparator);
+		return new AdaptiveSortedlist<E>(comparator);
+	}
+
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.palamida.util.collect.Traces.Codec;
+import com.palamida.util.collect.Traces.Op;
+
+/**
+ * Reads a trace written by a {@link TraceWriter}, one operation at a time:
+ *
+ * <pre>
+ * TraceReader&lt;Integer&gt; reader = TraceReader.open(file, Traces.integers());
+ * try {
+ *    while (reader.next())
+ *       switch (reader.op()) {
+ *          case ADD: ... reader.key() ...
+ *          case GET: ... reader.index() ...
+ *          ...
+ *       }
+ * } finally {
+ *    reader.close();
+ * }
+ * </pre>
+ *
+ * This class is not <i>thread-safe</i>.
+ *
+ * @author Zhenya Leonov
+ * @param <E>
+ *            the type of keys recorded
+ * @see TraceWriter
+ */
+public final class TraceReader<E> implements Closeable {
+
+	private static final Op[] OPS = Op.values();
+
+	private final DataInputStream in;
+	private final Codec<? extends E> codec;
+	private Op op = null;
+	private E key;
+	private int index;
+	private int count;
+
+	private TraceReader(final InputStream in, final Codec<? extends E> codec) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		this.codec = codec;
+		if (this.in.readInt() != TraceWriter.MAGIC)
+			throw new IOException("not a trace");
+		final int version = this.in.readUnsignedByte();
+		if (version != TraceWriter.VERSION)
+			throw new IOException("unsupported trace version " + version);
+	}
+
+	/**
+	 * Creates a new {@code TraceReader} which reads from the specified stream.
+	 *
+	 * @param in
+	 *            the stream to read the trace from
+	 * @param codec
+	 *            the codec used to decode keys
+	 * @return a new {@code TraceReader} which reads from the specified stream
+	 * @throws IOException
+	 *             if the stream does not start with a trace header
+	 */
+	public static <E> TraceReader<E> open(final InputStream in, final Codec<? extends E> codec) throws IOException {
+		checkNotNull(in);
+		checkNotNull(codec);
+		return new TraceReader<E>(in, codec);
+	}
+
+	/**
+	 * Creates a new {@code TraceReader} which reads from the specified file.
+	 *
+	 * @param file
+	 *            the file to read the trace from
+	 * @param codec
+	 *            the codec used to decode keys
+	 * @return a new {@code TraceReader} which reads from the specified file
+	 * @throws IOException
+	 *             if the file cannot be opened or does not start with a trace
+	 *             header
+	 */
+	public static <E> TraceReader<E> open(final File file, final Codec<? extends E> codec) throws IOException {
+		checkNotNull(file);
+		checkNotNull(codec);
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			return new TraceReader<E>(in, codec);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the next operation.
+	 *
+	 * @return {@code true} if an operation was read, or {@code false} at the
+	 *         end of the trace
+	 * @throws IOException
+	 *             if the trace is malformed or cannot be read
+	 */
+	public boolean next() throws IOException {
+		final int ordinal = in.read();
+		if (ordinal < 0) {
+			op = null;
+			return false;
+		}
+		if (ordinal >= OPS.length)
+			throw new IOException("unknown operation " + ordinal);
+		op = OPS[ordinal];
+		key = null;
+		index = count = 0;
+		try {
+			if (op.hasKey())
+				key = codec.read(in);
+			if (op.hasIndex())
+				index = Traces.readVarint(in);
+			if (op == Op.ITERATE)
+				count = Traces.readVarint(in);
+		} catch (EOFException e) {
+			throw new IOException("truncated trace", e);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the operation last read.
+	 *
+	 * @return the operation last read
+	 * @throws IllegalStateException
+	 *             if {@link #next()} has not returned {@code true}
+	 */
+	public Op op() {
+		checkState(op != null);
+		return op;
+	}
+
+	/**
+	 * Returns the key of the operation last read, or {@code null} if it has
+	 * none.
+	 *
+	 * @return the key of the operation last read
+	 * @throws IllegalStateException
+	 *             if {@link #next()} has not returned {@code true}
+	 */
+	public E key() {
+		checkState(op != null);
+		return key;
+	}
+
+	/**
+	 * Returns the index of the operation last read: the index of a positional
+	 * operation, the index an iteration started at, or the capacity of a
+	 * bounded queue. Returns {@code 0} if the operation has no index.
+	 *
+	 * @return the index of the operation last read
+	 * @throws IllegalStateException
+	 *             if {@link #next()} has not returned {@code true}
+	 */
+	public int index() {
+		checkState(op != null);
+		return index;
+	}
+
+	/**
+	 * Returns the number of elements visited by the iteration last read, or
+	 * {@code 0} if the operation last read is not an iteration.
+	 *
+	 * @return the number of elements visited by the iteration last read
+	 * @throws IllegalStateException
+	 *             if {@link #next()} has not returned {@code true}
+	 */
+	public int count() {
+		checkState(op != null);
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
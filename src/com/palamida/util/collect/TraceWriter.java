@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.palamida.util.collect.Traces.Codec;
+import com.palamida.util.collect.Traces.Op;
+
+/**
+ * Writes the operations performed on a recording collection (see
+ * {@link Traces}) to a compact binary trace, which can be read back with a
+ * {@link TraceReader}.
+ * <p>
+ * A trace starts with the magic number {@code 0x42545243} and a version byte,
+ * followed by one record per operation: the {@linkplain Op#ordinal() ordinal}
+ * of the operation in a byte, then its key as encoded by the {@link Codec},
+ * or its index as a variable-length integer. {@code ITERATE} records are
+ * followed by the index of the first element of a run of consecutive elements
+ * visited by one iterator and the length of the run.
+ * <p>
+ * Recording must never cause the recorded collection to fail. If writing the
+ * trace fails the writer stops recording and remembers the exception, which
+ * is rethrown by {@link #close()}; {@link #checkError()} reports whether this
+ * has happened. Queries for {@code null} keys, or for keys the codec cannot
+ * encode, are not recorded. Leaving out an addition or a removal would make
+ * the replay diverge from the recorded run, so a {@code null} or unencodable
+ * key in one is treated as a failure to write the trace.
+ * <p>
+ * This class is not <i>thread-safe</i>. A writer shared by several
+ * collections, or by a collection accessed from several threads, must be
+ * synchronized externally.
+ *
+ * @author Zhenya Leonov
+ * @param <E>
+ *            the type of keys recorded
+ * @see TraceReader
+ */
+public final class TraceWriter<E> implements Closeable, Flushable {
+
+	static final int MAGIC = 0x42545243;
+	static final int VERSION = 1;
+
+	private final DataOutputStream out;
+	private final Codec<? super E> codec;
+	private final ByteArrayOutputStream keyBuffer = new ByteArrayOutputStream();
+	private final DataOutputStream keyOut = new DataOutputStream(keyBuffer);
+	private IOException error = null;
+	private boolean iterating = false;
+	private Object iterator;
+	private int iterationStart;
+	private int iterated;
+
+	private TraceWriter(final OutputStream out, final Codec<? super E> codec) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		this.codec = codec;
+		this.out.writeInt(MAGIC);
+		this.out.writeByte(VERSION);
+	}
+
+	/**
+	 * Creates a new {@code TraceWriter} which writes to the specified stream.
+	 *
+	 * @param out
+	 *            the stream to write the trace to
+	 * @param codec
+	 *            the codec used to encode keys
+	 * @return a new {@code TraceWriter} which writes to the specified stream
+	 * @throws IOException
+	 *             if the header of the trace cannot be written
+	 */
+	public static <E> TraceWriter<E> open(final OutputStream out, final Codec<? super E> codec) throws IOException {
+		checkNotNull(out);
+		checkNotNull(codec);
+		return new TraceWriter<E>(out, codec);
+	}
+
+	/**
+	 * Creates a new {@code TraceWriter} which writes to the specified file,
+	 * replacing its contents.
+	 *
+	 * @param file
+	 *            the file to write the trace to
+	 * @param codec
+	 *            the codec used to encode keys
+	 * @return a new {@code TraceWriter} which writes to the specified file
+	 * @throws IOException
+	 *             if the file cannot be opened or the header of the trace
+	 *             cannot be written
+	 */
+	public static <E> TraceWriter<E> open(final File file, final Codec<? super E> codec) throws IOException {
+		checkNotNull(file);
+		checkNotNull(codec);
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			return new TraceWriter<E>(out, codec);
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns {@code true} if writing the trace has failed, in which case
+	 * nothing has been recorded since.
+	 *
+	 * @return {@code true} if writing the trace has failed
+	 */
+	public boolean checkError() {
+		return error != null;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		endIteration();
+		if (error == null)
+			out.flush();
+	}
+
+	/**
+	 * Flushes and closes the trace.
+	 *
+	 * @throws IOException
+	 *             if the trace cannot be closed, or if writing it failed
+	 *             earlier
+	 */
+	@Override
+	public void close() throws IOException {
+		endIteration();
+		try {
+			out.close();
+		} catch (IOException e) {
+			if (error == null)
+				error = e;
+		}
+		if (error != null)
+			throw error;
+	}
+
+	void write(final Op op) {
+		endIteration();
+		if (error != null)
+			return;
+		try {
+			out.writeByte(op.ordinal());
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	void writeIndex(final Op op, final int index) {
+		endIteration();
+		if (error != null)
+			return;
+		try {
+			out.writeByte(op.ordinal());
+			Traces.writeVarint(out, index);
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	void write(final Op op, final Object key) {
+		endIteration();
+		if (error != null)
+			return;
+		if (key == null) {
+			unencodable(op, null);
+			return;
+		}
+		keyBuffer.reset();
+		try {
+			codec.write((E) key, keyOut);
+		} catch (ClassCastException e) {
+			unencodable(op, e);
+			return;
+		} catch (IOException e) {
+			unencodable(op, e);
+			return;
+		}
+		try {
+			out.writeByte(op.ordinal());
+			keyBuffer.writeTo(out);
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	/*
+	 * Queries which cannot be recorded are left out, but any other operation
+	 * stops recording.
+	 */
+	private void unencodable(final Op op, final Exception cause) {
+		switch (op) {
+		case CONTAINS:
+		case INDEX_OF:
+		case LAST_INDEX_OF:
+			return;
+		default:
+			error = new IOException("cannot encode the key of " + op, cause);
+		}
+	}
+
+	/*
+	 * Records that the specified iterator visited the element at the specified
+	 * index. Runs are written when they end, that is when any other operation
+	 * is recorded or another iterator, or another part of the collection, is
+	 * visited, as their length is not known before.
+	 */
+	void advance(final Object iterator, final int index) {
+		if (iterating && this.iterator == iterator && index == iterationStart + iterated) {
+			iterated++;
+			return;
+		}
+		endIteration();
+		iterating = true;
+		this.iterator = iterator;
+		iterationStart = index;
+		iterated = 1;
+	}
+
+	private void endIteration() {
+		if (!iterating)
+			return;
+		iterating = false;
+		iterator = null;
+		if (error != null)
+			return;
+		try {
+			out.writeByte(Op.ITERATE.ordinal());
+			Traces.writeVarint(out, iterationStart);
+			Traces.writeVarint(out, iterated);
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+}
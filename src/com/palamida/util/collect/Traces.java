@@ -0,0 +1,668 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.ListIterator;
+
+import com.google.common.collect.ForwardingCollection;
+import com.google.common.collect.ForwardingIterator;
+import com.google.common.collect.ForwardingListIterator;
+
+/**
+ * Static utility methods for recording the operations performed on a
+ * collection to a binary trace, so that real workloads can be replayed
+ * offline against other implementations.
+ * <p>
+ * A recording collection forwards every call to the collection it decorates
+ * and then, if the call succeeded, writes the operation and its key or index
+ * to a {@link TraceWriter}. Bulk operations are recorded as the individual
+ * operations they are made of, and iterations as the runs of consecutive
+ * elements each iterator visits. Recording never changes the behavior of the decorated collection.
+ * <p>
+ * The decorated collection should not be accessed directly once it is
+ * wrapped, or the trace will be incomplete. The returned collections are
+ * neither <i>thread-safe</i> nor serializable.
+ *
+ * @author Zhenya Leonov
+ * @see TraceWriter
+ * @see TraceReader
+ */
+public final class Traces {
+
+	private Traces() {
+	}
+
+	/**
+	 * The operations recorded in a trace.
+	 */
+	public enum Op {
+		/**
+		 * {@code add(E)} with the added key.
+		 */
+		ADD(true, false),
+		/**
+		 * {@code remove(Object)}, including removals through iterators, with
+		 * the removed key.
+		 */
+		REMOVE(true, false),
+		/**
+		 * {@code contains(Object)} with the key queried.
+		 */
+		CONTAINS(true, false),
+		/**
+		 * {@code indexOf(Object)} with the key queried.
+		 */
+		INDEX_OF(true, false),
+		/**
+		 * {@code lastIndexOf(Object)} with the key queried.
+		 */
+		LAST_INDEX_OF(true, false),
+		/**
+		 * {@code get(int)} with the index.
+		 */
+		GET(false, true),
+		/**
+		 * {@code remove(int)} with the index.
+		 */
+		REMOVE_AT(false, true),
+		/**
+		 * {@code offer(E)} or {@code add(E)} on a queue, with the key.
+		 */
+		OFFER(true, false),
+		/**
+		 * {@code poll()} or {@code remove()} on a queue.
+		 */
+		POLL(false, false),
+		/**
+		 * {@code peek()} or {@code element()} on a queue.
+		 */
+		PEEK(false, false),
+		/**
+		 * {@code clear()}.
+		 */
+		CLEAR(false, false),
+		/**
+		 * A run of consecutive elements visited by one iterator, with the index
+		 * of its first element and its length.
+		 */
+		ITERATE(false, true),
+		/**
+		 * The capacity of a bounded queue, recorded before any other
+		 * operation.
+		 */
+		BOUND(false, true);
+
+		private final boolean hasKey;
+		private final boolean hasIndex;
+
+		private Op(final boolean hasKey, final boolean hasIndex) {
+			this.hasKey = hasKey;
+			this.hasIndex = hasIndex;
+		}
+
+		/**
+		 * Returns {@code true} if this operation is recorded with a key.
+		 *
+		 * @return {@code true} if this operation is recorded with a key
+		 */
+		public boolean hasKey() {
+			return hasKey;
+		}
+
+		/**
+		 * Returns {@code true} if this operation is recorded with an index (or,
+		 * for {@code BOUND}, a capacity).
+		 *
+		 * @return {@code true} if this operation is recorded with an index
+		 */
+		public boolean hasIndex() {
+			return hasIndex;
+		}
+	}
+
+	/**
+	 * Encodes and decodes the keys recorded in a trace.
+	 *
+	 * @author Zhenya Leonov
+	 * @param <E>
+	 *            the type of keys
+	 */
+	public interface Codec<E> {
+
+		/**
+		 * Writes the specified key.
+		 *
+		 * @param e
+		 *            the key to write
+		 * @param out
+		 *            the output to write to
+		 * @throws IOException
+		 *             if an I/O error occurs
+		 */
+		public void write(E e, DataOutput out) throws IOException;
+
+		/**
+		 * Reads a key written by {@link #write(Object, DataOutput)}.
+		 *
+		 * @param in
+		 *            the input to read from
+		 * @return the key read
+		 * @throws IOException
+		 *             if an I/O error occurs
+		 */
+		public E read(DataInput in) throws IOException;
+	}
+
+	private static final Codec<Integer> INTEGERS = new Codec<Integer>() {
+		@Override
+		public void write(final Integer e, final DataOutput out) throws IOException {
+			final int i = e;
+			writeVarint(out, i << 1 ^ i >> 31);
+		}
+
+		@Override
+		public Integer read(final DataInput in) throws IOException {
+			final int i = readVarint(in);
+			return i >>> 1 ^ -(i & 1);
+		}
+	};
+
+	private static final Codec<Long> LONGS = new Codec<Long>() {
+		@Override
+		public void write(final Long e, final DataOutput out) throws IOException {
+			final long l = e;
+			writeVarlong(out, l << 1 ^ l >> 63);
+		}
+
+		@Override
+		public Long read(final DataInput in) throws IOException {
+			final long l = readVarlong(in);
+			return l >>> 1 ^ -(l & 1);
+		}
+	};
+
+	private static final Codec<String> STRINGS = new Codec<String>() {
+		@Override
+		public void write(final String e, final DataOutput out) throws IOException {
+			out.writeUTF(e);
+		}
+
+		@Override
+		public String read(final DataInput in) throws IOException {
+			return in.readUTF();
+		}
+	};
+
+	/**
+	 * Returns a codec which writes {@code Integer} keys as variable-length
+	 * zig-zag encoded integers, taking one byte for keys between -64 and 63.
+	 *
+	 * @return a codec for {@code Integer} keys
+	 */
+	public static Codec<Integer> integers() {
+		return INTEGERS;
+	}
+
+	/**
+	 * Returns a codec which writes {@code Long} keys as variable-length zig-zag
+	 * encoded integers.
+	 *
+	 * @return a codec for {@code Long} keys
+	 */
+	public static Codec<Long> longs() {
+		return LONGS;
+	}
+
+	/**
+	 * Returns a codec which writes {@code String} keys in modified UTF-8, as
+	 * {@link DataOutput#writeUTF(String)} does. Keys longer than 65535 bytes
+	 * when encoded are not recorded.
+	 *
+	 * @return a codec for {@code String} keys
+	 */
+	public static Codec<String> strings() {
+		return STRINGS;
+	}
+
+	/**
+	 * Returns a view of the specified sorted-list which records every
+	 * operation to the specified trace. Positional operations on sub-list
+	 * views are recorded with their index in the backing list, and clearing a
+	 * sub-list view is recorded as the removal of each of its elements by
+	 * index.
+	 *
+	 * @param list
+	 *            the sorted-list to record
+	 * @param writer
+	 *            the trace to record to
+	 * @return a view of the specified sorted-list which records every
+	 *         operation to the specified trace
+	 */
+	public static <E> Sortedlist<E> recordingSortedlist(final Sortedlist<E> list, final TraceWriter<? super E> writer) {
+		checkNotNull(list);
+		checkNotNull(writer);
+		return new RecordingSortedlist<E>(list, writer, 0, false);
+	}
+
+	/**
+	 * Returns a view of the specified bounded queue which records every
+	 * operation to the specified trace. The capacity of the queue is recorded
+	 * first, so that the trace can be replayed against queues of the same
+	 * capacity.
+	 *
+	 * @param queue
+	 *            the queue to record
+	 * @param writer
+	 *            the trace to record to
+	 * @return a view of the specified bounded queue which records every
+	 *         operation to the specified trace
+	 */
+	public static <E> BoundedQueue<E> recordingBoundedQueue(final BoundedQueue<E> queue,
+			final TraceWriter<? super E> writer) {
+		checkNotNull(queue);
+		checkNotNull(writer);
+		writer.writeIndex(Op.BOUND, queue.maxSize());
+		return new RecordingBoundedQueue<E>(queue, writer);
+	}
+
+	/**
+	 * Returns a view of the specified sorted collection which records every
+	 * operation to the specified trace.
+	 *
+	 * @param collection
+	 *            the sorted collection to record
+	 * @param writer
+	 *            the trace to record to
+	 * @return a view of the specified sorted collection which records every
+	 *         operation to the specified trace
+	 */
+	public static <E> SortedCollection<E> recordingSortedCollection(final SortedCollection<E> collection,
+			final TraceWriter<? super E> writer) {
+		checkNotNull(collection);
+		checkNotNull(writer);
+		return new RecordingSortedCollection<E>(collection, writer);
+	}
+
+	static void writeVarint(final DataOutput out, int i) throws IOException {
+		while ((i & ~0x7F) != 0) {
+			out.writeByte(i & 0x7F | 0x80);
+			i >>>= 7;
+		}
+		out.writeByte(i);
+	}
+
+	static int readVarint(final DataInput in) throws IOException {
+		int i = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			final byte b = in.readByte();
+			i |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return i;
+		}
+		throw new IOException("malformed variable-length integer");
+	}
+
+	private static void writeVarlong(final DataOutput out, long l) throws IOException {
+		while ((l & ~0x7FL) != 0) {
+			out.writeByte((int) (l & 0x7F | 0x80));
+			l >>>= 7;
+		}
+		out.writeByte((int) l);
+	}
+
+	private static long readVarlong(final DataInput in) throws IOException {
+		long l = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			final byte b = in.readByte();
+			l |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return l;
+		}
+		throw new IOException("malformed variable-length integer");
+	}
+
+	private static class RecordingCollection<E> extends ForwardingCollection<E> {
+		private final Collection<E> delegate;
+		final TraceWriter<? super E> writer;
+
+		RecordingCollection(final Collection<E> delegate, final TraceWriter<? super E> writer) {
+			this.delegate = delegate;
+			this.writer = writer;
+		}
+
+		@Override
+		protected Collection<E> delegate() {
+			return delegate;
+		}
+
+		@Override
+		public boolean add(final E e) {
+			final boolean result = delegate.add(e);
+			writer.write(Op.ADD, e);
+			return result;
+		}
+
+		@Override
+		public boolean remove(final Object o) {
+			final boolean result = delegate.remove(o);
+			writer.write(Op.REMOVE, o);
+			return result;
+		}
+
+		@Override
+		public boolean contains(final Object o) {
+			final boolean result = delegate.contains(o);
+			writer.write(Op.CONTAINS, o);
+			return result;
+		}
+
+		@Override
+		public void clear() {
+			delegate.clear();
+			writer.write(Op.CLEAR);
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return new RecordingIterator<E>(delegate.iterator(), writer);
+		}
+
+		@Override
+		public boolean addAll(final Collection<? extends E> c) {
+			return standardAddAll(c);
+		}
+
+		@Override
+		public boolean containsAll(final Collection<?> c) {
+			return standardContainsAll(c);
+		}
+
+		@Override
+		public boolean removeAll(final Collection<?> c) {
+			return standardRemoveAll(c);
+		}
+
+		@Override
+		public boolean retainAll(final Collection<?> c) {
+			return standardRetainAll(c);
+		}
+
+		@Override
+		public Object[] toArray() {
+			return standardToArray();
+		}
+
+		@Override
+		public <T> T[] toArray(final T[] a) {
+			return standardToArray(a);
+		}
+	}
+
+	private static final class RecordingSortedCollection<E> extends RecordingCollection<E> implements
+			SortedCollection<E> {
+		private final SortedCollection<E> collection;
+
+		RecordingSortedCollection(final SortedCollection<E> collection, final TraceWriter<? super E> writer) {
+			super(collection, writer);
+			this.collection = collection;
+		}
+
+		@Override
+		public Comparator<? super E> comparator() {
+			return collection.comparator();
+		}
+	}
+
+	private static final class RecordingSortedlist<E> extends RecordingCollection<E> implements Sortedlist<E> {
+		private final Sortedlist<E> list;
+		private final int offset;
+		private final boolean view;
+
+		RecordingSortedlist(final Sortedlist<E> list, final TraceWriter<? super E> writer, final int offset,
+				final boolean view) {
+			super(list, writer);
+			this.list = list;
+			this.offset = offset;
+			this.view = view;
+		}
+
+		@Override
+		public Comparator<? super E> comparator() {
+			return list.comparator();
+		}
+
+		/*
+		 * A CLEAR record would empty the whole collection on replay, so the
+		 * clearing of a sub-list view is recorded element by element.
+		 */
+		@Override
+		public void clear() {
+			if (!view) {
+				super.clear();
+				return;
+			}
+			final int size = list.size();
+			list.clear();
+			for (int i = 0; i < size; i++)
+				writer.writeIndex(Op.REMOVE_AT, offset);
+		}
+
+		@Override
+		public E get(final int index) {
+			final E e = list.get(index);
+			writer.writeIndex(Op.GET, index + offset);
+			return e;
+		}
+
+		@Override
+		public E remove(final int index) {
+			final E e = list.remove(index);
+			writer.writeIndex(Op.REMOVE_AT, index + offset);
+			return e;
+		}
+
+		@Override
+		public int indexOf(final Object o) {
+			final int index = list.indexOf(o);
+			writer.write(Op.INDEX_OF, o);
+			return index;
+		}
+
+		@Override
+		public int lastIndexOf(final Object o) {
+			final int index = list.lastIndexOf(o);
+			writer.write(Op.LAST_INDEX_OF, o);
+			return index;
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return listIterator(0);
+		}
+
+		@Override
+		public ListIterator<E> listIterator() {
+			return listIterator(0);
+		}
+
+		@Override
+		public ListIterator<E> listIterator(final int index) {
+			return new RecordingListIterator<E>(list.listIterator(index), writer, offset);
+		}
+
+		@Override
+		public Sortedlist<E> sublist(final int fromIndex, final int toIndex) {
+			return new RecordingSortedlist<E>(list.sublist(fromIndex, toIndex), writer, offset + fromIndex, true);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o == this || list.equals(o);
+		}
+
+		@Override
+		public int hashCode() {
+			return list.hashCode();
+		}
+	}
+
+	private static final class RecordingBoundedQueue<E> extends RecordingCollection<E> implements BoundedQueue<E> {
+		private final BoundedQueue<E> queue;
+
+		RecordingBoundedQueue(final BoundedQueue<E> queue, final TraceWriter<? super E> writer) {
+			super(queue, writer);
+			this.queue = queue;
+		}
+
+		@Override
+		public boolean add(final E e) {
+			final boolean result = queue.add(e);
+			writer.write(Op.OFFER, e);
+			return result;
+		}
+
+		@Override
+		public boolean offer(final E e) {
+			final boolean result = queue.offer(e);
+			writer.write(Op.OFFER, e);
+			return result;
+		}
+
+		@Override
+		public E poll() {
+			final E e = queue.poll();
+			writer.write(Op.POLL);
+			return e;
+		}
+
+		@Override
+		public E remove() {
+			final E e = queue.remove();
+			writer.write(Op.POLL);
+			return e;
+		}
+
+		@Override
+		public E peek() {
+			final E e = queue.peek();
+			writer.write(Op.PEEK);
+			return e;
+		}
+
+		@Override
+		public E element() {
+			final E e = queue.element();
+			writer.write(Op.PEEK);
+			return e;
+		}
+
+		@Override
+		public int maxSize() {
+			return queue.maxSize();
+		}
+
+		@Override
+		public int remainingCapacity() {
+			return queue.remainingCapacity();
+		}
+
+		@Override
+		public boolean isFull() {
+			return queue.isFull();
+		}
+	}
+
+	private static final class RecordingIterator<E> extends ForwardingIterator<E> {
+		private final Iterator<E> iterator;
+		private final TraceWriter<?> writer;
+		private int index = 0;
+		private E last;
+
+		RecordingIterator(final Iterator<E> iterator, final TraceWriter<?> writer) {
+			this.iterator = iterator;
+			this.writer = writer;
+		}
+
+		@Override
+		protected Iterator<E> delegate() {
+			return iterator;
+		}
+
+		@Override
+		public E next() {
+			last = iterator.next();
+			writer.advance(this, index++);
+			return last;
+		}
+
+		@Override
+		public void remove() {
+			iterator.remove();
+			writer.write(Op.REMOVE, last);
+			index--;
+		}
+	}
+
+	private static final class RecordingListIterator<E> extends ForwardingListIterator<E> {
+		private final ListIterator<E> iterator;
+		private final TraceWriter<?> writer;
+		private final int offset;
+		private E last;
+
+		RecordingListIterator(final ListIterator<E> iterator, final TraceWriter<?> writer, final int offset) {
+			this.iterator = iterator;
+			this.writer = writer;
+			this.offset = offset;
+		}
+
+		@Override
+		protected ListIterator<E> delegate() {
+			return iterator;
+		}
+
+		@Override
+		public E next() {
+			final int index = iterator.nextIndex();
+			last = iterator.next();
+			writer.advance(this, index + offset);
+			return last;
+		}
+
+		@Override
+		public E previous() {
+			final int index = iterator.previousIndex();
+			last = iterator.previous();
+			writer.advance(this, index + offset);
+			return last;
+		}
+
+		@Override
+		public void remove() {
+			iterator.remove();
+			writer.write(Op.REMOVE, last);
+		}
+	}
+
+}
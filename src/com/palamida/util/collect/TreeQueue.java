@@ -31,6 +31,8 @@ import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 import com.google.common.collect.MinMaxPriorityQueue;
 import com.google.common.collect.Ordering;
@@ -153,6 +155,9 @@ import com.google.common.collect.Ordering;
  *      <td style="text-align:center;">&nbsp</td>
  *   </tr>
  * </table>
+ * <p>
+ * A {@code TreeQueue} created with {@link Builder#metrics(CollectionMetrics)}
+ * records its comparator invocations, node visits per search, and rotations.
  * 
  * @author Zhenya Leonov
  * @param <E>
@@ -170,10 +175,12 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 	private transient int modCount = 0;
 	private final Comparator<? super E> comparator;
 	private final int maxSize;
+	private final transient CollectionMetrics metrics;
 
-	private TreeQueue(final int maxSize, final Comparator<? super E> comparator) {
+	private TreeQueue(final int maxSize, final Comparator<? super E> comparator, final CollectionMetrics metrics) {
 		this.maxSize = maxSize;
 		this.comparator = comparator;
+		this.metrics = metrics;
 	}
 
 	/**
@@ -268,6 +275,7 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 
 		private final Comparator<B> comparator;
 		private int maxElements = Integer.MAX_VALUE;
+		private CollectionMetrics metrics = null;
 
 		private Builder(final Comparator<B> comparator) {
 			this.comparator = comparator;
@@ -288,6 +296,20 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 			return this;
 		}
 
+		/**
+		 * Configures this builder to build {@code TreeQueue} instances which
+		 * record their internal operations, including rotations, in the
+		 * specified metrics.
+		 * 
+		 * @param metrics
+		 *            the metrics to record into
+		 * @return this builder
+		 */
+		public Builder<B> metrics(final CollectionMetrics metrics) {
+			this.metrics = checkNotNull(metrics);
+			return this;
+		}
+
 		/**
 		 * Builds an empty {@code TreeQueue} using the previously specified
 		 * options.
@@ -296,7 +318,7 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 		 *         options.
 		 */
 		public <T extends B> TreeQueue<T> create() {
-			return new TreeQueue<T>(maxElements, comparator);
+			return new TreeQueue<T>(maxElements, comparator, metrics);
 		}
 
 		/**
@@ -310,7 +332,7 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 		 */
 		public <T extends B> TreeQueue<T> create(final Iterable<? extends T> elements) {
 			checkNotNull(elements);
-			final TreeQueue<T> queue = new TreeQueue<T>(maxElements, comparator);
+			final TreeQueue<T> queue = new TreeQueue<T>(maxElements, comparator, metrics);
 			for (final T element : elements)
 				queue.offer(element);
 			return queue;
@@ -406,7 +428,7 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 	public boolean offer(E e) {
 		checkNotNull(e);
 		if (size() == maxSize())
-			if (comparator().compare(e, peekLast()) < 0)
+			if (compare(e, peekLast()) < 0)
 				pollLast();
 			else
 				return false;
@@ -494,6 +516,24 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 		};
 	}
 
+	/**
+	 * Returns a <i>late-binding</i> and <i>fail-fast</i> {@code Spliterator}
+	 * over the elements in this queue. The spliterator reports
+	 * {@link Spliterator#ORDERED}, {@link Spliterator#SORTED}, and
+	 * {@link Spliterator#NONNULL}, and {@link Spliterator#SIZED} until it is
+	 * first split.
+	 * <p>
+	 * The spliterator splits at subtree boundaries, starting with the root of
+	 * the tree. Since subtrees do not record their sizes, the sizes of the
+	 * resulting spliterators are estimates.
+	 * 
+	 * @return a {@code Spliterator} over the elements in this queue
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new SpliteratorImpl(nil, nil, 0, -1, 0);
+	}
+
 	/**
 	 * Returns an iterator over the elements of this queue in reverse order from
 	 * last (tail) to first (head).
@@ -564,6 +604,22 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 		return clone;
 	}
 
+	/**
+	 * Returns an estimate of the memory retained by the structure of this
+	 * queue, excluding the elements themselves, under the object layout of the
+	 * running JVM. Runs in constant time.
+	 * 
+	 * @return an estimate of the memory retained by the structure of this
+	 *         queue
+	 * @see MemoryReport
+	 */
+	public MemoryReport footprint() {
+		final ObjectLayout layout = ObjectLayout.CURRENT;
+		final long node = layout.instanceSize(Node.class);
+		return MemoryReport.builder(TreeQueue.class, size)
+				.add("collection", layout.instanceSize(TreeQueue.class) + node).add("nodes", size * node).build();
+	}
+
 	private void writeObject(java.io.ObjectOutputStream oos) throws java.io.IOException {
 		oos.defaultWriteObject();
 		oos.writeInt(size);
@@ -583,6 +639,101 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 			add((E) ois.readObject());
 	}
 
+	private final class SpliteratorImpl implements Spliterator<E> {
+		private Node current;
+		private Node fence;
+		private int side;
+		private int est;
+		private int expectedModCount;
+
+		private SpliteratorImpl(final Node origin, final Node fence, final int side, final int est,
+				final int expectedModCount) {
+			this.current = origin;
+			this.fence = fence;
+			this.side = side;
+			this.est = est;
+			this.expectedModCount = expectedModCount;
+		}
+
+		private int getEstimate() {
+			if (est < 0) {
+				current = min;
+				est = size;
+				expectedModCount = modCount;
+			}
+			return est;
+		}
+
+		/*
+		 * Splits at the root of the subtree separating the remaining elements:
+		 * the whole tree on the first split, then the right child of the
+		 * origin (for suffixes) or the left child of the fence (for prefixes).
+		 */
+		@Override
+		public Spliterator<E> trySplit() {
+			getEstimate();
+			final Node e = current;
+			final Node f = fence;
+			final Node s;
+			if (e == nil || e == f)
+				s = nil;
+			else if (side == 0)
+				s = root;
+			else if (side > 0)
+				s = e.right;
+			else if (f != nil)
+				s = f.left;
+			else
+				s = nil;
+			if (s != nil && s != e && s != f && compare(e.element, s.element) < 0) {
+				side = 1;
+				return new SpliteratorImpl(e, current = s, -1, est >>>= 1, expectedModCount);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			checkNotNull(action);
+			getEstimate();
+			final Node e = current;
+			if (e == nil || e == fence)
+				return false;
+			current = successor(e);
+			action.accept(e.element);
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			checkNotNull(action);
+			getEstimate();
+			Node e = current;
+			current = fence;
+			for (; e != nil && e != fence; e = successor(e))
+				action.accept(e.element);
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+
+		@Override
+		public long estimateSize() {
+			return getEstimate();
+		}
+
+		@Override
+		public int characteristics() {
+			return (side == 0 ? Spliterator.SIZED : 0) | Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL;
+		}
+
+		@Override
+		public Comparator<? super E> getComparator() {
+			return comparator;
+		}
+	}
+
 	/*
 	 * Red-Black Tree
 	 */
@@ -638,30 +789,38 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 		modCount++;
 		Node x = root;
 		Node y = nil;
+		int visits = 0;
 		while (x != nil) {
 			y = x;
-			if (comparator.compare(z.element, x.element) < 0)
+			visits++;
+			if (compare(z.element, x.element) < 0)
 				x = x.left;
 			else
 				x = x.right;
 		}
+		if (metrics != null) {
+			metrics.searched(visits);
+			metrics.inserted();
+		}
 		z.parent = y;
 		if (y == nil)
 			root = z;
-		else if (comparator.compare(z.element, y.element) < 0)
+		else if (compare(z.element, y.element) < 0)
 			y.left = z;
 		else
 			y.right = z;
 		fixAfterInsertion(z);
-		if (max == nil || comparator.compare(z.element, max.element) >= 0)
+		if (max == nil || compare(z.element, max.element) >= 0)
 			max = z;
-		if (min == nil || comparator.compare(z.element, min.element) < 0)
+		if (min == nil || compare(z.element, min.element) < 0)
 			min = z;
 	}
 
 	private void delete(Node z) {
 		size--;
 		modCount++;
+		if (metrics != null)
+			metrics.deleted();
 		Node x, y;
 		if (min == z)
 			min = successor(z);
@@ -690,16 +849,26 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 
 	private Node search(final E e) {
 		Node n = root;
+		int visits = 0;
 		while (n != nil) {
-			int cmp = comparator.compare(e, n.element);
+			visits++;
+			int cmp = compare(e, n.element);
 			if (cmp == 0)
-				return n;
+				break;
 			if (cmp < 0)
 				n = n.left;
 			else
 				n = n.right;
 		}
-		return null;
+		if (metrics != null)
+			metrics.searched(visits);
+		return n == nil ? null : n;
+	}
+
+	private int compare(final E e1, final E e2) {
+		if (metrics != null)
+			metrics.compared();
+		return comparator.compare(e1, e2);
 	}
 
 	/**
@@ -769,6 +938,8 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 	 */
 	private void leftRotate(final Node x) {
 		if (x != nil) {
+			if (metrics != null)
+				metrics.rotated();
 			Node n = x.right;
 			x.right = n.left;
 			if (n.left != nil)
@@ -787,6 +958,8 @@ final public class TreeQueue<E> extends AbstractQueue<E> implements SortedCollec
 
 	private void rightRotate(final Node x) {
 		if (x != nil) {
+			if (metrics != null)
+				metrics.rotated();
 			Node n = x.left;
 			x.left = n.right;
 			if (n.right != nil)
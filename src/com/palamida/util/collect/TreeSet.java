@@ -31,6 +31,8 @@ import java.util.NavigableSet;
 import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
 import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.MinMaxPriorityQueue;
@@ -244,6 +246,24 @@ final public class TreeSet<E> extends AbstractSet<E> implements SortedCollection
 		};
 	}
 
+	/**
+	 * Returns a <i>late-binding</i> and <i>fail-fast</i> {@code Spliterator}
+	 * over the elements in this set. The spliterator reports
+	 * {@link Spliterator#ORDERED}, {@link Spliterator#SORTED}, {@link Spliterator#DISTINCT}, and
+	 * {@link Spliterator#NONNULL}, and {@link Spliterator#SIZED} until it is
+	 * first split.
+	 * <p>
+	 * The spliterator splits at subtree boundaries, starting with the root of
+	 * the tree. Since subtrees do not record their sizes, the sizes of the
+	 * resulting spliterators are estimates.
+	 * 
+	 * @return a {@code Spliterator} over the elements in this set
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new SpliteratorImpl(nil, nil, 0, -1, 0);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public boolean remove(Object o) {
@@ -287,6 +307,22 @@ final public class TreeSet<E> extends AbstractSet<E> implements SortedCollection
 		return clone;
 	}
 
+	/**
+	 * Returns an estimate of the memory retained by the structure of this
+	 * set, excluding the elements themselves, under the object layout of the
+	 * running JVM. Runs in constant time.
+	 * 
+	 * @return an estimate of the memory retained by the structure of this
+	 *         set
+	 * @see MemoryReport
+	 */
+	public MemoryReport footprint() {
+		final ObjectLayout layout = ObjectLayout.CURRENT;
+		final long node = layout.instanceSize(Node.class);
+		return MemoryReport.builder(TreeSet.class, size)
+				.add("collection", layout.instanceSize(TreeSet.class) + node).add("nodes", size * node).build();
+	}
+
 	private void writeObject(java.io.ObjectOutputStream oos) throws java.io.IOException {
 		oos.defaultWriteObject();
 		oos.writeInt(size);
@@ -303,6 +339,101 @@ final public class TreeSet<E> extends AbstractSet<E> implements SortedCollection
 			add((E) ois.readObject());
 	}
 
+	private final class SpliteratorImpl implements Spliterator<E> {
+		private Node current;
+		private Node fence;
+		private int side;
+		private int est;
+		private int expectedModCount;
+
+		private SpliteratorImpl(final Node origin, final Node fence, final int side, final int est,
+				final int expectedModCount) {
+			this.current = origin;
+			this.fence = fence;
+			this.side = side;
+			this.est = est;
+			this.expectedModCount = expectedModCount;
+		}
+
+		private int getEstimate() {
+			if (est < 0) {
+				current = min;
+				est = size;
+				expectedModCount = modCount;
+			}
+			return est;
+		}
+
+		/*
+		 * Splits at the root of the subtree separating the remaining elements:
+		 * the whole tree on the first split, then the right child of the
+		 * origin (for suffixes) or the left child of the fence (for prefixes).
+		 */
+		@Override
+		public Spliterator<E> trySplit() {
+			getEstimate();
+			final Node e = current;
+			final Node f = fence;
+			final Node s;
+			if (e == nil || e == f)
+				s = nil;
+			else if (side == 0)
+				s = root;
+			else if (side > 0)
+				s = e.right;
+			else if (f != nil)
+				s = f.left;
+			else
+				s = nil;
+			if (s != nil && s != e && s != f && comparator.compare(e.element, s.element) < 0) {
+				side = 1;
+				return new SpliteratorImpl(e, current = s, -1, est >>>= 1, expectedModCount);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			checkNotNull(action);
+			getEstimate();
+			final Node e = current;
+			if (e == nil || e == fence)
+				return false;
+			current = successor(e);
+			action.accept(e.element);
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			checkNotNull(action);
+			getEstimate();
+			Node e = current;
+			current = fence;
+			for (; e != nil && e != fence; e = successor(e))
+				action.accept(e.element);
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+
+		@Override
+		public long estimateSize() {
+			return getEstimate();
+		}
+
+		@Override
+		public int characteristics() {
+			return (side == 0 ? Spliterator.SIZED : 0) | Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL | Spliterator.DISTINCT;
+		}
+
+		@Override
+		public Comparator<? super E> getComparator() {
+			return comparator;
+		}
+	}
+
 	// Red-Black-Tree
 
 	static enum Color {
@@ -35,6 +35,9 @@ import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
 import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.MinMaxPriorityQueue;
@@ -116,6 +119,9 @@ import com.google.common.collect.Ordering;
  * The sub-list views exhibit identical time complexity, with the exception of
  * the {@code clear()} operation which runs in linear time proportional to the
  * size of the views.
+ * <p>
+ * A {@code Treelist} created with {@link Builder#metrics(CollectionMetrics)}
+ * records its comparator invocations, node visits per search, and rotations.
  * 
  * @author Zhenya Leonov
  * @param <E>
@@ -132,9 +138,11 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 	private transient Node root = nil;
 	transient int modCount = 0;
 	private final Comparator<? super E> comparator;
+	private final transient CollectionMetrics metrics;
 
-	private Treelist(final Comparator<? super E> comparator) {
+	private Treelist(final Comparator<? super E> comparator, final CollectionMetrics metrics) {
 		this.comparator = comparator;
+		this.metrics = metrics;
 	}
 
 	/**
@@ -145,7 +153,7 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 	 *         their <i>natural ordering</i>
 	 */
 	public static <E extends Comparable<? super E>> Treelist<E> create() {
-		return new Treelist<E>(Ordering.natural());
+		return new Treelist<E>(Ordering.natural(), null);
 	}
 
 	/**
@@ -211,11 +219,26 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 	public static final class Builder<B> {
 
 		private final Comparator<B> comparator;
+		private CollectionMetrics metrics = null;
 
 		private Builder(final Comparator<B> comparator) {
 			this.comparator = comparator;
 		}
 
+		/**
+		 * Configures this builder to build {@code Treelist} instances which
+		 * record their internal operations, including rotations, in the
+		 * specified metrics.
+		 * 
+		 * @param metrics
+		 *            the metrics to record into
+		 * @return this builder
+		 */
+		public Builder<B> metrics(final CollectionMetrics metrics) {
+			this.metrics = checkNotNull(metrics);
+			return this;
+		}
+
 		/**
 		 * Builds an empty {@code Treelist} using the previously specified
 		 * comparator.
@@ -224,7 +247,7 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		 *         comparator.
 		 */
 		public <T extends B> Treelist<T> create() {
-			return new Treelist<T>(comparator);
+			return new Treelist<T>(comparator, metrics);
 		}
 
 		/**
@@ -238,7 +261,7 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		 */
 		public <T extends B> Treelist<T> create(final Iterable<? extends T> elements) {
 			checkNotNull(elements);
-			final Treelist<T> list = new Treelist<T>(comparator);
+			final Treelist<T> list = new Treelist<T>(comparator, metrics);
 			Iterables.addAll(list, elements);
 			return list;
 		}
@@ -289,7 +312,7 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			E e = (E) o;
 			ListIterator<E> itor = listIterator();
 			while (itor.hasNext())
-				if (comparator.compare(itor.next(), e) == 0)
+				if (compare(itor.next(), e) == 0)
 					return itor.previousIndex();
 		}
 		return -1;
@@ -302,8 +325,8 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			E e = (E) o;
 			ListIterator<E> itor = listIterator();
 			while (itor.hasNext())
-				if (comparator.compare(itor.next(), e) == 0) {
-					while (itor.hasNext() && comparator.compare(itor.next(), e) == 0)
+				if (compare(itor.next(), e) == 0) {
+					while (itor.hasNext() && compare(itor.next(), e) == 0)
 						;
 					return itor.previousIndex();
 				}
@@ -398,6 +421,24 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		};
 	}
 
+	/**
+	 * Returns a <i>late-binding</i> and <i>fail-fast</i> {@code Spliterator}
+	 * over the elements in this list. The spliterator reports
+	 * {@link Spliterator#ORDERED}, {@link Spliterator#SORTED}, and
+	 * {@link Spliterator#NONNULL}, and {@link Spliterator#SIZED} until it is
+	 * first split.
+	 * <p>
+	 * The spliterator splits at subtree boundaries, starting with the root of
+	 * the tree. Since subtrees do not record their sizes, the sizes of the
+	 * resulting spliterators are estimates.
+	 * 
+	 * @return a {@code Spliterator} over the elements in this list
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new SpliteratorImpl(nil, nil, 0, -1, 0);
+	}
+
 	@Override
 	public ListIterator<E> listIterator(int index) {
 		checkPositionIndex(index, size);
@@ -459,7 +500,7 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			@SuppressWarnings("unchecked")
 			final Iterator<E> i = ((Collection<E>) o).iterator();
 			for (E e : this)
-				if (comparator.compare(e, i.next()) != 0)
+				if (compare(e, i.next()) != 0)
 					return false;
 			return !i.hasNext();
 		} catch (ClassCastException e) {
@@ -503,6 +544,23 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		return clone;
 	}
 
+	/**
+	 * Returns an estimate of the memory retained by the structure of this
+	 * list, excluding the elements themselves, under the object layout of the
+	 * running JVM. Runs in constant time. Not supported by
+	 * sub-list views, which share the structure of their backing list.
+	 * 
+	 * @return an estimate of the memory retained by the structure of this
+	 *         list
+	 * @see MemoryReport
+	 */
+	public MemoryReport footprint() {
+		final ObjectLayout layout = ObjectLayout.CURRENT;
+		final long node = layout.instanceSize(Node.class);
+		return MemoryReport.builder(Treelist.class, size)
+				.add("collection", layout.instanceSize(Treelist.class) + node).add("nodes", size * node).build();
+	}
+
 	private void writeObject(java.io.ObjectOutputStream oos) throws java.io.IOException {
 		oos.defaultWriteObject();
 		oos.writeInt(size);
@@ -535,7 +593,7 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		}
 
 		public Sublist(Treelist<E> list, int fromIndex, int toIndex) {
-			super(list.comparator);
+			super(list.comparator, list.metrics);
 			this.list = list;
 			from = list.min;
 			offset = fromIndex;
@@ -552,12 +610,12 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		@Override
 		public boolean add(E e) {
 			checkForConcurrentModification();
-			if (comparator.compare(e, from.element) < 0 || comparator.compare(e, to.element) > 0)
+			if (compare(e, from.element) < 0 || compare(e, to.element) > 0)
 				throw new IllegalArgumentException("element out of range");
 			list.add(e);
 			this.modCount = list.modCount;
 			this.size++;
-			if (comparator.compare(to.element, e) <= 0)
+			if (compare(to.element, e) <= 0)
 				to = successor(to);
 			return true;
 		}
@@ -694,6 +752,16 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 			throw new CloneNotSupportedException();
 		}
 
+		@Override
+		public Spliterator<E> spliterator() {
+			return Spliterators.spliterator(this, Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+
+		@Override
+		public MemoryReport footprint() {
+			throw new UnsupportedOperationException();
+		}
+
 		private void writeObject(java.io.ObjectOutputStream oos) throws NotSerializableException {
 			throw new NotSerializableException();
 		}
@@ -706,8 +774,8 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 
 		@Override
 		Node search(final E e) {
-			final int compareFrom = comparator.compare(e, from.element);
-			final int compareTo = comparator.compare(e, to.element);
+			final int compareFrom = compare(e, from.element);
+			final int compareTo = compare(e, to.element);
 			if (compareFrom < 0 || compareTo > 0)
 				return null;
 			if (compareFrom == 0)
@@ -719,6 +787,101 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		}
 	}
 
+	private final class SpliteratorImpl implements Spliterator<E> {
+		private Node current;
+		private Node fence;
+		private int side;
+		private int est;
+		private int expectedModCount;
+
+		private SpliteratorImpl(final Node origin, final Node fence, final int side, final int est,
+				final int expectedModCount) {
+			this.current = origin;
+			this.fence = fence;
+			this.side = side;
+			this.est = est;
+			this.expectedModCount = expectedModCount;
+		}
+
+		private int getEstimate() {
+			if (est < 0) {
+				current = min;
+				est = size;
+				expectedModCount = modCount;
+			}
+			return est;
+		}
+
+		/*
+		 * Splits at the root of the subtree separating the remaining elements:
+		 * the whole tree on the first split, then the right child of the
+		 * origin (for suffixes) or the left child of the fence (for prefixes).
+		 */
+		@Override
+		public Spliterator<E> trySplit() {
+			getEstimate();
+			final Node e = current;
+			final Node f = fence;
+			final Node s;
+			if (e == nil || e == f)
+				s = nil;
+			else if (side == 0)
+				s = root;
+			else if (side > 0)
+				s = e.right;
+			else if (f != nil)
+				s = f.left;
+			else
+				s = nil;
+			if (s != nil && s != e && s != f && compare(e.element, s.element) < 0) {
+				side = 1;
+				return new SpliteratorImpl(e, current = s, -1, est >>>= 1, expectedModCount);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			checkNotNull(action);
+			getEstimate();
+			final Node e = current;
+			if (e == nil || e == fence)
+				return false;
+			current = successor(e);
+			action.accept(e.element);
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			checkNotNull(action);
+			getEstimate();
+			Node e = current;
+			current = fence;
+			for (; e != nil && e != fence; e = successor(e))
+				action.accept(e.element);
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+
+		@Override
+		public long estimateSize() {
+			return getEstimate();
+		}
+
+		@Override
+		public int characteristics() {
+			return (side == 0 ? Spliterator.SIZED : 0) | Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL;
+		}
+
+		@Override
+		public Comparator<? super E> getComparator() {
+			return comparator;
+		}
+	}
+
 	// Red-Black-Tree
 
 	static enum Color {
@@ -746,16 +909,26 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 
 	Node search(final E e) {
 		Node n = root;
+		int visits = 0;
 		while (n != nil) {
-			int cmp = comparator.compare(e, n.element);
+			visits++;
+			int cmp = compare(e, n.element);
 			if (cmp == 0)
-				return n;
+				break;
 			if (cmp < 0)
 				n = n.left;
 			else
 				n = n.right;
 		}
-		return null;
+		if (metrics != null)
+			metrics.searched(visits);
+		return n == nil ? null : n;
+	}
+
+	private int compare(final E e1, final E e2) {
+		if (metrics != null)
+			metrics.compared();
+		return comparator.compare(e1, e2);
 	}
 
 	/**
@@ -786,24 +959,30 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 		modCount++;
 		Node x = root;
 		Node y = nil;
+		int visits = 0;
 		while (x != nil) {
 			y = x;
-			if (comparator.compare(z.element, x.element) < 0)
+			visits++;
+			if (compare(z.element, x.element) < 0)
 				x = x.left;
 			else
 				x = x.right;
 		}
+		if (metrics != null) {
+			metrics.searched(visits);
+			metrics.inserted();
+		}
 		z.parent = y;
 		if (y == nil)
 			root = z;
-		else if (comparator.compare(z.element, y.element) < 0)
+		else if (compare(z.element, y.element) < 0)
 			y.left = z;
 		else
 			y.right = z;
 		fixAfterInsertion(z);
-		if (max == nil || comparator.compare(z.element, max.element) >= 0)
+		if (max == nil || compare(z.element, max.element) >= 0)
 			max = z;
-		if (min == nil || comparator.compare(z.element, min.element) < 0)
+		if (min == nil || compare(z.element, min.element) < 0)
 			min = z;
 	}
 
@@ -834,6 +1013,8 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 	private void delete(Node z) {
 		size--;
 		modCount++;
+		if (metrics != null)
+			metrics.deleted();
 		Node x, y;
 		if (min == z)
 			min = successor(z);
@@ -927,6 +1108,8 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 	 */
 	private void leftRotate(final Node x) {
 		if (x != nil) {
+			if (metrics != null)
+				metrics.rotated();
 			Node n = x.right;
 			x.right = n.left;
 			if (n.left != nil)
@@ -945,6 +1128,8 @@ public class Treelist<E> extends AbstractCollection<E> implements Sortedlist<E>,
 
 	private void rightRotate(final Node x) {
 		if (x != nil) {
+			if (metrics != null)
+				metrics.rotated();
 			Node n = x.left;
 			x.left = n.right;
 			if (n.right != nil)
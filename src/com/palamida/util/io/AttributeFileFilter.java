@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A filter for files whose attributes have already been read, typically by
+ * the walker which found them. Unlike a {@link java.io.FileFilter}, which has
+ * to query the file system again to learn the type, size, or modification
+ * time of a file, an {@code AttributeFileFilter} is handed them.
+ *
+ * @author Zhenya Leonov
+ * @see AttributeFileFilters
+ * @see MoreFiles#walkFileTree(File, AttributeFileFilter, FileProcessor)
+ */
+public interface AttributeFileFilter {
+
+	/**
+	 * Tests whether or not the specified file should be accepted.
+	 *
+	 * @param path
+	 *            the specified file
+	 * @param attributes
+	 *            the attributes of the specified file
+	 * @return {@code true} if and only if the specified file should be
+	 *         accepted
+	 */
+	public boolean accept(final File path, final BasicFileAttributes attributes);
+
+}
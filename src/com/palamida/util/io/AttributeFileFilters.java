@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Static utility methods pertaining to {@link AttributeFileFilter}s. The
+ * filters returned by this class only inspect the attributes they are given,
+ * and never query the file system.
+ *
+ * @author Zhenya Leonov
+ */
+final public class AttributeFileFilters {
+
+	private AttributeFileFilters() {
+	}
+
+	/**
+	 * An attribute file filter that always evaluates to {@code true}.
+	 */
+	public static final AttributeFileFilter TRUE = new AttributeFileFilter() {
+
+		@Override
+		public boolean accept(final File path, final BasicFileAttributes attributes) {
+			return true;
+		}
+	};
+
+	/**
+	 * An attribute file filter that always evaluates to {@code false}.
+	 */
+	public static final AttributeFileFilter FALSE = new AttributeFileFilter() {
+
+		@Override
+		public boolean accept(final File path, final BasicFileAttributes attributes) {
+			return false;
+		}
+	};
+
+	/**
+	 * An attribute file filter which accepts regular files.
+	 */
+	public static final AttributeFileFilter FILE = new AttributeFileFilter() {
+
+		@Override
+		public boolean accept(final File path, final BasicFileAttributes attributes) {
+			return attributes.isRegularFile();
+		}
+	};
+
+	/**
+	 * An attribute file filter which accepts directories.
+	 */
+	public static final AttributeFileFilter DIRECTORY = new AttributeFileFilter() {
+
+		@Override
+		public boolean accept(final File path, final BasicFileAttributes attributes) {
+			return attributes.isDirectory();
+		}
+	};
+
+	/**
+	 * Returns an attribute file filter which accepts files whose size is at
+	 * least the specified number of bytes.
+	 *
+	 * @param bytes
+	 *            the minimum size in bytes
+	 * @return an attribute file filter which accepts files whose size is at
+	 *         least the specified number of bytes
+	 */
+	public static AttributeFileFilter sizeAtLeast(final long bytes) {
+		checkArgument(bytes >= 0, "bytes < 0");
+		return new AttributeFileFilter() {
+			@Override
+			public boolean accept(final File path, final BasicFileAttributes attributes) {
+				return attributes.size() >= bytes;
+			}
+		};
+	}
+
+	/**
+	 * Returns an attribute file filter which accepts files whose size is at
+	 * most the specified number of bytes.
+	 *
+	 * @param bytes
+	 *            the maximum size in bytes
+	 * @return an attribute file filter which accepts files whose size is at
+	 *         most the specified number of bytes
+	 */
+	public static AttributeFileFilter sizeAtMost(final long bytes) {
+		checkArgument(bytes >= 0, "bytes < 0");
+		return new AttributeFileFilter() {
+			@Override
+			public boolean accept(final File path, final BasicFileAttributes attributes) {
+				return attributes.size() <= bytes;
+			}
+		};
+	}
+
+	/**
+	 * Returns an attribute file filter which accepts files last modified
+	 * after the specified time.
+	 *
+	 * @param millis
+	 *            the time in milliseconds since the epoch, as returned by
+	 *            {@link File#lastModified()}
+	 * @return an attribute file filter which accepts files last modified after
+	 *         the specified time
+	 */
+	public static AttributeFileFilter modifiedAfter(final long millis) {
+		return new AttributeFileFilter() {
+			@Override
+			public boolean accept(final File path, final BasicFileAttributes attributes) {
+				return attributes.lastModifiedTime().toMillis() > millis;
+			}
+		};
+	}
+
+	/**
+	 * Returns an attribute file filter which accepts files last modified
+	 * before the specified time.
+	 *
+	 * @param millis
+	 *            the time in milliseconds since the epoch, as returned by
+	 *            {@link File#lastModified()}
+	 * @return an attribute file filter which accepts files last modified before
+	 *         the specified time
+	 */
+	public static AttributeFileFilter modifiedBefore(final long millis) {
+		return new AttributeFileFilter() {
+			@Override
+			public boolean accept(final File path, final BasicFileAttributes attributes) {
+				return attributes.lastModifiedTime().toMillis() < millis;
+			}
+		};
+	}
+
+	/**
+	 * Returns an attribute file filter that evaluates to {@code true} if the
+	 * given filter evaluates to {@code false}.
+	 *
+	 * @param filter
+	 *            the given filter
+	 * @return an attribute file filter that evaluates to {@code true} if the
+	 *         given filter evaluates to {@code false}
+	 */
+	public static AttributeFileFilter not(final AttributeFileFilter filter) {
+		checkNotNull(filter);
+		return new AttributeFileFilter() {
+			@Override
+			public boolean accept(final File path, final BasicFileAttributes attributes) {
+				return !filter.accept(path, attributes);
+			}
+		};
+	}
+
+	/**
+	 * Returns an attribute file filter that evaluates to {@code true} if any of
+	 * the specified filters evaluate to {@code true}.
+	 *
+	 * @param first
+	 *            the first filter
+	 * @param second
+	 *            the second filter
+	 * @param rest
+	 *            the rest specified filters
+	 * @return an attribute file filter that evaluates to {@code true} if any of
+	 *         the specified filters evaluate to {@code true}
+	 */
+	public static AttributeFileFilter or(final AttributeFileFilter first, final AttributeFileFilter second,
+			final AttributeFileFilter... rest) {
+		checkNotNull(first);
+		checkNotNull(second);
+		checkNotNull(rest);
+		return new AttributeFileFilter() {
+			@Override
+			public boolean accept(final File path, final BasicFileAttributes attributes) {
+				if (first.accept(path, attributes) || second.accept(path, attributes))
+					return true;
+				for (final AttributeFileFilter filter : rest)
+					if (filter.accept(path, attributes))
+						return true;
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns an attribute file filter that evaluates to {@code true} if all of
+	 * the specified filters evaluate to {@code true}.
+	 *
+	 * @param first
+	 *            the first filter
+	 * @param second
+	 *            the second filter
+	 * @param rest
+	 *            the rest specified filters
+	 * @return an attribute file filter that evaluates to {@code true} if all of
+	 *         the specified filters evaluate to {@code true}
+	 */
+	public static AttributeFileFilter and(final AttributeFileFilter first, final AttributeFileFilter second,
+			final AttributeFileFilter... rest) {
+		checkNotNull(first);
+		checkNotNull(second);
+		checkNotNull(rest);
+		return new AttributeFileFilter() {
+			@Override
+			public boolean accept(final File path, final BasicFileAttributes attributes) {
+				if (!first.accept(path, attributes) || !second.accept(path, attributes))
+					return false;
+				for (final AttributeFileFilter filter : rest)
+					if (!filter.accept(path, attributes))
+						return false;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Adapts a {@code FileFilter} to the {@code AttributeFileFilter} interface.
+	 * The attributes are ignored, so the adapted filter costs as many file
+	 * system queries as the original.
+	 *
+	 * @param filter
+	 *            the specified {@code FileFilter}
+	 * @return an attribute file filter which mimics the behavior of the
+	 *         specified {@code FileFilter}
+	 */
+	public static AttributeFileFilter forFileFilter(final FileFilter filter) {
+		checkNotNull(filter);
+		return new AttributeFileFilter() {
+			@Override
+			public boolean accept(final File path, final BasicFileAttributes attributes) {
+				return filter.accept(path);
+			}
+		};
+	}
+
+}
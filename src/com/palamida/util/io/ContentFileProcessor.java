@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A callback interface to be used when processing the contents of files.
+ * <p>
+ * {@link #processFile(File, BasicFileAttributes, ByteBuffer)} will be called
+ * for each regular file that is encountered, with its attributes and its
+ * contents already read, and should return {@code false} when you want to
+ * stop processing.
+ * <p>
+ * The contents are passed in a read-only buffer which is only valid during the
+ * call: large files are memory-mapped, and small files are read into a buffer
+ * which is reused for the next file. A processor which needs the contents
+ * afterwards must copy them.
+ * <p>
+ * A file of more than {@code Integer.MAX_VALUE} bytes cannot be held in one
+ * buffer, so it is passed in consecutive windows of at most that many bytes,
+ * one call per window, in file order and with the same path and attributes.
+ * The windows of a file together hold all of its contents; a processor can
+ * tell that it is being passed a window because the buffer holds fewer bytes
+ * than the size in the attributes.
+ * 
+ * @param <R>
+ *            the type of result this processor returns
+ * @author Zhenya Leonov
+ * @see MoreFiles#walkFileTree(File, AttributeFileFilter, ContentFileProcessor)
+ */
+public interface ContentFileProcessor<R> {
+
+	/**
+	 * Return the result of processing all the files.
+	 */
+	public R getResult();
+
+	/**
+	 * This method will be called for each regular file that is encountered.
+	 * 
+	 * @param path
+	 *            the specified file
+	 * @param attributes
+	 *            the attributes of the specified file
+	 * @param content
+	 *            a read-only buffer holding the contents of the file, or the
+	 *            next window of a file too large for one buffer, from its
+	 *            position to its limit, valid only during this call
+	 * @return {@code true} to continue processing, {@code false} to stop
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public boolean processFile(final File path, final BasicFileAttributes attributes, final ByteBuffer content)
+			throws IOException;
+
+}
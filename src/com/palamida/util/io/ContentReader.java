@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.google.common.hash.Hasher;
+
+/**
+ * Reads the contents of files into read-only buffers for a
+ * {@link ContentFileProcessor}. Files of at least {@link #MAP_THRESHOLD} bytes
+ * are memory-mapped; smaller files are read with a single channel read into a
+ * heap buffer which is reused from one file to the next, so that reading a
+ * small file allocates nothing but the read-only view.
+ * <p>
+ * Mapped buffers are released by the garbage collector. Files of more than
+ * {@code Integer.MAX_VALUE} bytes cannot be mapped whole, and are read in
+ * consecutive windows of {@link #WINDOW_SIZE} bytes, the last of which holds
+ * the rest of the file.
+ * <p>
+ * This class is not <i>thread-safe</i>.
+ *
+ * @author Zhenya Leonov
+ */
+final class ContentReader {
+
+	static final int MAP_THRESHOLD = 1 << 20;
+	static final int SCRATCH_SIZE = 64 * 1024;
+	static final int WINDOW_SIZE = 1 << 30;
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+	private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+	/**
+	 * Returns the contents of the specified file, which should be about
+	 * {@code size} bytes long, from the specified position on. The returned
+	 * buffer holds the rest of the file unless that is more than
+	 * {@code Integer.MAX_VALUE} bytes, in which case it holds the next window,
+	 * and the rest must be read by calling this method again from the position
+	 * after it. Returns an empty buffer at the end of the file.
+	 */
+	ByteBuffer read(final Path path, final long size, final long position) throws IOException {
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			if (size >= MAP_THRESHOLD || position > 0) {
+				final long remaining = channel.size() - position;
+				if (remaining <= 0)
+					return EMPTY;
+				return channel.map(FileChannel.MapMode.READ_ONLY, position,
+						remaining > Integer.MAX_VALUE ? WINDOW_SIZE : remaining);
+			}
+			if (size == 0 && channel.size() == 0)
+				return EMPTY;
+			if (buffer.capacity() < size + 1)
+				buffer = ByteBuffer.allocate((int) Math.min(MAP_THRESHOLD, Math.max(size + 1, buffer.capacity() * 2L)));
+			buffer.clear();
+			// reads past the expected size to notice files which have grown
+			int n;
+			do
+				n = channel.read(buffer);
+			while (n >= 0 && buffer.hasRemaining());
+			buffer.flip();
+			if (buffer.limit() == buffer.capacity())
+				return read(path, MAP_THRESHOLD, 0);
+			return buffer.asReadOnlyBuffer();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Feeds the remaining bytes of the specified buffer to the hasher, copying
+	 * them through the scratch array, since neither mapped nor read-only
+	 * buffers expose an array to hash directly.
+	 */
+	static Hasher putBytes(final Hasher hasher, final ByteBuffer buffer, final byte[] scratch) {
+		while (buffer.hasRemaining()) {
+			final int n = Math.min(scratch.length, buffer.remaining());
+			buffer.get(scratch, 0, n);
+			hasher.putBytes(scratch, 0, n);
+		}
+		return hasher;
+	}
+
+}
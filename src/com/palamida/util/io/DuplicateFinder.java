@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Finds duplicate files in a tree in three stages: files are bucketed by
+ * size, files sharing a size by a hash of their first {@link #PREFIX_SIZE}
+ * bytes, and files sharing a prefix hash by a hash of their whole contents.
+ * Both hashing stages run on a pool of threads; whole files are
+ * memory-mapped in chunks of {@link #CHUNK_SIZE} bytes.
+ * <p>
+ * The walk follows links, so a file can be reached through several paths.
+ * Files are identified by their {@linkplain BasicFileAttributes#fileKey() file
+ * key}, where the file system provides one, and only the first path to each
+ * is kept, so that a file is never reported as a duplicate of itself.
+ * <p>
+ * Contents are hashed with the 128-bit murmur3 function, whose collisions are
+ * vanishingly unlikely for files which are not crafted to collide.
+ *
+ * @author Zhenya Leonov
+ */
+final class DuplicateFinder {
+
+	static final int PREFIX_SIZE = 4096;
+	static final int CHUNK_SIZE = 64 << 20;
+
+	private static final HashFunction HASH = Hashing.murmur3_128();
+
+	private final ExecutorService executor;
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[ContentReader.SCRATCH_SIZE];
+		}
+	};
+
+	private DuplicateFinder(final ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	static DuplicateReport find(final File root, final AttributeFileFilter filter, final int parallelism)
+			throws IOException {
+		final long start = System.nanoTime();
+		final Map<Long, Group> sizes = new HashMap<Long, Group>();
+		final Set<Object> keys = new HashSet<Object>();
+		final long[] files = new long[1];
+		MoreFiles.walkFileTree(root, IgnoreRules.NONE, new FileTreeVisitor<Void>() {
+			@Override
+			public Void getResult() {
+				return null;
+			}
+
+			@Override
+			public FileVisitResult visitFile(final File path, final BasicFileAttributes attributes) {
+				if (attributes.isRegularFile() && attributes.size() > 0 && filter.accept(path, attributes)) {
+					final Object key = attributes.fileKey();
+					if (key != null && !keys.add(key))
+						return FileVisitResult.CONTINUE; // another path to a file already seen
+					files[0]++;
+					Group group = sizes.get(attributes.size());
+					if (group == null) {
+						group = new Group(attributes.size());
+						sizes.put(attributes.size(), group);
+					}
+					group.files.add(path);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		try {
+			final DuplicateFinder finder = new DuplicateFinder(executor);
+			final List<Group> candidates = new ArrayList<Group>();
+			long prefixHashed = 0;
+			for (final Group group : sizes.values())
+				if (group.files.size() > 1) {
+					candidates.add(group);
+					prefixHashed += group.files.size();
+				}
+			final List<Group> duplicates = new ArrayList<Group>();
+			final List<Group> large = new ArrayList<Group>();
+			long fullyHashed = 0;
+			for (final Group group : finder.split(candidates, true))
+				if (group.size <= PREFIX_SIZE)
+					duplicates.add(group);
+				else {
+					large.add(group);
+					fullyHashed += group.files.size();
+				}
+			duplicates.addAll(finder.split(large, false));
+
+			final List<ImmutableList<File>> groups = new ArrayList<ImmutableList<File>>(duplicates.size());
+			long redundantBytes = 0;
+			for (final Group group : duplicates)
+				Collections.sort(group.files);
+			Collections.sort(duplicates, new Comparator<Group>() {
+				@Override
+				public int compare(final Group g1, final Group g2) {
+					final int c = Long.compare(g2.size, g1.size);
+					return c != 0 ? c : g1.files.get(0).compareTo(g2.files.get(0));
+				}
+			});
+			for (final Group group : duplicates) {
+				groups.add(ImmutableList.copyOf(group.files));
+				redundantBytes += group.size * (group.files.size() - 1);
+			}
+			return new DuplicateReport(ImmutableList.copyOf(groups), redundantBytes, files[0], prefixHashed,
+					fullyHashed, finder.bytesRead.get(), finder.failures.get(), System.nanoTime() - start);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static final class Group {
+		private final long size;
+		private final List<File> files = new ArrayList<File>(2);
+
+		private Group(final long size) {
+			this.size = size;
+		}
+	}
+
+	/*
+	 * Hashes every file of every group on the pool, and splits each group by
+	 * hash, keeping the parts of two or more files.
+	 */
+	private List<Group> split(final List<Group> groups, final boolean prefix) throws IOException {
+		final List<List<Future<HashCode>>> hashes = new ArrayList<List<Future<HashCode>>>(groups.size());
+		for (final Group group : groups) {
+			final List<Future<HashCode>> futures = new ArrayList<Future<HashCode>>(group.files.size());
+			for (final File file : group.files)
+				futures.add(executor.submit(new Callable<HashCode>() {
+					@Override
+					public HashCode call() {
+						try {
+							return prefix ? hashPrefix(file) : hashContents(file);
+						} catch (IOException e) {
+							failures.incrementAndGet();
+							return null;
+						}
+					}
+				}));
+			hashes.add(futures);
+		}
+		final List<Group> result = new ArrayList<Group>();
+		for (int i = 0; i < groups.size(); i++) {
+			final Group group = groups.get(i);
+			final Map<HashCode, Group> parts = new HashMap<HashCode, Group>();
+			for (int j = 0; j < group.files.size(); j++) {
+				final HashCode hash = get(hashes.get(i).get(j));
+				if (hash == null)
+					continue;
+				Group part = parts.get(hash);
+				if (part == null) {
+					part = new Group(group.size);
+					parts.put(hash, part);
+				}
+				part.files.add(group.files.get(j));
+			}
+			for (final Group part : parts.values())
+				if (part.files.size() > 1)
+					result.add(part);
+		}
+		return result;
+	}
+
+	private static HashCode get(final Future<HashCode> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private HashCode hashPrefix(final File file) throws IOException {
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			final byte[] bytes = scratch.get();
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, PREFIX_SIZE);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+				continue;
+			bytesRead.addAndGet(buffer.position());
+			return HASH.hashBytes(bytes, 0, buffer.position());
+		} finally {
+			channel.close();
+		}
+	}
+
+	private HashCode hashContents(final File file) throws IOException {
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			final long size = channel.size();
+			final Hasher hasher = HASH.newHasher();
+			for (long position = 0; position < size; position += CHUNK_SIZE)
+				ContentReader.putBytes(hasher, channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(CHUNK_SIZE, size - position)), scratch.get());
+			bytesRead.addAndGet(size);
+			return hasher.putLong(size).hash();
+		} finally {
+			channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import java.io.File;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The duplicate files found in a tree by
+ * {@link MoreFiles#findDuplicates(File, AttributeFileFilter, int)}, and
+ * statistics on how much work it took to find them.
+ * <p>
+ * Files are compared in three stages, each only looking at the files the
+ * previous stage could not tell apart: their sizes, a hash of their first
+ * {@value DuplicateFinder#PREFIX_SIZE} bytes, and a hash of their whole
+ * contents.
+ *
+ * @author Zhenya Leonov
+ */
+public final class DuplicateReport {
+
+	private final ImmutableList<ImmutableList<File>> groups;
+	private final long redundantBytes;
+	private final long files;
+	private final long prefixHashed;
+	private final long fullyHashed;
+	private final long bytesRead;
+	private final long failures;
+	private final long elapsedNanos;
+
+	DuplicateReport(final ImmutableList<ImmutableList<File>> groups, final long redundantBytes, final long files,
+			final long prefixHashed, final long fullyHashed, final long bytesRead, final long failures, final long elapsedNanos) {
+		this.groups = groups;
+		this.redundantBytes = redundantBytes;
+		this.files = files;
+		this.prefixHashed = prefixHashed;
+		this.fullyHashed = fullyHashed;
+		this.bytesRead = bytesRead;
+		this.failures = failures;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * Returns the groups of identical files, largest files first. Each group
+	 * holds at least two files, sorted by path.
+	 *
+	 * @return an immutable list of groups of identical files
+	 */
+	public List<List<File>> groups() {
+		return ImmutableList.<List<File>> copyOf(groups);
+	}
+
+	/**
+	 * Returns the number of bytes which would be freed by keeping a single
+	 * file of each group.
+	 *
+	 * @return the number of bytes taken by redundant copies
+	 */
+	public long redundantBytes() {
+		return redundantBytes;
+	}
+
+	/**
+	 * Returns the number of non-empty regular files compared.
+	 *
+	 * @return the number of files compared
+	 */
+	public long files() {
+		return files;
+	}
+
+	/**
+	 * Returns the number of files whose size was shared with another file,
+	 * and whose prefix was therefore hashed.
+	 *
+	 * @return the number of files whose prefix was hashed
+	 */
+	public long prefixHashed() {
+		return prefixHashed;
+	}
+
+	/**
+	 * Returns the number of files larger than the prefix whose prefix hash
+	 * was shared with another file, and which were therefore hashed whole.
+	 *
+	 * @return the number of files hashed whole
+	 */
+	public long fullyHashed() {
+		return fullyHashed;
+	}
+
+	/**
+	 * Returns the number of bytes read from all files.
+	 *
+	 * @return the number of bytes read
+	 */
+	public long bytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Returns the number of files which could not be read, and were left out.
+	 *
+	 * @return the number of files which could not be read
+	 */
+	public long failures() {
+		return failures;
+	}
+
+	/**
+	 * Returns the time taken to walk the tree and compare the files, in
+	 * nanoseconds.
+	 *
+	 * @return the time taken in nanoseconds
+	 */
+	public long elapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Returns the number of files compared per second.
+	 *
+	 * @return the number of files compared per second
+	 */
+	public double filesPerSecond() {
+		return elapsedNanos == 0 ? 0 : files * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * Returns the number of bytes read per second.
+	 *
+	 * @return the number of bytes read per second
+	 */
+	public double bytesPerSecond() {
+		return elapsedNanos == 0 ? 0 : bytesRead * 1e9 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d groups of duplicates among %d files (%d prefix hashed, %d fully hashed, "
+				+ "%d failed); read %d bytes in %.3f s (%.0f files/s, %.1f MB/s)", groups.size(), files,
+				prefixHashed, fullyHashed, failures, bytesRead, elapsedNanos / 1e9, filesPerSecond(),
+				bytesPerSecond() / (1 << 20));
+	}
+
+}
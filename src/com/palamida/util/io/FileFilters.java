@@ -22,6 +22,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FilenameFilter;
+import java.util.Collection;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Static utility methods pertaining to {@link FileFilter}s.
@@ -114,7 +117,7 @@ final public class FileFilters {
 	 *            the second filter
 	 * @param rest
 	 *            the rest specified file filters
-	 * @return a file filter that evaluates to {@code true} if all of the
+	 * @return a file filter that evaluates to {@code true} if any of the
 	 *         specified file filters evaluate to {@code true}
 	 */
 	public static FileFilter or(final FileFilter first, final FileFilter second, final FileFilter... rest) {
@@ -128,7 +131,7 @@ final public class FileFilters {
 				if (first.accept(path) || second.accept(path))
 					return true;
 				for (final FileFilter filter : rest) {
-					if (!filter.accept(path))
+					if (filter.accept(path))
 						return true;
 				}
 				return false;
@@ -185,4 +188,74 @@ final public class FileFilters {
 			}
 		};
 	}
+
+	/**
+	 * Returns a file filter which accepts files whose name matches any of the
+	 * specified glob patterns.
+	 * <p>
+	 * In a pattern {@code *} matches any sequence of characters, {@code ?}
+	 * any single character, {@code [...]} any character of a set, such as
+	 * {@code [a-z]}, and {@code [!...]} any character not in the set.
+	 * {@code {a,b,...}} matches any of the comma-separated alternatives, and a
+	 * backslash escapes the character following it.
+	 * <p>
+	 * The patterns are compiled together, so that each name is matched in a
+	 * single pass whatever the number of patterns: names and extensions
+	 * (patterns such as {@code *.java}) are looked up in hash sets, and all
+	 * other patterns are matched by one automaton. This is much faster than
+	 * combining a filter per pattern with {@link #or(FileFilter, FileFilter, FileFilter...)}.
+	 * The returned filter is <i>thread-safe</i>.
+	 * 
+	 * @param globs
+	 *            the glob patterns
+	 * @return a file filter which accepts files whose name matches any of the
+	 *         specified glob patterns
+	 * @throws IllegalArgumentException
+	 *             if a pattern is malformed
+	 */
+	public static FileFilter globs(final Collection<String> globs) {
+		checkNotNull(globs);
+		for (final String glob : globs)
+			checkNotNull(glob);
+		return new GlobFilter(globs);
+	}
+
+	/**
+	 * Returns a file filter which accepts files whose whole name matches any of
+	 * the specified regular expressions.
+	 * <p>
+	 * The expressions are compiled together into a single pattern, so that
+	 * each name is matched by a single matcher. Since their groups are
+	 * renumbered, the expressions cannot contain numbered back-references.
+	 * Prefer {@link #globs(Collection)} for patterns that can be written as
+	 * globs. The returned filter is <i>thread-safe</i>.
+	 * 
+	 * @param regexes
+	 *            the regular expressions
+	 * @return a file filter which accepts files whose name matches any of the
+	 *         specified regular expressions
+	 * @throws PatternSyntaxException
+	 *             if an expression is malformed
+	 */
+	public static FileFilter regexes(final Collection<String> regexes) {
+		checkNotNull(regexes);
+		final StringBuilder sb = new StringBuilder();
+		for (final String regex : regexes) {
+			Pattern.compile(checkNotNull(regex));
+			if (sb.length() > 0)
+				sb.append('|');
+			sb.append("(?:").append(regex).append(')');
+		}
+		if (sb.length() == 0)
+			return FALSE;
+		final Pattern pattern = Pattern.compile(sb.toString());
+		return new FileFilter() {
+			@Override
+			public boolean accept(final File path) {
+				checkNotNull(path);
+				return pattern.matcher(path.getName()).matches();
+			}
+		};
+	}
+
 }
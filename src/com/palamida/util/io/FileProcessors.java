@@ -16,6 +16,8 @@
 
 package com.palamida.util.io;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.io.File;
 import java.io.IOException;
 
@@ -83,4 +85,41 @@ final public class FileProcessors {
 		return (FileProcessor<R>) ALWAYS_FALSE;
 	}
 
+	/**
+	 * Returns a parallel file processor which delegates to the specified
+	 * thread-safe processor. Its {@link ParallelFileProcessor#fork()} method
+	 * returns the processor itself, and its results are always {@code null}.
+	 * 
+	 * @param processor
+	 *            the specified thread-safe processor
+	 * @return a parallel file processor which delegates to the specified
+	 *         processor
+	 */
+	public static ParallelFileProcessor<Void> shared(final FileProcessor<?> processor) {
+		checkNotNull(processor);
+		return new ParallelFileProcessor<Void>() {
+
+			@Override
+			public Void getResult() {
+				return null;
+			}
+
+			@Override
+			public boolean processFile(final File path) throws IOException {
+				return processor.processFile(path);
+			}
+
+			@Override
+			public ParallelFileProcessor<Void> fork() {
+				return this;
+			}
+
+			@Override
+			public Void combine(final Void left, final Void right) {
+				return null;
+			}
+
+		};
+	}
+
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * A lazy, depth-first iterator over the files and sub-directories of a
+ * directory which satisfy a filter, in the same order as
+ * {@link MoreFiles#walkFileTree(File, FileFilter, FileProcessor)} visits them:
+ * each directory is returned before its contents.
+ * <p>
+ * Directories are read through {@link DirectoryStream}s, one for each level
+ * of the directory being iterated, so memory does not grow with the number of
+ * files in the tree, and the first file is available as soon as the first
+ * entry is read. Every stream is closed as soon as its directory is
+ * exhausted; {@link #close()} closes the streams still open if iteration is
+ * abandoned early.
+ * <p>
+ * Sub-directories which cannot be read are skipped, as they are by
+ * {@link File#listFiles()}. An error reading a directory which has been opened
+ * is thrown as an {@link UncheckedIOException}. This iterator does not support
+ * {@code remove()}.
+ *
+ * @author Zhenya Leonov
+ * @see MoreFiles#iterateFileTree(File, FileFilter)
+ */
+public final class FileTreeIterator extends AbstractIterator<File> implements Closeable {
+
+	private final FileFilter filter;
+	private final Deque<DirectoryStream<Path>> streams = new ArrayDeque<DirectoryStream<Path>>();
+	private final Deque<Iterator<Path>> iterators = new ArrayDeque<Iterator<Path>>();
+
+	FileTreeIterator(final File path, final FileFilter filter) throws IOException {
+		this.filter = filter;
+		push(Files.newDirectoryStream(path.toPath()));
+	}
+
+	@Override
+	protected File computeNext() {
+		while (!iterators.isEmpty()) {
+			final Path path;
+			try {
+				final Iterator<Path> iterator = iterators.peek();
+				if (!iterator.hasNext()) {
+					pop();
+					continue;
+				}
+				path = iterator.next();
+			} catch (DirectoryIteratorException e) {
+				closeQuietly();
+				throw new UncheckedIOException(e.getCause());
+			} catch (IOException e) {
+				closeQuietly();
+				throw new UncheckedIOException(e);
+			}
+			if (Files.isDirectory(path))
+				try {
+					push(Files.newDirectoryStream(path));
+				} catch (IOException e) {
+					// skipped, as by File.listFiles()
+				}
+			final File file = path.toFile();
+			if (filter.accept(file))
+				return file;
+		}
+		return endOfData();
+	}
+
+	private void push(final DirectoryStream<Path> stream) {
+		streams.push(stream);
+		iterators.push(stream.iterator());
+	}
+
+	private void pop() throws IOException {
+		iterators.pop();
+		streams.pop().close();
+	}
+
+	/**
+	 * Closes every directory stream still open. Once closed, this iterator
+	 * reads no more entries, and returns at most the element already fetched
+	 * by {@link #hasNext()}.
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+		while (!streams.isEmpty())
+			try {
+				pop();
+			} catch (IOException e) {
+				if (failure == null)
+					failure = e;
+				else
+					failure.addSuppressed(e);
+			}
+		if (failure != null)
+			throw failure;
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+		}
+	}
+
+}
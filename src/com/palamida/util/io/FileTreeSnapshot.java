@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An immutable index of the files in a tree, recording the size, modification
+ * time, and optionally a content hash of each file, and the modification time
+ * of each directory. A snapshot taken by one walk lets the next walk (see
+ * {@link MoreFiles#walkFileTree(File, FileTreeSnapshot, IgnoreRules, FileProcessor, FileProcessor)}
+ * ) process only the files which were added or modified since.
+ * <p>
+ * Snapshots are stored in a compact binary format: entries are sorted by
+ * path, and each path is stored as the length of the prefix it shares with
+ * the previous path followed by the rest of it, so that a tree of a million
+ * files takes a few tens of bytes per file.
+ * <p>
+ * Paths are relative to the root of the tree and separated by {@code '/'}.
+ * The root itself is recorded as the empty path.
+ * <p>
+ * A snapshot also records the {@link IgnoreRules} of the walk which took it,
+ * since the files those rules excluded are missing from it: a walk under
+ * different rules lists every directory again.
+ *
+ * @author Zhenya Leonov
+ */
+final public class FileTreeSnapshot {
+
+	private static final int MAGIC = 0x46545331;
+	private static final int VERSION = 2;
+
+	static final class Entry {
+		final boolean directory;
+		final long size;
+		final long modified;
+		final long hash;
+
+		Entry(final boolean directory, final long size, final long modified, final long hash) {
+			this.directory = directory;
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+	}
+
+	private final boolean hashed;
+	private final Long rules;
+	private final SortedMap<String, Entry> entries;
+	private Map<String, List<String>> children = null;
+
+	private FileTreeSnapshot(final boolean hashed, final Long rules, final SortedMap<String, Entry> entries) {
+		this.hashed = hashed;
+		this.rules = rules;
+		this.entries = entries;
+	}
+
+	/**
+	 * Returns an empty snapshot, against which every file is new.
+	 *
+	 * @param hashed
+	 *            whether snapshots taken by walks started from this snapshot
+	 *            record content hashes; files whose modification time changed
+	 *            but whose contents did not are then not reported as modified
+	 * @return an empty snapshot
+	 */
+	public static FileTreeSnapshot empty(final boolean hashed) {
+		return new FileTreeSnapshot(hashed, null, new TreeMap<String, Entry>());
+	}
+
+	/**
+	 * Reads a snapshot written by {@link #write(File)}.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the snapshot read
+	 * @throws IOException
+	 *             if the file cannot be read or is not a snapshot
+	 */
+	public static FileTreeSnapshot read(final File file) throws IOException {
+		checkNotNull(file);
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("not a snapshot: " + file);
+			final int version = in.readUnsignedByte();
+			if (version != 1 && version != VERSION)
+				throw new IOException("unsupported snapshot version " + version);
+			final boolean hashed = in.readBoolean();
+			// version 1 did not record the rules
+			final Long rules = version > 1 && in.readBoolean() ? in.readLong() : null;
+			final int count = readVarint(in);
+			final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+			byte[] path = new byte[256];
+			for (int i = 0; i < count; i++) {
+				final int shared = readVarint(in);
+				final int length = shared + readVarint(in);
+				if (length > path.length)
+					path = Arrays.copyOf(path, Math.max(length, path.length * 2));
+				in.readFully(path, shared, length - shared);
+				final boolean directory = in.readBoolean();
+				final long size = directory ? 0 : readVarlong(in);
+				final long modified = in.readLong();
+				final long hash = hashed && !directory ? in.readLong() : 0;
+				entries.put(new String(path, 0, length, StandardCharsets.UTF_8), new Entry(directory, size,
+						modified, hash));
+			}
+			return new FileTreeSnapshot(hashed, rules, entries);
+		} catch (EOFException e) {
+			throw new IOException("truncated snapshot: " + file, e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes this snapshot to the specified file. The snapshot is written to
+	 * a temporary file first, which then replaces the specified file, so that
+	 * an interrupted write never leaves a corrupt snapshot behind.
+	 *
+	 * @param file
+	 *            the file to write
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void write(final File file) throws IOException {
+		checkNotNull(file);
+		final File temp = new File(file.getPath() + ".tmp");
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp),
+				1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeBoolean(hashed);
+			out.writeBoolean(rules != null);
+			if (rules != null)
+				out.writeLong(rules);
+			writeVarint(out, entries.size());
+			byte[] previous = new byte[0];
+			for (final Map.Entry<String, Entry> e : entries.entrySet()) {
+				final byte[] path = e.getKey().getBytes(StandardCharsets.UTF_8);
+				int shared = 0;
+				while (shared < previous.length && shared < path.length && previous[shared] == path[shared])
+					shared++;
+				writeVarint(out, shared);
+				writeVarint(out, path.length - shared);
+				out.write(path, shared, path.length - shared);
+				final Entry entry = e.getValue();
+				out.writeBoolean(entry.directory);
+				if (!entry.directory)
+					writeVarlong(out, entry.size);
+				out.writeLong(entry.modified);
+				if (hashed && !entry.directory)
+					out.writeLong(entry.hash);
+				previous = path;
+			}
+		} finally {
+			out.close();
+		}
+		java.nio.file.Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Returns the number of files and directories in this snapshot, including
+	 * the root.
+	 *
+	 * @return the number of files and directories in this snapshot
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns {@code true} if this snapshot records content hashes.
+	 *
+	 * @return {@code true} if this snapshot records content hashes
+	 */
+	public boolean isHashed() {
+		return hashed;
+	}
+
+	/**
+	 * Returns {@code true} if this snapshot records the specified path.
+	 *
+	 * @param path
+	 *            a path relative to the root of the tree, separated by
+	 *            {@code '/'}
+	 * @return {@code true} if this snapshot records the specified path
+	 */
+	public boolean contains(final String path) {
+		checkNotNull(path);
+		return entries.containsKey(path);
+	}
+
+	static FileTreeSnapshot of(final boolean hashed, final Long rules, final SortedMap<String, Entry> entries) {
+		return new FileTreeSnapshot(hashed, rules, entries);
+	}
+
+	/*
+	 * Whether this snapshot was taken under the specified rules.
+	 */
+	boolean isTakenUnder(final IgnoreRules rules) {
+		return this.rules != null && this.rules.longValue() == rules.fingerprint();
+	}
+
+	Long rules() {
+		return rules;
+	}
+
+	Entry get(final String path) {
+		return entries.get(path);
+	}
+
+	SortedMap<String, Entry> entries() {
+		return Collections.unmodifiableSortedMap(entries);
+	}
+
+	/*
+	 * The names of the entries of a directory, computed for all directories
+	 * on first use.
+	 */
+	synchronized List<String> children(final String directory) {
+		if (children == null) {
+			children = new HashMap<String, List<String>>();
+			for (final String path : entries.keySet()) {
+				if (path.isEmpty())
+					continue;
+				final int slash = path.lastIndexOf('/');
+				final String parent = slash < 0 ? "" : path.substring(0, slash);
+				List<String> names = children.get(parent);
+				if (names == null) {
+					names = new ArrayList<String>();
+					children.put(parent, names);
+				}
+				names.add(path.substring(slash + 1));
+			}
+		}
+		final List<String> names = children.get(directory);
+		return names == null ? Collections.<String> emptyList() : names;
+	}
+
+	@Override
+	public String toString() {
+		return "FileTreeSnapshot[" + entries.size() + " entries" + (hashed ? ", hashed]" : "]");
+	}
+
+	private static void writeVarint(final DataOutput out, final int i) throws IOException {
+		writeVarlong(out, i);
+	}
+
+	private static int readVarint(final DataInput in) throws IOException {
+		final long l = readVarlong(in);
+		if (l < 0 || l > Integer.MAX_VALUE)
+			throw new IOException("malformed snapshot");
+		return (int) l;
+	}
+
+	private static void writeVarlong(final DataOutput out, long l) throws IOException {
+		while ((l & ~0x7FL) != 0) {
+			out.writeByte((int) (l & 0x7F | 0x80));
+			l >>>= 7;
+		}
+		out.writeByte((int) l);
+	}
+
+	private static long readVarlong(final DataInput in) throws IOException {
+		long l = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			final byte b = in.readByte();
+			l |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return l;
+		}
+		throw new IOException("malformed snapshot");
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A callback interface to be used when walking a file tree, which, unlike a
+ * {@link FileProcessor}, controls how the walk proceeds:
+ * <ul>
+ * <li>{@link FileVisitResult#CONTINUE CONTINUE} continues the walk</li>
+ * <li>{@link FileVisitResult#SKIP_SUBTREE SKIP_SUBTREE} does not descend into
+ * the directory just visited, which is never listed; for a file it is the
+ * same as {@code CONTINUE}</li>
+ * <li>{@link FileVisitResult#SKIP_SIBLINGS SKIP_SIBLINGS} skips the rest of
+ * the directory the file was found in, and the subtree of the file if it is a
+ * directory</li>
+ * <li>{@link FileVisitResult#TERMINATE TERMINATE} stops the whole walk</li>
+ * </ul>
+ *
+ * @param <R>
+ *            the type of result this visitor returns
+ * @author Zhenya Leonov
+ * @see MoreFiles#walkFileTree(File, IgnoreRules, FileTreeVisitor)
+ */
+public interface FileTreeVisitor<R> {
+
+	/**
+	 * Return the result of visiting all the files.
+	 */
+	public R getResult();
+
+	/**
+	 * This method will be called for each file and directory that is
+	 * encountered, directories before their contents.
+	 *
+	 * @param path
+	 *            the specified file
+	 * @param attributes
+	 *            the attributes of the specified file
+	 * @return how the walk should proceed
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public FileVisitResult visitFile(final File path, final BasicFileAttributes attributes) throws IOException;
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A file filter which matches file names against a set of glob patterns in a
+ * single pass, however many patterns there are.
+ * <p>
+ * Patterns without wildcards are looked up in a hash set of names, and
+ * patterns of the form {@code *.ext} in a hash set of extensions. All other
+ * patterns are compiled together into one nondeterministic automaton, whose
+ * deterministic states are built lazily as names are matched and cached, so
+ * that after a warm-up each character of a name costs one table lookup. The
+ * cache is bounded; once it is full, new states are computed for each name
+ * and not kept.
+ * <p>
+ * This class is <i>thread-safe</i>.
+ *
+ * @author Zhenya Leonov
+ */
+final class GlobFilter implements FileFilter {
+
+	private static final int MAX_STATES = 10000;
+
+	private final Set<String> names = new HashSet<String>();
+	private final Set<String> extensions = new HashSet<String>();
+	private final Token[] tokens;
+	private final ConcurrentMap<BitSet, State> states = new ConcurrentHashMap<BitSet, State>();
+	private final State start;
+
+	GlobFilter(final Collection<String> globs) {
+		final List<Token> tokens = new ArrayList<Token>();
+		final BitSet starts = new BitSet();
+		for (final String glob : globs)
+			for (final String expanded : expandBraces(glob)) {
+				final List<Token> parsed = parse(expanded);
+				if (isLiteral(parsed))
+					names.add(literals(parsed, 0));
+				else if (isExtension(parsed))
+					extensions.add(literals(parsed, 2));
+				else {
+					starts.set(tokens.size());
+					tokens.addAll(parsed);
+					tokens.add(null);
+				}
+			}
+		this.tokens = tokens.toArray(new Token[tokens.size()]);
+		start = intern(closure(starts));
+	}
+
+	@Override
+	public boolean accept(final File path) {
+		final String name = path.getName();
+		if (names.contains(name))
+			return true;
+		if (!extensions.isEmpty()) {
+			final int dot = name.lastIndexOf('.');
+			if (dot >= 0 && extensions.contains(name.substring(dot + 1)))
+				return true;
+		}
+		State state = start;
+		for (int i = 0; i < name.length() && !state.dead; i++)
+			state = state.next(name.charAt(i));
+		return state.accepting;
+	}
+
+	/*
+	 * A deterministic state: the set of positions the automaton can be in.
+	 * Transitions are filled in as they are first taken; racing threads
+	 * compute the same state, and states are safely published through their
+	 * final fields.
+	 */
+	private final class State {
+		private final BitSet positions;
+		private final boolean accepting;
+		private final boolean dead;
+		private final State[] ascii = new State[128];
+		private final ConcurrentMap<Character, State> other = new ConcurrentHashMap<Character, State>();
+
+		private State(final BitSet positions) {
+			this.positions = positions;
+			this.dead = positions.isEmpty();
+			boolean accepting = false;
+			for (int p = positions.nextSetBit(0); p >= 0; p = positions.nextSetBit(p + 1))
+				if (tokens[p] == null)
+					accepting = true;
+			this.accepting = accepting;
+		}
+
+		State next(final char c) {
+			State next = c < 128 ? ascii[c] : other.get(c);
+			if (next == null) {
+				next = intern(step(positions, c));
+				if (states.size() < MAX_STATES) {
+					if (c < 128)
+						ascii[c] = next;
+					else
+						other.put(c, next);
+				}
+			}
+			return next;
+		}
+	}
+
+	private State intern(final BitSet positions) {
+		State state = states.get(positions);
+		if (state == null) {
+			state = new State(positions);
+			if (states.size() < MAX_STATES) {
+				final State existing = states.putIfAbsent(positions, state);
+				if (existing != null)
+					state = existing;
+			}
+		}
+		return state;
+	}
+
+	private BitSet step(final BitSet positions, final char c) {
+		final BitSet next = new BitSet(tokens.length);
+		for (int p = positions.nextSetBit(0); p >= 0; p = positions.nextSetBit(p + 1)) {
+			final Token token = tokens[p];
+			if (token == null)
+				continue;
+			if (token == Token.STAR)
+				next.set(p);
+			else if (token.matches(c))
+				next.set(p + 1);
+		}
+		return closure(next);
+	}
+
+	/*
+	 * A star may also match nothing.
+	 */
+	private BitSet closure(final BitSet positions) {
+		for (int p = positions.nextSetBit(0); p >= 0; p = positions.nextSetBit(p + 1))
+			if (tokens[p] == Token.STAR)
+				positions.set(p + 1);
+		return positions;
+	}
+
+	private static boolean isLiteral(final List<Token> tokens) {
+		for (final Token token : tokens)
+			if (!(token instanceof Literal))
+				return false;
+		return true;
+	}
+
+	private static boolean isExtension(final List<Token> tokens) {
+		if (tokens.size() < 3 || tokens.get(0) != Token.STAR || !tokens.get(1).equals(new Literal('.')))
+			return false;
+		for (int i = 2; i < tokens.size(); i++)
+			if (!(tokens.get(i) instanceof Literal) || tokens.get(i).equals(new Literal('.')))
+				return false;
+		return true;
+	}
+
+	/*
+	 * The characters of the literal tokens from the given index on, so that
+	 * escapes and repeated stars are resolved by the parser alone.
+	 */
+	private static String literals(final List<Token> tokens, final int from) {
+		final StringBuilder sb = new StringBuilder(tokens.size() - from);
+		for (int i = from; i < tokens.size(); i++)
+			sb.append(((Literal) tokens.get(i)).c);
+		return sb.toString();
+	}
+
+	/*
+	 * Expands the first top-level {a,b,...} group, and recursively the rest.
+	 */
+	static List<String> expandBraces(final String glob) {
+		final List<String> result = new ArrayList<String>();
+		int open = -1;
+		int depth = 0;
+		final List<Integer> commas = new ArrayList<Integer>();
+		for (int i = 0; i < glob.length(); i++) {
+			final char c = glob.charAt(i);
+			if (c == '\\')
+				i++;
+			else if (c == '{') {
+				if (depth++ == 0)
+					open = i;
+			} else if (c == ',' && depth == 1)
+				commas.add(i);
+			else if (c == '}' && depth > 0 && --depth == 0) {
+				final String prefix = glob.substring(0, open);
+				final String suffix = glob.substring(i + 1);
+				int from = open + 1;
+				commas.add(i);
+				for (final int to : commas) {
+					result.addAll(expandBraces(prefix + glob.substring(from, to) + suffix));
+					from = to + 1;
+				}
+				return result;
+			}
+		}
+		checkArgument(depth == 0, "unclosed '{' in %s", glob);
+		result.add(glob);
+		return result;
+	}
+
+	static List<Token> parse(final String glob) {
+		final List<Token> tokens = new ArrayList<Token>();
+		for (int i = 0; i < glob.length(); i++) {
+			final char c = glob.charAt(i);
+			switch (c) {
+			case '*':
+				if (tokens.isEmpty() || tokens.get(tokens.size() - 1) != Token.STAR)
+					tokens.add(Token.STAR);
+				break;
+			case '?':
+				tokens.add(Token.ANY);
+				break;
+			case '[':
+				final int close = glob.indexOf(']', i + 2);
+				checkArgument(close > 0, "unclosed '[' in %s", glob);
+				tokens.add(CharClass.parse(glob.substring(i + 1, close)));
+				i = close;
+				break;
+			case '\\':
+				checkArgument(i + 1 < glob.length(), "trailing '\\' in %s", glob);
+				tokens.add(new Literal(glob.charAt(++i)));
+				break;
+			default:
+				tokens.add(new Literal(c));
+			}
+		}
+		return tokens;
+	}
+
+	static abstract class Token {
+		static final Token STAR = new Token() {
+			@Override
+			boolean matches(final char c) {
+				return true;
+			}
+		};
+
+		static final Token ANY = new Token() {
+			@Override
+			boolean matches(final char c) {
+				return true;
+			}
+		};
+
+		abstract boolean matches(char c);
+	}
+
+	private static final class Literal extends Token {
+		private final char c;
+
+		private Literal(final char c) {
+			this.c = c;
+		}
+
+		@Override
+		boolean matches(final char c) {
+			return this.c == c;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return o instanceof Literal && ((Literal) o).c == c;
+		}
+
+		@Override
+		public int hashCode() {
+			return c;
+		}
+	}
+
+	private static final class CharClass extends Token {
+		private final char[] ranges;
+		private final boolean negated;
+
+		private CharClass(final char[] ranges, final boolean negated) {
+			this.ranges = ranges;
+			this.negated = negated;
+		}
+
+		static CharClass parse(final String set) {
+			final boolean negated = set.startsWith("!") || set.startsWith("^");
+			final StringBuilder ranges = new StringBuilder();
+			for (int i = negated ? 1 : 0; i < set.length(); i++) {
+				char lo = set.charAt(i);
+				if (lo == '\\' && i + 1 < set.length())
+					lo = set.charAt(++i);
+				char hi = lo;
+				if (i + 2 < set.length() && set.charAt(i + 1) == '-') {
+					hi = set.charAt(i + 2);
+					i += 2;
+				}
+				ranges.append(lo).append(hi);
+			}
+			return new CharClass(ranges.toString().toCharArray(), negated);
+		}
+
+		@Override
+		boolean matches(final char c) {
+			for (int i = 0; i < ranges.length; i += 2)
+				if (c >= ranges[i] && c <= ranges[i + 1])
+					return !negated;
+			return negated;
+		}
+	}
+
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * A set of exclusion rules in the format of a {@code .gitignore} file, used to
+ * prune a file tree while it is walked (see
+ * {@link MoreFiles#walkFileTree(File, IgnoreRules, FileTreeVisitor)}).
+ * <p>
+ * Each line holds one pattern, matched against paths relative to the root of
+ * the walk, separated by {@code '/'}:
+ * <ul>
+ * <li>Blank lines, and lines starting with {@code #}, are ignored.</li>
+ * <li>A pattern starting with {@code !} re-includes what an earlier pattern
+ * excluded. The last pattern which matches a path decides.</li>
+ * <li>A pattern ending with {@code /} only matches directories.</li>
+ * <li>A pattern without any other {@code /} matches a file or directory of
+ * that name at any depth, for example {@code node_modules} or {@code *.class}.
+ * Otherwise it is matched against the whole relative path, for example
+ * {@code /build} or {@code docs/*.html}.</li>
+ * <li>{@code *} matches anything but {@code /}, {@code ?} any character but
+ * {@code /}, and {@code [...]} a character class. A leading {@code **}
+ * {@code /} matches in any directory, a trailing {@code /}{@code **}
+ * everything inside a directory, and {@code /}{@code **}{@code /} zero or more
+ * directories.</li>
+ * <li>A backslash escapes the character following it.</li>
+ * </ul>
+ * As with git, a file inside an excluded directory cannot be re-included,
+ * since the directory is never listed.
+ * <p>
+ * Instances of this class are immutable and <i>thread-safe</i>.
+ *
+ * @author Zhenya Leonov
+ */
+final public class IgnoreRules {
+
+	/**
+	 * Rules which ignore nothing.
+	 */
+	public static final IgnoreRules NONE = new IgnoreRules(new Rule[0]);
+
+	private static final class Rule {
+		private final String source;
+		private final Pattern pattern;
+		private final boolean negated;
+		private final boolean directoryOnly;
+		private final boolean anchored;
+
+		private Rule(final String source, final Pattern pattern, final boolean negated,
+				final boolean directoryOnly, final boolean anchored) {
+			this.source = source;
+			this.pattern = pattern;
+			this.negated = negated;
+			this.directoryOnly = directoryOnly;
+			this.anchored = anchored;
+		}
+	}
+
+	private final Rule[] rules;
+
+	private IgnoreRules(final Rule[] rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * Returns the rules defined by the specified patterns, one pattern per
+	 * {@code .gitignore} line.
+	 *
+	 * @param patterns
+	 *            the specified patterns
+	 * @return the rules defined by the specified patterns
+	 * @throws IllegalArgumentException
+	 *             if a pattern is malformed
+	 */
+	public static IgnoreRules of(final String... patterns) {
+		checkNotNull(patterns);
+		return parse(Arrays.asList(patterns));
+	}
+
+	/**
+	 * Returns the rules defined by the specified lines of a {@code .gitignore}
+	 * file.
+	 *
+	 * @param lines
+	 *            the specified lines
+	 * @return the rules defined by the specified lines
+	 * @throws IllegalArgumentException
+	 *             if a pattern is malformed
+	 */
+	public static IgnoreRules parse(final Iterable<String> lines) {
+		checkNotNull(lines);
+		final List<Rule> rules = new ArrayList<Rule>();
+		for (final String line : lines) {
+			final Rule rule = parse(checkNotNull(line));
+			if (rule != null)
+				rules.add(rule);
+		}
+		return new IgnoreRules(rules.toArray(new Rule[rules.size()]));
+	}
+
+	/**
+	 * Reads the rules defined in the specified {@code .gitignore} file.
+	 *
+	 * @param file
+	 *            the specified file
+	 * @param charset
+	 *            the character set of the file
+	 * @return the rules defined in the specified file
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static IgnoreRules read(final File file, final Charset charset) throws IOException {
+		checkNotNull(file);
+		checkNotNull(charset);
+		return parse(Files.readLines(file, charset));
+	}
+
+	/**
+	 * Returns {@code true} if the specified path is excluded by these rules,
+	 * either itself or because one of its parent directories is.
+	 *
+	 * @param path
+	 *            a path relative to the root of the walk, separated by
+	 *            {@code '/'}
+	 * @param directory
+	 *            whether the path is a directory
+	 * @return {@code true} if the specified path is excluded by these rules
+	 */
+	public boolean isIgnored(final String path, final boolean directory) {
+		checkNotNull(path);
+		for (int i = path.indexOf('/'); i > 0; i = path.indexOf('/', i + 1))
+			if (matches(path.substring(0, i), true))
+				return true;
+		return matches(path, directory);
+	}
+
+	/*
+	 * Matches the path itself, assuming its parents are not excluded. Rules
+	 * are tried last to first, since the last match decides.
+	 */
+	boolean matches(final String path, final boolean directory) {
+		final String name = path.substring(path.lastIndexOf('/') + 1);
+		for (int i = rules.length - 1; i >= 0; i--) {
+			final Rule rule = rules[i];
+			if (rule.directoryOnly && !directory)
+				continue;
+			if (rule.pattern.matcher(rule.anchored ? path : name).matches())
+				return !rule.negated;
+		}
+		return false;
+	}
+
+	boolean isEmpty() {
+		return rules.length == 0;
+	}
+
+	/*
+	 * Identifies what these rules match, so that a snapshot can tell whether
+	 * it was taken under the same rules.
+	 */
+	long fingerprint() {
+		final Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (final Rule rule : rules)
+			hasher.putInt(rule.pattern.pattern().length())
+					.putString(rule.pattern.pattern(), StandardCharsets.UTF_8).putBoolean(rule.negated)
+					.putBoolean(rule.directoryOnly).putBoolean(rule.anchored);
+		return hasher.hash().asLong();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < rules.length; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append(rules[i].source);
+		}
+		return sb.append(']').toString();
+	}
+
+	private static Rule parse(final String line) {
+		if (line.isEmpty() || line.charAt(0) == '#')
+			return null;
+		String glob = line;
+		while (glob.endsWith(" ") && !glob.endsWith("\\ "))
+			glob = glob.substring(0, glob.length() - 1);
+		final boolean negated = glob.startsWith("!");
+		if (negated || glob.startsWith("\\!") || glob.startsWith("\\#"))
+			glob = glob.substring(1);
+		final boolean directoryOnly = glob.endsWith("/");
+		while (glob.endsWith("/"))
+			glob = glob.substring(0, glob.length() - 1);
+		if (glob.isEmpty())
+			return null;
+		final boolean anchored = glob.indexOf('/') >= 0;
+		if (glob.startsWith("/"))
+			glob = glob.substring(1);
+		return new Rule(line.trim(), Pattern.compile(toRegex(glob)), negated, directoryOnly, anchored);
+	}
+
+	private static String toRegex(final String glob) {
+		final StringBuilder sb = new StringBuilder();
+		final int n = glob.length();
+		for (int i = 0; i < n; i++) {
+			final char c = glob.charAt(i);
+			switch (c) {
+			case '*':
+				final boolean doubleStar = i + 1 < n && glob.charAt(i + 1) == '*'
+						&& (i == 0 || glob.charAt(i - 1) == '/');
+				if (doubleStar && i + 2 == n) {
+					sb.append(".*");
+					i++;
+				} else if (doubleStar && glob.charAt(i + 2) == '/') {
+					sb.append("(?:.*/)?");
+					i += 2;
+				} else {
+					sb.append("[^/]*");
+					while (i + 1 < n && glob.charAt(i + 1) == '*')
+						i++;
+				}
+				break;
+			case '?':
+				sb.append("[^/]");
+				break;
+			case '[':
+				final int close = glob.indexOf(']', i + 2);
+				if (close < 0) {
+					sb.append("\\[");
+					break;
+				}
+				String set = glob.substring(i + 1, close).replace("\\", "\\\\").replace("[", "\\[");
+				if (set.startsWith("!"))
+					set = "^" + set.substring(1);
+				else if (set.startsWith("^"))
+					set = "\\" + set;
+				sb.append('[').append(set).append(']');
+				i = close;
+				break;
+			case '\\':
+				if (i + 1 < n)
+					appendLiteral(sb, glob.charAt(++i));
+				break;
+			default:
+				appendLiteral(sb, c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void appendLiteral(final StringBuilder sb, final char c) {
+		if (!Character.isLetterOrDigit(c) && c < 128)
+			sb.append('\\');
+		sb.append(c);
+	}
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.palamida.util.io.FileTreeSnapshot.Entry;
+
+/**
+ * Walks a file tree against a {@link FileTreeSnapshot}, processing the files
+ * added or modified since, and builds a new snapshot.
+ * <p>
+ * A directory whose modification time has not changed has the same entries
+ * as before, so it is not listed again: its entries are taken from the
+ * snapshot, and only their attributes are read. Files are still checked one
+ * by one, since modifying a file does not change the modification time of its
+ * directory. If the snapshot was taken under different {@link IgnoreRules},
+ * it may lack files the current rules include, so every directory is listed.
+ * <p>
+ * If the processor stops the walk, the new snapshot records the files
+ * processed so far and keeps the previous entries of everything else, so
+ * that the files not yet processed are reported again by the next walk. It
+ * also keeps the rules of the previous snapshot, since directories not yet
+ * listed under the current rules still have the entries of the previous ones.
+ * Similarly, if the walk is stopped while removals are reported, the new
+ * snapshot keeps the previous entries of the removals not reported yet, and
+ * the previous rules.
+ *
+ * @author Zhenya Leonov
+ */
+final class IncrementalWalker {
+
+	private static final HashFunction HASH = Hashing.murmur3_128();
+
+	private final FileTreeSnapshot previous;
+	private final IgnoreRules rules;
+	private final FileProcessor<?> changed;
+	private final ContentReader reader;
+	private final byte[] scratch;
+	private final boolean sameRules;
+	private final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+	private boolean stopped = false;
+
+	private IncrementalWalker(final FileTreeSnapshot previous, final IgnoreRules rules,
+			final FileProcessor<?> changed) {
+		this.previous = previous;
+		this.rules = rules;
+		this.changed = changed;
+		this.reader = previous.isHashed() ? new ContentReader() : null;
+		this.scratch = previous.isHashed() ? new byte[ContentReader.SCRATCH_SIZE] : null;
+		this.sameRules = previous.isTakenUnder(rules);
+	}
+
+	static FileTreeSnapshot walk(final File root, final FileTreeSnapshot previous, final IgnoreRules rules,
+			final FileProcessor<?> changed, final FileProcessor<?> removed) throws IOException {
+		final IncrementalWalker walker = new IncrementalWalker(previous, rules, changed);
+		final BasicFileAttributes attributes = Files.readAttributes(root.toPath(), BasicFileAttributes.class);
+		final long modified = modified(attributes);
+		final Entry old = previous.get("");
+		walker.entries.put("", new Entry(true, 0, modified, 0));
+		walker.walk("", root, walker.unchanged(old, modified));
+
+		if (walker.stopped) {
+			final SortedMap<String, Entry> entries = new TreeMap<String, Entry>(previous.entries());
+			for (final Map.Entry<String, Entry> e : walker.entries.entrySet())
+				if (!e.getValue().directory)
+					entries.put(e.getKey(), e.getValue());
+			return FileTreeSnapshot.of(previous.isHashed(), previous.rules(), entries);
+		}
+		final Iterator<String> paths = previous.entries().keySet().iterator();
+		while (paths.hasNext()) {
+			final String path = paths.next();
+			if (!walker.entries.containsKey(path)
+					&& !removed.processFile(new File(root, path.replace('/', File.separatorChar)))) {
+				while (paths.hasNext()) {
+					final String unreported = paths.next();
+					if (!walker.entries.containsKey(unreported))
+						walker.entries.put(unreported, previous.get(unreported));
+				}
+				return FileTreeSnapshot.of(previous.isHashed(), previous.rules(), walker.entries);
+			}
+		}
+		return FileTreeSnapshot.of(previous.isHashed(), rules.fingerprint(), walker.entries);
+	}
+
+	private void walk(final String directory, final File path, final boolean unchanged) throws IOException {
+		final Iterable<String> names;
+		if (unchanged)
+			names = previous.children(directory);
+		else {
+			final String[] list = path.list();
+			if (list == null)
+				return;
+			names = Arrays.asList(list);
+		}
+		for (final String name : names) {
+			if (stopped)
+				return;
+			final String relative = directory.isEmpty() ? name : directory + '/' + name;
+			final File file = new File(path, name);
+			final BasicFileAttributes attributes;
+			try {
+				attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			} catch (IOException e) {
+				continue; // removed since listed, or unreadable
+			}
+			if (!rules.isEmpty() && rules.matches(relative, attributes.isDirectory()))
+				continue;
+			final Entry old = previous.get(relative);
+			final long modified = modified(attributes);
+			if (attributes.isDirectory()) {
+				entries.put(relative, new Entry(true, 0, modified, 0));
+				walk(relative, file, unchanged(old, modified));
+			} else if (attributes.isRegularFile())
+				visit(relative, file, attributes.size(), modified, old);
+		}
+	}
+
+	private void visit(final String relative, final File file, final long size, final long modified,
+			final Entry old) throws IOException {
+		final boolean same = old != null && !old.directory && old.size == size;
+		boolean modifiedSince = !same || old.modified != modified;
+		long hash = 0;
+		if (reader != null) {
+			if (modifiedSince) {
+				hash = hash(file.toPath(), size);
+				modifiedSince = !same || old.hash != hash;
+			} else
+				hash = old.hash;
+		}
+		entries.put(relative, new Entry(false, size, modified, hash));
+		if (modifiedSince && !changed.processFile(file))
+			stopped = true;
+	}
+
+	/*
+	 * Hashes the whole file, window by window if it is too large to map at
+	 * once, followed by its length.
+	 */
+	private long hash(final Path path, final long size) throws IOException {
+		final Hasher hasher = HASH.newHasher();
+		long position = 0;
+		int n;
+		do {
+			final ByteBuffer content = reader.read(path, size, position);
+			n = content.remaining();
+			position += n;
+			ContentReader.putBytes(hasher, content, scratch);
+		} while (n > 0 && position < size);
+		return hasher.putLong(position).hash().asLong();
+	}
+
+	/*
+	 * Whether a directory has the same entries as in the previous snapshot.
+	 */
+	private boolean unchanged(final Entry old, final long modified) {
+		return sameRules && old != null && old.directory && old.modified == modified;
+	}
+
+	private static long modified(final BasicFileAttributes attributes) {
+		return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+	}
+
+}
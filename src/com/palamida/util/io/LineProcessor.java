@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * A callback interface to be used when processing the lines of a
+ * {@link LineSource}.
+ * <p>
+ * {@link #processLine(CharBuffer)} will be called for each line that is
+ * encountered, and should return {@code false} when you want to stop
+ * processing.
+ * <p>
+ * Lines are passed in a buffer which is reused for the next line, and so is
+ * only valid during the call. A processor which needs a line afterwards must
+ * copy it, for example with {@code line.toString()}.
+ *
+ * @param <R>
+ *            the type of result this processor returns
+ * @author Zhenya Leonov
+ * @see LineSource#readLines(LineProcessor)
+ */
+public interface LineProcessor<R> {
+
+	/**
+	 * Return the result of processing all the lines.
+	 */
+	public R getResult();
+
+	/**
+	 * This method will be called for each line that is encountered.
+	 *
+	 * @param line
+	 *            a buffer holding the line, without its line-termination
+	 *            characters, from its position to its limit, valid only during
+	 *            this call
+	 * @return {@code true} to continue processing, {@code false} to stop
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public boolean processLine(final CharBuffer line) throws IOException;
+
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The lines of a range of bytes of a file, read through memory mappings.
+ * <p>
+ * The file is mapped in windows of {@link #WINDOW_SIZE} bytes, each starting
+ * at the beginning of a line, and line boundaries are found on the raw bytes,
+ * eight at a time. Each line is decoded only when it is reached, into a
+ * {@code CharBuffer} which is reused for the next line, so reading a file
+ * allocates nothing per line. Lines made only of ASCII bytes are copied to
+ * the buffer directly when the charset is UTF-8, US-ASCII or ISO-8859-1.
+ * <p>
+ * A source can be {@linkplain #split(int) split} at line boundaries into
+ * segments which are read independently, and
+ * {@link #readLines(ParallelLineProcessor, int)} reads the segments
+ * concurrently.
+ * <p>
+ * Lines are terminated by {@code "\n"}, {@code "\r\n"} or {@code "\r"}, as
+ * they are by {@link java.io.BufferedReader#readLine()}. Since boundaries are
+ * found on bytes, the charset must encode these characters as the single
+ * bytes {@code 0x0A} and {@code 0x0D} and never use them otherwise, as UTF-8,
+ * the ISO-8859 charsets, and most other ASCII-compatible charsets do; UTF-16
+ * and UTF-32 are not supported. Malformed input is replaced. Lines longer
+ * than {@code Integer.MAX_VALUE} bytes cannot be read.
+ * <p>
+ * A source holds its file open until {@linkplain #close() closed}. Sources
+ * returned by {@link #split(int)} share the file of the source they were split
+ * from and need not be closed. Reading is <i>thread-safe</i>, as long as the
+ * source is not closed meanwhile.
+ *
+ * @author Zhenya Leonov
+ */
+final public class LineSource implements Closeable {
+
+	static final int WINDOW_SIZE = 64 << 20;
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+	private static final long LFS = 0x0A0A0A0A0A0A0A0AL;
+	private static final long CRS = 0x0D0D0D0D0D0D0D0DL;
+
+	private final File file;
+	private final FileChannel channel;
+	private final Charset charset;
+	private final long start;
+	private final long end;
+	private final boolean owner;
+
+	private LineSource(final File file, final FileChannel channel, final Charset charset, final long start,
+			final long end, final boolean owner) {
+		this.file = file;
+		this.channel = channel;
+		this.charset = charset;
+		this.start = start;
+		this.end = end;
+		this.owner = owner;
+	}
+
+	/**
+	 * Opens a source of the lines of the specified file.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @param charset
+	 *            the character set to use when decoding the lines
+	 * @return a source of the lines of the specified file
+	 * @throws IllegalArgumentException
+	 *             if the charset does not encode line-termination characters
+	 *             as single bytes
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public static LineSource open(final File file, final Charset charset) throws IOException {
+		checkNotNull(file);
+		checkNotNull(charset);
+		checkArgument(Arrays.equals("\n".getBytes(charset), new byte[] { '\n' })
+				&& Arrays.equals("\r".getBytes(charset), new byte[] { '\r' }), "unsupported charset %s", charset);
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			return new LineSource(file, channel, charset, 0, channel.size(), true);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes in this source.
+	 *
+	 * @return the number of bytes in this source
+	 */
+	public long size() {
+		return end - start;
+	}
+
+	/**
+	 * Splits this source at line boundaries into at most the specified number
+	 * of non-empty segments of roughly equal size, in the order they appear
+	 * in the file. A line longer than a segment makes for fewer segments.
+	 *
+	 * @param parts
+	 *            the maximum number of segments
+	 * @return the segments of this source
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public List<LineSource> split(final int parts) throws IOException {
+		checkArgument(parts > 0, "parts < 1");
+		final List<LineSource> segments = new ArrayList<LineSource>(parts);
+		final ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long from = start;
+		for (int i = 1; i < parts && from < end; i++) {
+			long boundary = Math.max(from, start + size() / parts * i) - 1;
+			// the segment ends after the first '\n' at or after the boundary
+			boundary = nextLineFeed(Math.max(boundary, from), buffer);
+			if (boundary >= end)
+				break;
+			segments.add(new LineSource(file, channel, charset, from, boundary + 1, false));
+			from = boundary + 1;
+		}
+		if (from < end)
+			segments.add(new LineSource(file, channel, charset, from, end, false));
+		return segments;
+	}
+
+	private long nextLineFeed(long position, final ByteBuffer buffer) throws IOException {
+		while (position < end) {
+			buffer.clear();
+			if (buffer.remaining() > end - position)
+				buffer.limit((int) (end - position));
+			final int n = channel.read(buffer, position);
+			if (n <= 0)
+				return end;
+			for (int i = 0; i < n; i++)
+				if (buffer.get(i) == '\n')
+					return position + i;
+			position += n;
+		}
+		return end;
+	}
+
+	/**
+	 * Reads the lines of this source in order, passing each one to the
+	 * specified processor until it returns {@code false}.
+	 *
+	 * @param processor
+	 *            the {@code LineProcessor} used to process the lines
+	 * @return the result of the processor
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public <R> R readLines(final LineProcessor<R> processor) throws IOException {
+		checkNotNull(processor);
+		new Cursor(null).read(processor);
+		return processor.getResult();
+	}
+
+	/**
+	 * Reads the lines of this source concurrently from at most
+	 * {@code parallelism} threads. The source is split into a few segments
+	 * per thread, each processed by a processor of its own (see
+	 * {@link ParallelLineProcessor}), and the results are combined in the
+	 * order the segments appear in the file.
+	 * <p>
+	 * A processor returning {@code false} stops the whole read, as does the
+	 * first exception thrown by a processor, which is then rethrown. In either
+	 * case this method returns only when no line is being processed any
+	 * longer.
+	 *
+	 * @param processor
+	 *            the {@code ParallelLineProcessor} used to process the first
+	 *            segment, and to fork the processors of the others
+	 * @param parallelism
+	 *            the maximum number of threads
+	 * @return the combined result of the processors
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public <R> R readLines(final ParallelLineProcessor<R> processor, final int parallelism) throws IOException {
+		checkNotNull(processor);
+		checkArgument(parallelism > 0, "parallelism < 1");
+		final List<LineSource> segments = split(parallelism == 1 ? 1 : parallelism * 4);
+		if (segments.size() <= 1)
+			return readLines((LineProcessor<R>) processor);
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, segments.size()));
+		final List<Future<R>> futures = new ArrayList<Future<R>>(segments.size());
+		try {
+			for (int i = 0; i < segments.size(); i++) {
+				final LineSource segment = segments.get(i);
+				final ParallelLineProcessor<R> p = i == 0 ? processor : processor.fork();
+				futures.add(executor.submit(new Callable<R>() {
+					@Override
+					public R call() throws IOException {
+						try {
+							segment.new Cursor(cancelled).read(p);
+						} catch (IOException e) {
+							cancelled.set(true);
+							throw e;
+						} catch (RuntimeException e) {
+							cancelled.set(true);
+							throw e;
+						} catch (Error e) {
+							cancelled.set(true);
+							throw e;
+						}
+						return p.getResult();
+					}
+				}));
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		Throwable failure = null;
+		R result = null;
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				final R r = getUninterruptibly(futures.get(i));
+				result = i == 0 ? r : processor.combine(result, r);
+			} catch (ExecutionException e) {
+				if (failure == null)
+					failure = e.getCause();
+				else if (failure != e.getCause())
+					failure.addSuppressed(e.getCause());
+			}
+		}
+		if (failure instanceof IOException)
+			throw (IOException) failure;
+		if (failure instanceof RuntimeException)
+			throw (RuntimeException) failure;
+		if (failure instanceof Error)
+			throw (Error) failure;
+		return result;
+	}
+
+	private static <R> R getUninterruptibly(final Future<R> future) throws ExecutionException {
+		boolean interrupted = false;
+		try {
+			while (true)
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Closes the file of this source, unless this source was split from
+	 * another.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		if (owner)
+			channel.close();
+	}
+
+	@Override
+	public String toString() {
+		return "LineSource[" + file + ", " + charset + ", " + start + ".." + end + "]";
+	}
+
+	/*
+	 * Reads the lines of this source on one thread, holding the current window
+	 * and the buffers lines are copied and decoded into.
+	 */
+	private final class Cursor {
+		private final AtomicBoolean cancelled;
+		private final CharsetDecoder decoder;
+		private final boolean ascii;
+		private final boolean latin1;
+		private ByteBuffer window = null;
+		private long windowStart = 0;
+		private byte[] bytes = new byte[256];
+		private CharBuffer chars = CharBuffer.allocate(256);
+
+		private Cursor(final AtomicBoolean cancelled) {
+			this.cancelled = cancelled;
+			decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+			ascii = latin1 || charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+		}
+
+		void read(final LineProcessor<?> processor) throws IOException {
+			long position = start;
+			int size = WINDOW_SIZE;
+			while (position < end) {
+				if (cancelled != null && cancelled.get())
+					return;
+				if (window == null || position < windowStart || position >= windowStart + window.limit())
+					map(position, size);
+				final int from = (int) (position - windowStart);
+				final int limit = window.limit();
+				final boolean last = windowStart + limit == end;
+				int i = find(from, limit);
+				if (i == limit || (i == limit - 1 && window.get(i) == '\r' && !last)) {
+					// no complete line left in the window
+					if (last)
+						i = limit;
+					else {
+						if (from == 0) {
+							if (size == Integer.MAX_VALUE)
+								throw new IOException("line too long at " + position + " in " + file);
+							size = (int) Math.min(Integer.MAX_VALUE, size * 2L);
+						}
+						map(position, size);
+						continue;
+					}
+				}
+				if (!processor.processLine(decode(from, i))) {
+					if (cancelled != null)
+						cancelled.set(true);
+					return;
+				}
+				position = windowStart + i;
+				if (i < limit)
+					position += window.get(i) == '\r' && i + 1 < limit && window.get(i + 1) == '\n' ? 2 : 1;
+				size = WINDOW_SIZE;
+			}
+		}
+
+		private void map(final long position, final int size) throws IOException {
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size, end - position));
+			window.order(ByteOrder.LITTLE_ENDIAN);
+			windowStart = position;
+		}
+
+		/*
+		 * Returns the index of the first '\n' or '\r' at or after the
+		 * specified index, or the limit if there is none. Words are scanned
+		 * eight bytes at a time, flagging each byte which equals either
+		 * terminator; the lowest flag is always exact.
+		 */
+		private int find(int i, final int limit) {
+			for (; i + 8 <= limit; i += 8) {
+				final long word = window.getLong(i);
+				final long lf = word ^ LFS;
+				final long cr = word ^ CRS;
+				final long found = ((lf - ONES) & ~lf | (cr - ONES) & ~cr) & HIGHS;
+				if (found != 0)
+					return i + (Long.numberOfTrailingZeros(found) >>> 3);
+			}
+			for (; i < limit; i++) {
+				final byte b = window.get(i);
+				if (b == '\n' || b == '\r')
+					return i;
+			}
+			return limit;
+		}
+
+		private CharBuffer decode(final int from, final int to) {
+			final int length = to - from;
+			if (bytes.length < length)
+				bytes = new byte[Math.max(length, (int) Math.min(Integer.MAX_VALUE, bytes.length * 2L))];
+			window.position(from);
+			window.get(bytes, 0, length);
+			if (ascii) {
+				if (chars.capacity() < length)
+					chars = CharBuffer.allocate(Math.max(length, (int) Math.min(Integer.MAX_VALUE, chars.capacity() * 2L)));
+				final char[] array = chars.array();
+				int i = 0;
+				if (latin1)
+					for (; i < length; i++)
+						array[i] = (char) (bytes[i] & 0xFF);
+				else
+					for (; i < length && bytes[i] >= 0; i++)
+						array[i] = (char) bytes[i];
+				if (i == length) {
+					chars.clear();
+					chars.limit(length);
+					return chars;
+				}
+			}
+			final int capacity = (int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(length
+					* (double) decoder.maxCharsPerByte()) + 1);
+			if (chars.capacity() < capacity)
+				chars = CharBuffer.allocate(Math.max(capacity, (int) Math.min(Integer.MAX_VALUE, chars.capacity() * 2L)));
+			chars.clear();
+			decoder.reset();
+			decoder.decode(ByteBuffer.wrap(bytes, 0, length), chars, true);
+			decoder.flush(chars);
+			chars.flip();
+			return chars;
+		}
+	}
+
+}
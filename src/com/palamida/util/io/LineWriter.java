@@ -0,0 +1,469 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes lines of text to a file, encoding them with a single reusable
+ * {@link CharsetEncoder} into a large direct buffer which is written to a
+ * {@link FileChannel} only when full. Lines are encoded into a small heap
+ * buffer first, which the encoders of the standard charsets fill much faster
+ * than a direct one, and copied to the direct buffer in bulk. Unlike a {@code PrintWriter}, a
+ * {@code LineWriter} takes no lock per line, allocates nothing per line, and
+ * reports I/O errors instead of swallowing them.
+ * <p>
+ * A {@code LineWriter} either truncates, appends to, or atomically replaces
+ * its file. In the last mode lines are written to a temporary file in the
+ * same directory, which is forced to disk and renamed over the file when the
+ * writer is closed, so that readers see either the old contents or all of
+ * the new ones. If writing fails the temporary file is deleted on close, and
+ * the file is left untouched; callers failing to produce all the lines
+ * should {@link #abort()} the writer rather than close it.
+ * <p>
+ * The file can also be forced to disk every so many bytes (see
+ * {@link Builder#syncEvery(long)}), grouping the cost of an {@code fsync}
+ * over many lines.
+ * <p>
+ * Characters which cannot be encoded are replaced, as they are by a
+ * {@code PrintWriter}.
+ * <p>
+ * This class is not <i>thread-safe</i>.
+ *
+ * @author Zhenya Leonov
+ */
+final public class LineWriter implements Closeable, Flushable {
+
+	private static final int CHARS = 8192;
+	private static final int BYTES = 32768;
+
+	private final File path;
+	private final Path temp;
+	private final FileChannel channel;
+	private final CharsetEncoder encoder;
+	private final ByteBuffer buffer;
+	private final ByteBuffer bytes;
+	private final CharBuffer chars = CharBuffer.allocate(CHARS);
+	private final String separator;
+	private final long syncEvery;
+	private long unsynced = 0;
+	private long written = 0;
+	private boolean failed = false;
+	private boolean closed = false;
+
+	private LineWriter(final Builder builder) throws IOException {
+		path = builder.path;
+		separator = builder.separator;
+		syncEvery = builder.syncEvery;
+		encoder = builder.charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		if (builder.atomic) {
+			final File parent = path.getAbsoluteFile().getParentFile();
+			Path temp = null;
+			FileChannel channel = null;
+			while (channel == null)
+				try {
+					temp = new File(parent, "." + path.getName() + "."
+							+ Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp").toPath();
+					channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+				} catch (FileAlreadyExistsException e) {
+					continue;
+				}
+			this.temp = temp;
+			this.channel = channel;
+		} else {
+			temp = null;
+			channel = builder.append ? FileChannel.open(path.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.APPEND) : FileChannel.open(path.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		}
+		buffer = ByteBuffer.allocateDirect(builder.bufferSize);
+		bytes = ByteBuffer.allocate(Math.min(BYTES, builder.bufferSize));
+	}
+
+	/**
+	 * Returns a new builder configured to build {@code LineWriter} instances
+	 * which write to the specified file, truncating it, in UTF-8 with the
+	 * system line separator.
+	 *
+	 * @param path
+	 *            the file to write
+	 * @return a new builder configured to build {@code LineWriter} instances
+	 *         which write to the specified file
+	 */
+	public static Builder to(final File path) {
+		checkNotNull(path);
+		return new Builder(path);
+	}
+
+	/**
+	 * A builder for the creation of {@code LineWriter} instances. Instances
+	 * of this builder are obtained calling {@link LineWriter#to(File)}.
+	 *
+	 * @author Zhenya Leonov
+	 */
+	public static final class Builder {
+
+		private final File path;
+		private Charset charset = StandardCharsets.UTF_8;
+		private String separator = System.getProperty("line.separator");
+		private int bufferSize = 1 << 20;
+		private long syncEvery = 0;
+		private boolean append = false;
+		private boolean atomic = false;
+
+		private Builder(final File path) {
+			this.path = path;
+		}
+
+		/**
+		 * Configures this builder to build {@code LineWriter} instances which
+		 * encode lines with the specified charset.
+		 *
+		 * @param charset
+		 *            the character set to use when writing the lines
+		 * @return this builder
+		 */
+		public Builder charset(final Charset charset) {
+			this.charset = checkNotNull(charset);
+			return this;
+		}
+
+		/**
+		 * Configures this builder to build {@code LineWriter} instances which
+		 * terminate lines with the specified separator.
+		 *
+		 * @param separator
+		 *            the line separator
+		 * @return this builder
+		 */
+		public Builder lineSeparator(final String separator) {
+			this.separator = checkNotNull(separator);
+			return this;
+		}
+
+		/**
+		 * Configures this builder to build {@code LineWriter} instances which
+		 * buffer the specified number of encoded bytes between writes.
+		 *
+		 * @param bufferSize
+		 *            the size of the buffer in bytes
+		 * @return this builder
+		 */
+		public Builder bufferSize(final int bufferSize) {
+			checkArgument(bufferSize >= 16, "bufferSize < 16");
+			this.bufferSize = bufferSize;
+			return this;
+		}
+
+		/**
+		 * Configures this builder to build {@code LineWriter} instances which
+		 * force the file to disk whenever at least the specified number of
+		 * bytes were written since it was last forced, and when closed.
+		 *
+		 * @param bytes
+		 *            the number of bytes written between two forces
+		 * @return this builder
+		 */
+		public Builder syncEvery(final long bytes) {
+			checkArgument(bytes > 0, "bytes < 1");
+			this.syncEvery = bytes;
+			return this;
+		}
+
+		/**
+		 * Configures this builder to build {@code LineWriter} instances which
+		 * append to the file rather than truncate it.
+		 *
+		 * @return this builder
+		 */
+		public Builder append() {
+			checkState(!atomic, "cannot append atomically");
+			append = true;
+			return this;
+		}
+
+		/**
+		 * Configures this builder to build {@code LineWriter} instances which
+		 * write to a temporary file, and replace the file with it when closed.
+		 *
+		 * @return this builder
+		 */
+		public Builder atomic() {
+			checkState(!append, "cannot append atomically");
+			atomic = true;
+			return this;
+		}
+
+		/**
+		 * Opens a new {@code LineWriter} using the previously specified
+		 * options.
+		 *
+		 * @return a new {@code LineWriter}
+		 * @throws IOException
+		 *             if the file cannot be opened
+		 */
+		public LineWriter open() throws IOException {
+			return new LineWriter(this);
+		}
+	}
+
+	/**
+	 * Writes the specified line followed by the line separator.
+	 *
+	 * @param line
+	 *            the line to write
+	 * @return this writer
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public LineWriter write(final CharSequence line) throws IOException {
+		checkNotNull(line);
+		checkState(!closed, "closed");
+		encode(line);
+		encode(separator);
+		return this;
+	}
+
+	/**
+	 * Writes each of the specified lines followed by the line separator.
+	 *
+	 * @param lines
+	 *            the lines to write
+	 * @return this writer
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public LineWriter writeAll(final Iterable<? extends CharSequence> lines) throws IOException {
+		checkNotNull(lines);
+		for (final CharSequence line : lines)
+			write(line);
+		return this;
+	}
+
+	/**
+	 * Returns the number of bytes written so far, including the bytes still
+	 * buffered.
+	 *
+	 * @return the number of bytes written so far
+	 */
+	public long bytesWritten() {
+		return written + buffer.position() + bytes.position();
+	}
+
+	/**
+	 * Writes the buffered bytes to the file.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkState(!closed, "closed");
+		drain();
+	}
+
+	/**
+	 * Writes the buffered bytes to the file and forces the file to disk.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void sync() throws IOException {
+		flush();
+		force();
+	}
+
+	/**
+	 * Writes the buffered bytes to the file and closes it. In atomic mode the
+	 * file is then forced to disk and replaces the target file, unless an
+	 * earlier write failed, in which case it is deleted.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			if (!failed) {
+				encoder.encode(CharBuffer.allocate(0), bytes, true);
+				while (encoder.flush(bytes) == CoderResult.OVERFLOW)
+					stage();
+				drain();
+				if (syncEvery > 0 || temp != null)
+					force();
+			}
+		} finally {
+			channel.close();
+			if (temp != null) {
+				if (failed)
+					java.nio.file.Files.deleteIfExists(temp);
+				else
+					replace();
+			}
+		}
+	}
+
+	/**
+	 * Closes this writer without writing the buffered bytes. In atomic mode
+	 * the temporary file is deleted and the target file is left untouched.
+	 * Has no effect if this writer is already closed.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void abort() throws IOException {
+		if (closed)
+			return;
+		failed = true;
+		close();
+	}
+
+	private void encode(final CharSequence s) throws IOException {
+		for (int start = 0; start < s.length(); start += CHARS) {
+			final int end = Math.min(s.length(), start + CHARS);
+			chars.clear();
+			if (s instanceof String)
+				((String) s).getChars(start, end, chars.array(), 0);
+			else
+				for (int i = start; i < end; i++)
+					chars.put(i - start, s.charAt(i));
+			chars.limit(end - start);
+			while (true) {
+				final CoderResult result = encoder.encode(chars, bytes, false);
+				if (result.isOverflow())
+					stage();
+				else if (result.isUnderflow())
+					break;
+				else
+					result.throwException(); // cannot happen when replacing
+			}
+			// keeps a dangling high surrogate for the next chunk, or replaces it
+			if (chars.hasRemaining())
+				if (end < s.length())
+					start -= chars.remaining();
+				else {
+					if (bytes.remaining() < encoder.replacement().length)
+						stage();
+					bytes.put(encoder.replacement());
+				}
+		}
+	}
+
+	private void drain() throws IOException {
+		stage();
+		write();
+	}
+
+	/*
+	 * Copies the encoded bytes to the direct buffer, writing it first if they
+	 * do not fit.
+	 */
+	private void stage() throws IOException {
+		bytes.flip();
+		if (bytes.remaining() > buffer.remaining())
+			write();
+		buffer.put(bytes);
+		bytes.clear();
+	}
+
+	private void write() throws IOException {
+		buffer.flip();
+		final int n = buffer.remaining();
+		try {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+		buffer.clear();
+		written += n;
+		unsynced += n;
+		if (syncEvery > 0 && unsynced >= syncEvery)
+			force();
+	}
+
+	private void force() throws IOException {
+		try {
+			channel.force(temp != null);
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+		unsynced = 0;
+	}
+
+	private void replace() throws IOException {
+		try {
+			java.nio.file.Files.move(temp, path.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			java.nio.file.Files.deleteIfExists(temp);
+			throw e;
+		}
+		if (syncEvery > 0)
+			forceDirectory();
+	}
+
+	/*
+	 * Makes the rename durable. Directories cannot be opened for reading on
+	 * all platforms, in which case the rename is left to the file system.
+	 */
+	private void forceDirectory() {
+		try {
+			final FileChannel directory = FileChannel.open(path.getAbsoluteFile().getParentFile().toPath(),
+					StandardOpenOption.READ);
+			try {
+				directory.force(true);
+			} finally {
+				directory.close();
+			}
+		} catch (IOException e) {
+			return;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LineWriter[" + path + ", " + encoder.charset() + (temp != null ? ", atomic]" : "]");
+	}
+
+}
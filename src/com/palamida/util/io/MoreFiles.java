@@ -20,21 +20,33 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.io.Closeables;
 import com.google.common.io.Files;
 
 /**
@@ -105,8 +117,8 @@ final public class MoreFiles {
 			final boolean autoFlush) throws IOException {
 		checkNotNull(path);
 		checkNotNull(charset);
-		final OutputStream fos = new BufferedOutputStream(new FileOutputStream(path, append));
-		return new PrintWriter(fos, autoFlush);
+		return new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path, append),
+				charset)), autoFlush);
 	}
 
 	/**
@@ -160,10 +172,12 @@ final public class MoreFiles {
 		checkNotNull(path);
 		checkNotNull(charset);
 		checkNotNull(lines);
-		final PrintWriter writer = MoreFiles.newPrintWriter(path, charset, false, false);
-		for (final String line : lines)
-			writer.println(line);
-		writer.close();
+		final LineWriter writer = LineWriter.to(path).charset(charset).open();
+		try {
+			writer.writeAll(lines);
+		} finally {
+			writer.close();
+		}
 		return path;
 	}
 
@@ -221,6 +235,65 @@ final public class MoreFiles {
 		return builder.build();
 	}
 
+	/**
+	 * Returns a lazy iterator over the files and sub-directories in the
+	 * specified path which satisfy the given filter.
+	 * <p>
+	 * Unlike {@link #walkFileTree(File, FileFilter)}, which collects every
+	 * file before returning, the tree is read while it is iterated, keeping
+	 * one directory stream open per level. The streams are closed when the
+	 * iterator is exhausted; the iterator should be closed if iteration may
+	 * stop early.
+	 * 
+	 * @param path
+	 *            the specified directory
+	 * @param filter
+	 *            a file filter
+	 * @return a lazy iterator over the files and sub-directories in the
+	 *         specified path which satisfy the given filter
+	 * @throws IOException
+	 *             if the specified directory cannot be opened
+	 * @see FileTreeIterator
+	 */
+	public static FileTreeIterator iterateFileTree(final File path, final FileFilter filter) throws IOException {
+		checkNotNull(path);
+		checkNotNull(filter);
+		checkArgument(path.isDirectory());
+		return new FileTreeIterator(path, filter);
+	}
+
+	/**
+	 * Returns a lazy sequential stream of the files and sub-directories in the
+	 * specified path which satisfy the given filter. Closing the stream closes
+	 * the directory streams still open; they are also closed once the stream
+	 * is exhausted.
+	 * 
+	 * @param path
+	 *            the specified directory
+	 * @param filter
+	 *            a file filter
+	 * @return a lazy stream of the files and sub-directories in the specified
+	 *         path which satisfy the given filter
+	 * @throws IOException
+	 *             if the specified directory cannot be opened
+	 * @see #iterateFileTree(File, FileFilter)
+	 */
+	public static Stream<File> streamFileTree(final File path, final FileFilter filter) throws IOException {
+		final FileTreeIterator iterator = iterateFileTree(path, filter);
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.DISTINCT
+						| Spliterator.NONNULL), false).onClose(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					iterator.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Processes all the files and sub-directories in the specified path which
 	 * satisfy the given filter.
@@ -260,6 +333,356 @@ final public class MoreFiles {
 		walkFileTree(null, path, FileFilters.TRUE, processor);
 	}
 
+	/**
+	 * Returns all the files and sub-directories in the specified path which
+	 * satisfy the given attribute filter.
+	 * <p>
+	 * The attributes of each file are read once, while its directory is
+	 * walked, and handed to the filter, so filtering by type, size, or
+	 * modification time costs no further file system queries.
+	 * 
+	 * @param path
+	 *            the specified path
+	 * @param filter
+	 *            an attribute file filter
+	 * @return all the files and sub-directories in the specified path which
+	 *         satisfy the given filter
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static Iterable<File> walkFileTree(final File path, final AttributeFileFilter filter) throws IOException {
+		checkNotNull(path);
+		checkNotNull(filter);
+		checkArgument(path.isDirectory());
+		final ImmutableSet.Builder<File> builder = ImmutableSet.builder();
+		walkFileTree(builder, path, filter, FileProcessors.alwaysTrue());
+		return builder.build();
+	}
+
+	/**
+	 * Processes all the files and sub-directories in the specified path which
+	 * satisfy the given attribute filter.
+	 * <p>
+	 * The attributes of each file are read once, while its directory is
+	 * walked, and handed to the filter, so filtering by type, size, or
+	 * modification time costs no further file system queries. Otherwise the
+	 * files are visited as by
+	 * {@link #walkFileTree(File, FileFilter, FileProcessor)}.
+	 * 
+	 * @param path
+	 *            the specified directory
+	 * @param filter
+	 *            an attribute file filter
+	 * @param processor
+	 *            the {@code FileProcessor} instance used to process the files
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static void walkFileTree(final File path, final AttributeFileFilter filter,
+			final FileProcessor<?> processor) throws IOException {
+		checkNotNull(path);
+		checkNotNull(filter);
+		checkNotNull(processor);
+		checkArgument(path.exists());
+		walkFileTree(null, path, filter, processor);
+	}
+
+	/**
+	 * Processes the contents of all the regular files in the specified path
+	 * which satisfy the given attribute filter.
+	 * <p>
+	 * Each file is handed to the processor with the attributes read while its
+	 * directory was walked, and its contents in a read-only buffer: files of a
+	 * megabyte or more are memory-mapped, and smaller files are read with a
+	 * single read into a buffer reused from one file to the next, so that
+	 * processors need not open or copy files themselves. Files of more than
+	 * {@code Integer.MAX_VALUE} bytes, which cannot be mapped whole, are
+	 * handed to the processor in consecutive windows (see
+	 * {@link ContentFileProcessor}). Directories are
+	 * walked as by {@link #walkFileTree(File, AttributeFileFilter, FileProcessor)},
+	 * but never processed. Files which cannot be read, for example because
+	 * they were removed after their directory was listed, are skipped.
+	 * 
+	 * @param path
+	 *            the specified directory
+	 * @param filter
+	 *            an attribute file filter
+	 * @param processor
+	 *            the {@code ContentFileProcessor} instance used to process the
+	 *            files
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static void walkFileTree(final File path, final AttributeFileFilter filter,
+			final ContentFileProcessor<?> processor) throws IOException {
+		checkNotNull(path);
+		checkNotNull(filter);
+		checkNotNull(processor);
+		checkArgument(path.exists());
+		final ContentReader reader = new ContentReader();
+		walkFileTree(path, IgnoreRules.NONE, new FileTreeVisitor<Void>() {
+
+			@Override
+			public Void getResult() {
+				return null;
+			}
+
+			@Override
+			public FileVisitResult visitFile(final File file, final BasicFileAttributes attributes)
+					throws IOException {
+				if (!attributes.isRegularFile() || !filter.accept(file, attributes))
+					return FileVisitResult.CONTINUE;
+				long position = 0;
+				do {
+					final ByteBuffer content;
+					try {
+						content = reader.read(file.toPath(), attributes.size(), position);
+					} catch (IOException e) {
+						return FileVisitResult.CONTINUE; // removed since listed, or unreadable
+					}
+					if (position > 0 && !content.hasRemaining())
+						break; // shrunk since listed
+					position += content.remaining();
+					if (!processor.processFile(file, attributes, content))
+						return FileVisitResult.SKIP_SIBLINGS;
+				} while (position < attributes.size());
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Visits all the files and sub-directories in the specified path which are
+	 * not excluded by the given rules.
+	 * <p>
+	 * Excluded directories are pruned before they are listed, so nothing
+	 * inside them is read. The visitor decides how the walk proceeds after
+	 * each file: it can skip the subtree of a directory, skip the rest of the
+	 * current directory, or stop the whole walk (see {@link FileTreeVisitor}).
+	 * Files are visited in the same order as by
+	 * {@link #walkFileTree(File, FileFilter, FileProcessor)}, and files and
+	 * directories which cannot be read are skipped.
+	 * 
+	 * @param path
+	 *            the specified directory
+	 * @param rules
+	 *            the exclusion rules, matched against paths relative to the
+	 *            specified directory
+	 * @param visitor
+	 *            the {@code FileTreeVisitor} instance used to visit the files
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static void walkFileTree(final File path, final IgnoreRules rules, final FileTreeVisitor<?> visitor)
+			throws IOException {
+		checkNotNull(path);
+		checkNotNull(rules);
+		checkNotNull(visitor);
+		checkArgument(path.exists());
+		final Path start = path.toPath();
+		java.nio.file.Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+				new SimpleFileVisitor<Path>() {
+
+					@Override
+					public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes)
+							throws IOException {
+						if (dir.equals(start))
+							return FileVisitResult.CONTINUE;
+						if (isIgnored(dir, true))
+							return FileVisitResult.SKIP_SUBTREE;
+						return visitor.visitFile(dir.toFile(), attributes);
+					}
+
+					@Override
+					public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+							throws IOException {
+						if (!file.equals(start) && isIgnored(file, attributes.isDirectory()))
+							return FileVisitResult.CONTINUE;
+						final FileVisitResult result = visitor.visitFile(file.toFile(), attributes);
+						return result == FileVisitResult.SKIP_SUBTREE ? FileVisitResult.CONTINUE : result;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult postVisitDirectory(final Path dir, final IOException e) {
+						return FileVisitResult.CONTINUE;
+					}
+
+					private boolean isIgnored(final Path p, final boolean directory) {
+						if (rules.isEmpty())
+							return false;
+						String relative = start.relativize(p).toString();
+						if (File.separatorChar != '/')
+							relative = relative.replace(File.separatorChar, '/');
+						return rules.matches(relative, directory);
+					}
+				});
+	}
+
+	/**
+	 * Processes the regular files in the specified path which were added or
+	 * modified since the given snapshot was taken, reports the files and
+	 * directories which were removed since, and returns a new snapshot of the
+	 * tree.
+	 * <p>
+	 * A file is modified if its size or modification time changed, unless the
+	 * snapshot records content hashes and its contents did not change.
+	 * Directories whose modification time did not change are not listed
+	 * again, since their entries are recorded in the snapshot; their files are
+	 * still checked one by one. Excluded paths are neither processed nor
+	 * recorded.
+	 * <p>
+	 * If the {@code changed} processor returns {@code false} the walk stops,
+	 * no removals are reported, and the files not processed yet are reported
+	 * again by a walk against the returned snapshot. Likewise, if the
+	 * {@code removed} processor returns {@code false} no further removals are
+	 * reported, and the removals not reported yet are reported again by a walk
+	 * against the returned snapshot. The snapshot is typically
+	 * {@linkplain FileTreeSnapshot#write(File) written} after each walk and
+	 * {@linkplain FileTreeSnapshot#read(File) read} before the next:
+	 * 
+	 * <pre>
+	 * FileTreeSnapshot snapshot = index.exists() ? FileTreeSnapshot.read(index) : FileTreeSnapshot.empty(false);
+	 * MoreFiles.walkFileTree(root, snapshot, rules, changed, removed).write(index);
+	 * </pre>
+	 * 
+	 * @param path
+	 *            the specified directory
+	 * @param snapshot
+	 *            the snapshot taken by the previous walk of the directory
+	 * @param rules
+	 *            the exclusion rules, matched against paths relative to the
+	 *            specified directory
+	 * @param changed
+	 *            the {@code FileProcessor} instance used to process the added
+	 *            and modified files
+	 * @param removed
+	 *            the {@code FileProcessor} instance to which the removed files
+	 *            and directories are reported
+	 * @return a new snapshot of the specified directory
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static FileTreeSnapshot walkFileTree(final File path, final FileTreeSnapshot snapshot,
+			final IgnoreRules rules, final FileProcessor<?> changed, final FileProcessor<?> removed)
+			throws IOException {
+		checkNotNull(path);
+		checkNotNull(snapshot);
+		checkNotNull(rules);
+		checkNotNull(changed);
+		checkNotNull(removed);
+		checkArgument(path.isDirectory());
+		return IncrementalWalker.walk(path, snapshot, rules, changed, removed);
+	}
+
+	/**
+	 * Processes all the files and sub-directories in the specified path which
+	 * satisfy the given filter in parallel, and returns the combined result of
+	 * the processors.
+	 * <p>
+	 * Each directory is listed by a fork-join task of its own, which processes
+	 * its files with a processor obtained from
+	 * {@link ParallelFileProcessor#fork()}, so that directories are listed and
+	 * processed concurrently by at most {@code parallelism} threads. The result
+	 * of each task is combined with the results of its sub-directories, and the
+	 * combined result of the whole tree is returned.
+	 * <p>
+	 * Unlike {@link #walkFileTree(File, FileFilter, FileProcessor)}, a
+	 * processor returning {@code false} stops the whole walk, not only the
+	 * current directory. The walk is also stopped by the first exception thrown
+	 * by a processor or a filter, which is then rethrown. In either case this
+	 * method returns only when no file is being processed any longer.
+	 * 
+	 * @param path
+	 *            the specified directory
+	 * @param filter
+	 *            a thread-safe file filter
+	 * @param processor
+	 *            the {@code ParallelFileProcessor} used to process the files
+	 *            of the specified directory, and to fork the processors of its
+	 *            sub-directories
+	 * @param parallelism
+	 *            the maximum number of threads
+	 * @return the combined result of all the processors
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static <R> R parallelWalkFileTree(final File path, final FileFilter filter,
+			final ParallelFileProcessor<R> processor, final int parallelism) throws IOException {
+		checkNotNull(path);
+		checkNotNull(filter);
+		checkNotNull(processor);
+		checkArgument(path.exists());
+		checkArgument(parallelism > 0, "parallelism < 1");
+		return ParallelFileTreeWalker.walk(path, filter, processor, parallelism);
+	}
+
+	/**
+	 * Processes all the files and sub-directories in the specified path which
+	 * satisfy the given filter in parallel, calling the specified thread-safe
+	 * processor concurrently from at most {@code parallelism} threads.
+	 * <p>
+	 * A processor returning {@code false} stops the whole walk, as does the
+	 * first exception thrown by the processor or the filter, which is then
+	 * rethrown. In either case this method returns only when no file is being
+	 * processed any longer.
+	 * 
+	 * @param path
+	 *            the specified directory
+	 * @param filter
+	 *            a thread-safe file filter
+	 * @param processor
+	 *            the thread-safe {@code FileProcessor} used to process the
+	 *            files
+	 * @param parallelism
+	 *            the maximum number of threads
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @see #parallelWalkFileTree(File, FileFilter, ParallelFileProcessor, int)
+	 */
+	public static void parallelWalkFileTree(final File path, final FileFilter filter,
+			final FileProcessor<?> processor, final int parallelism) throws IOException {
+		checkNotNull(processor);
+		parallelWalkFileTree(path, filter, FileProcessors.shared(processor), parallelism);
+	}
+
+	/**
+	 * Finds the regular files in the specified path which satisfy the given
+	 * filter and have identical contents. Empty files are ignored, and a file
+	 * reached through several paths (symbolic or hard links) is only listed
+	 * under the first path encountered, where the file system identifies files
+	 * (see {@link BasicFileAttributes#fileKey()}).
+	 * <p>
+	 * Files are bucketed by size first. Only files sharing a size have their
+	 * first 4 KB hashed, and only files sharing that hash are hashed whole, so
+	 * that most files are never read, and most of the rest only in part.
+	 * Files are hashed concurrently from at most {@code parallelism} threads;
+	 * whole files are read through memory mappings. Files which cannot be read
+	 * are left out, and counted by {@link DuplicateReport#failures()}.
+	 *
+	 * @param path
+	 *            the specified directory
+	 * @param filter
+	 *            the file filter
+	 * @param parallelism
+	 *            the maximum number of threads hashing files
+	 * @return the groups of identical files, and statistics on the search
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static DuplicateReport findDuplicates(final File path, final AttributeFileFilter filter,
+			final int parallelism) throws IOException {
+		checkNotNull(path);
+		checkNotNull(filter);
+		checkArgument(path.exists());
+		checkArgument(parallelism > 0, "parallelism < 1");
+		return DuplicateFinder.find(path, filter, parallelism);
+	}
+
 	private static void walkFileTree(final ImmutableSet.Builder<File> builder, final File path,
 			final FileFilter filter, final FileProcessor<?> processor) throws IOException {
 		final File[] files = path.listFiles(FileFilters.or(FileFilters.DIRECTORY, filter));
@@ -282,6 +705,50 @@ final public class MoreFiles {
 		}
 	}
 
+	/*
+	 * Files and directories which cannot be read are skipped, as they are by
+	 * File.listFiles().
+	 */
+	private static void walkFileTree(final ImmutableSet.Builder<File> builder, final File path,
+			final AttributeFileFilter filter, final FileProcessor<?> processor) throws IOException {
+		final Path start = path.toPath();
+		java.nio.file.Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+				new SimpleFileVisitor<Path>() {
+
+					@Override
+					public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes)
+							throws IOException {
+						return dir.equals(start) ? FileVisitResult.CONTINUE : visit(dir, attributes);
+					}
+
+					@Override
+					public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+							throws IOException {
+						return visit(file, attributes);
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult postVisitDirectory(final Path dir, final IOException e) {
+						return FileVisitResult.CONTINUE;
+					}
+
+					private FileVisitResult visit(final Path p, final BasicFileAttributes attributes)
+							throws IOException {
+						final File file = p.toFile();
+						if (!filter.accept(file, attributes))
+							return FileVisitResult.CONTINUE;
+						if (builder != null)
+							builder.add(file);
+						return processor.processFile(file) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SIBLINGS;
+					}
+				});
+	}
+
 	/**
 	 * Appends a list of strings (separating them using line-termination
 	 * characters) to the given file using the specified charset.
@@ -291,7 +758,7 @@ final public class MoreFiles {
 	 * @param to
 	 *            the given file
 	 * @param charset
-	 *            the character set to use when wOriting the lines
+	 *            the character set to use when writing the lines
 	 * @return the given file
 	 * @throws IOException
 	 *             if an I/O error occurs
@@ -300,10 +767,12 @@ final public class MoreFiles {
 		checkNotNull(lines);
 		checkNotNull(to);
 		checkNotNull(charset);
-		final PrintWriter writer = newPrintWriter(to, charset, true, false);
-		for (final String line : lines)
-			writer.println(line);
-		Closeables.close(writer, false);
+		final LineWriter writer = LineWriter.to(to).charset(charset).append().open();
+		try {
+			writer.writeAll(lines);
+		} finally {
+			writer.close();
+		}
 		return to;
 	}
 
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+/**
+ * A {@link FileProcessor} which can be split across the tasks of a parallel
+ * walk (see
+ * {@link MoreFiles#parallelWalkFileTree(java.io.File, java.io.FileFilter, ParallelFileProcessor, int)}
+ * ).
+ * <p>
+ * Each directory of the tree is processed by a task of its own, using a
+ * processor obtained from {@link #fork()}. When the tasks are done their
+ * results are {@linkplain #combine(Object, Object) combined}, parents before
+ * children and siblings in the order they were listed, into the result of the
+ * walk. A single processor is only ever used by one thread at a time, but
+ * different processors are used concurrently, so any state they share must be
+ * thread-safe.
+ *
+ * @param <R>
+ *            the type of result this processor returns
+ * @author Zhenya Leonov
+ */
+public interface ParallelFileProcessor<R> extends FileProcessor<R> {
+
+	/**
+	 * Returns a new processor for the files of another directory. The
+	 * {@link #getResult() result} of the new processor must reflect only the
+	 * files it processes itself.
+	 *
+	 * @return a new processor for the files of another directory
+	 */
+	public ParallelFileProcessor<R> fork();
+
+	/**
+	 * Combines the results of two processors.
+	 *
+	 * @param left
+	 *            the result of the files encountered first
+	 * @param right
+	 *            the result of the files encountered next
+	 * @return the combined result
+	 */
+	public R combine(final R left, final R right);
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Walks a file tree on a fork-join pool, listing each directory in a task of
+ * its own.
+ * <p>
+ * The walk is cancelled as soon as a processor returns {@code false} or
+ * throws an exception: tasks which have not started yet do nothing, and
+ * running tasks stop before the next file. The walk does not return before
+ * every task has finished, so no file is processed after it returns. The
+ * first exception thrown is rethrown, with any later ones suppressed.
+ *
+ * @author Zhenya Leonov
+ */
+final class ParallelFileTreeWalker<R> {
+
+	private final FileFilter filter;
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	private volatile boolean cancelled = false;
+
+	private ParallelFileTreeWalker(final FileFilter filter) {
+		this.filter = filter;
+	}
+
+	static <T> T walk(final File path, final FileFilter filter, final ParallelFileProcessor<T> processor,
+			final int parallelism) throws IOException {
+		if (!path.isDirectory()) {
+			if (filter.accept(path))
+				processor.processFile(path);
+			return processor.getResult();
+		}
+		final ParallelFileTreeWalker<T> walker = new ParallelFileTreeWalker<T>(filter);
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		final T result;
+		try {
+			result = pool.invoke(walker.new WalkTask(path, processor));
+		} finally {
+			pool.shutdown();
+		}
+		final Throwable failure = walker.failure.get();
+		if (failure instanceof IOException)
+			throw (IOException) failure;
+		if (failure instanceof RuntimeException)
+			throw (RuntimeException) failure;
+		if (failure instanceof Error)
+			throw (Error) failure;
+		return result;
+	}
+
+	private void fail(final Throwable t) {
+		if (!failure.compareAndSet(null, t) && failure.get() != t)
+			failure.get().addSuppressed(t);
+		cancelled = true;
+	}
+
+	private final class WalkTask extends RecursiveTask<R> {
+		private static final long serialVersionUID = 1L;
+
+		private final File path;
+		private final ParallelFileProcessor<R> processor;
+
+		private WalkTask(final File path, final ParallelFileProcessor<R> processor) {
+			this.path = path;
+			this.processor = processor;
+		}
+
+		@Override
+		protected R compute() {
+			final List<WalkTask> subtasks = new ArrayList<WalkTask>();
+			try {
+				if (!cancelled)
+					process(subtasks);
+			} catch (IOException e) {
+				fail(e);
+			} catch (RuntimeException e) {
+				fail(e);
+			} catch (Error e) {
+				fail(e);
+			}
+			final List<R> results = new ArrayList<R>(subtasks.size());
+			for (int i = subtasks.size() - 1; i >= 0; i--)
+				results.add(subtasks.get(i).join());
+			R result = processor.getResult();
+			for (int i = results.size() - 1; i >= 0; i--)
+				result = processor.combine(result, results.get(i));
+			return result;
+		}
+
+		private void process(final List<WalkTask> subtasks) throws IOException {
+			final File[] files = path.listFiles();
+			if (files == null)
+				return;
+			for (final File file : files) {
+				if (cancelled)
+					return;
+				final boolean directory = file.isDirectory();
+				if (filter.accept(file) && !processor.processFile(file)) {
+					cancelled = true;
+					return;
+				}
+				if (directory) {
+					final WalkTask subtask = new WalkTask(file, processor.fork());
+					subtask.fork();
+					subtasks.add(subtask);
+				}
+			}
+		}
+	}
+
+}
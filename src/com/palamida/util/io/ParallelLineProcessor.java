@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2010 Zhenya Leonov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palamida.util.io;
+
+/**
+ * A {@link LineProcessor} which can be split across the segments of a
+ * parallel read (see {@link LineSource#readLines(ParallelLineProcessor, int)}
+ * ).
+ * <p>
+ * The first segment of the source is processed by this processor, and each
+ * other segment by a processor obtained from {@link #fork()}. When the
+ * segments are done their results are {@linkplain #combine(Object, Object)
+ * combined} in the order the segments appear in the file. A single processor
+ * is only ever used by one thread at a time, but different processors are
+ * used concurrently, so any state they share must be thread-safe.
+ *
+ * @param <R>
+ *            the type of result this processor returns
+ * @author Zhenya Leonov
+ */
+public interface ParallelLineProcessor<R> extends LineProcessor<R> {
+
+	/**
+	 * Returns a new processor for the lines of another segment. The
+	 * {@link #getResult() result} of the new processor must reflect only the
+	 * lines it processes itself.
+	 *
+	 * @return a new processor for the lines of another segment
+	 */
+	public ParallelLineProcessor<R> fork();
+
+	/**
+	 * Combines the results of two processors.
+	 *
+	 * @param left
+	 *            the result of the lines encountered first
+	 * @param right
+	 *            the result of the lines encountered next
+	 * @return the combined result
+	 */
+	public R combine(final R left, final R right);
+
+}